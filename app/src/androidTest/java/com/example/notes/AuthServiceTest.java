@@ -0,0 +1,105 @@
+package com.example.notes;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs {@link AuthService} against an in-memory database. Callbacks are not
+ * needed here; the returned futures carry the same results.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AuthServiceTest {
+
+    private DatabaseHelper helper;
+    private DbDispatcher dispatcher;
+    private DbDispatcher.Scope scope;
+    private AuthService authService;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        dispatcher = new DbDispatcher(DbDispatcher.READER_LANES, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        scope = dispatcher.newScope();
+        authService = new AuthService(helper, dispatcher);
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdownNow();
+        helper.close();
+    }
+
+    @Test
+    public void registerThenLogin() throws Exception {
+        User registered = authService.register(scope, "alice", "secret", null).get(5, TimeUnit.SECONDS);
+        assertNotNull(registered);
+        assertEquals("alice", registered.getUsername());
+
+        User loggedIn = authService.login(scope, "alice", "secret", null).get(5, TimeUnit.SECONDS);
+        assertNotNull(loggedIn);
+        assertEquals(registered.getId(), loggedIn.getId());
+    }
+
+    @Test
+    public void duplicateUsernameIsRejectedByTheInsert() throws Exception {
+        assertNotNull(authService.register(scope, "alice", "secret", null).get(5, TimeUnit.SECONDS));
+        assertNull(authService.register(scope, "alice", "other", null).get(5, TimeUnit.SECONDS));
+
+        // The original password still works
+        assertNotNull(authService.login(scope, "alice", "secret", null).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void wrongPasswordOrUnknownUserReturnsNull() throws Exception {
+        authService.register(scope, "alice", "secret", null).get(5, TimeUnit.SECONDS);
+
+        assertNull(authService.login(scope, "alice", "wrong", null).get(5, TimeUnit.SECONDS));
+        assertNull(authService.login(scope, "bob", "secret", null).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void legacyPlainTextPasswordIsRehashedOnLogin() throws Exception {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COLUMN_USERNAME, "legacy");
+        values.put(DatabaseHelper.COLUMN_PASSWORD, "secret");
+        helper.getWritableDatabase().insertOrThrow(DatabaseHelper.TABLE_USERS, null, values);
+
+        assertNotNull(authService.login(scope, "legacy", "secret", null).get(5, TimeUnit.SECONDS));
+        // The rehash is queued on the writer lane; wait for it to drain
+        dispatcher.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        }, null).get(5, TimeUnit.SECONDS);
+
+        try (Cursor cursor = helper.getReadableDatabase().rawQuery(NoteSql.SQL_USER_BY_NAME,
+                new String[]{"legacy"})) {
+            assertTrue(cursor.moveToFirst());
+            String stored = cursor.getString(2);
+            assertTrue(stored.startsWith(PasswordHasher.PREFIX + "$"));
+            assertTrue(PasswordHasher.verify("secret", stored));
+        }
+    }
+}
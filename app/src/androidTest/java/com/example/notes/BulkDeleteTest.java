@@ -0,0 +1,170 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Moves many notes to the trash at once through {@link DatabaseHelper#deleteNotes}
+ * and compares it with deleting the same notes one by one.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkDeleteTest {
+
+    private static final String TAG = "BulkDeleteTest";
+    private static final String DB_NAME = "bulk_delete_notes.db";
+    // More than two DELETE_BATCH_SIZE batches, so the last batch is a partial one
+    private static final int NOTE_COUNT = 1200;
+    private static final long USER_ID = 1;
+    private static final long OTHER_USER_ID = 2;
+
+    private Context context;
+    private DatabaseHelper helper;
+    private final List<long[]> batchEvents = new ArrayList<>();
+    private int singleEvents;
+
+    private final NoteChangeBus.Listener listener = new NoteChangeBus.Listener() {
+        @Override
+        public void onNoteInserted(long noteId) {
+        }
+
+        @Override
+        public void onNoteUpdated(long noteId) {
+        }
+
+        @Override
+        public void onNoteDeleted(long noteId) {
+            singleEvents++;
+        }
+
+        @Override
+        public void onNotesDeleted(long[] noteIds) {
+            batchEvents.add(noteIds);
+        }
+
+        @Override
+        public void onNotesRestored(long[] noteIds) {
+        }
+
+        @Override
+        public void onNotesUpdated(long[] noteIds) {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        insertNotes(USER_ID, NOTE_COUNT);
+        insertNotes(OTHER_USER_ID, 10);
+        helper.getChangeBus().register(listener);
+    }
+
+    @After
+    public void tearDown() {
+        helper.getChangeBus().unregister(listener);
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void deletesEveryBatchInOneCallAndOneEvent() {
+        long[] ids = noteIds(USER_ID);
+        assertEquals(NOTE_COUNT, ids.length);
+
+        assertEquals(NOTE_COUNT, helper.deleteNotes(USER_ID, ids));
+
+        assertEquals(0, countNotes(USER_ID));
+        assertEquals(1, batchEvents.size());
+        long[] published = batchEvents.get(0).clone();
+        Arrays.sort(published);
+        Arrays.sort(ids);
+        assertArrayEquals(ids, published);
+        assertEquals(0, singleEvents);
+    }
+
+    @Test
+    public void skipsOtherUsersAndMissingIds() {
+        long[] mine = noteIds(USER_ID);
+        long[] theirs = noteIds(OTHER_USER_ID);
+        long[] ids = Arrays.copyOf(mine, 3 + theirs.length + 1);
+        System.arraycopy(theirs, 0, ids, 3, theirs.length);
+        ids[ids.length - 1] = Long.MAX_VALUE;
+
+        assertEquals(3, helper.deleteNotes(USER_ID, ids));
+        assertEquals(NOTE_COUNT - 3, countNotes(USER_ID));
+        assertEquals(theirs.length, countNotes(OTHER_USER_ID));
+        assertEquals(3, batchEvents.get(0).length);
+    }
+
+    @Test
+    public void emptySelectionDeletesNothing() {
+        assertEquals(0, helper.deleteNotes(USER_ID, new long[0]));
+        assertTrue(batchEvents.isEmpty());
+    }
+
+    @Test
+    public void bulkDeleteBeatsOneAtATime() {
+        long[] ids = noteIds(USER_ID);
+        long[] first = Arrays.copyOfRange(ids, 0, ids.length / 2);
+        long[] second = Arrays.copyOfRange(ids, ids.length / 2, ids.length);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (long id : first) {
+            helper.deleteNoteById(id);
+        }
+        long oneByOneNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        assertEquals(second.length, helper.deleteNotes(USER_ID, second));
+        long bulkNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, first.length + " notes one at a time: " + (oneByOneNanos / 1_000_000) + " ms");
+        Log.i(TAG, second.length + " notes in one call:  " + (bulkNanos / 1_000_000) + " ms");
+        assertTrue("One transaction should beat one transaction per note", bulkNanos < oneByOneNanos);
+        assertEquals(0, countNotes(USER_ID));
+    }
+
+    private void insertNotes(long userId, int count) {
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Note note = new Note();
+            note.setHeading("Note " + i + " of user " + userId);
+            note.setDetails("Details of note " + i);
+            notes.add(note);
+        }
+        assertEquals(count, helper.bulkInsertNotes(userId, notes));
+    }
+
+    private long[] noteIds(long userId) {
+        List<NoteSummary> page = helper.getNotesPage(userId, -1, NOTE_COUNT * 2);
+        long[] ids = new long[page.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = page.get(i).getId();
+        }
+        return ids;
+    }
+
+    private long countNotes(long userId) {
+        // Only notes still in the list; deleted ones wait in the trash
+        return DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), DatabaseHelper.TABLE_NOTES,
+                DatabaseHelper.COLUMN_USER_ID + " = ? AND " + DatabaseHelper.COLUMN_DELETED_AT + " IS NULL",
+                new String[]{String.valueOf(userId)});
+    }
+}
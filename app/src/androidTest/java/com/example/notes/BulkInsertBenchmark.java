@@ -0,0 +1,82 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures {@link DatabaseHelper#bulkInsertNotes} throughput. Results are
+ * written to logcat under the "BulkInsertBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkInsertBenchmark {
+
+    private static final String TAG = "BulkInsertBenchmark";
+    private static final String DB_NAME = "benchmark_bulk.db";
+    private static final int NOTE_COUNT = 50_000;
+    private static final long USER_ID = 1;
+    private static final double MIN_ROWS_PER_SECOND = 10_000;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void bulkInsertThroughput() {
+        List<Note> notes = new ArrayList<>(NOTE_COUNT);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            Note note = new Note();
+            note.setHeading("Imported note " + i);
+            note.setDetails("Line one of note " + i + "\nLine two with a few more words in it");
+            notes.add(note);
+        }
+        final List<Integer> progress = new ArrayList<>();
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int inserted = helper.bulkInsertNotes(USER_ID, notes, new DatabaseHelper.BulkInsertListener() {
+            @Override
+            public void onBatchInserted(int insertedSoFar) {
+                progress.add(insertedSoFar);
+            }
+        });
+        long elapsedNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        double rowsPerSecond = NOTE_COUNT / (elapsedNanos / 1e9);
+        Log.i(TAG, "inserted " + inserted + " notes in " + (elapsedNanos / 1_000_000) + " ms ("
+                + (long) rowsPerSecond + " rows/s)");
+
+        assertEquals(NOTE_COUNT, inserted);
+        assertEquals(NOTE_COUNT, DatabaseUtils.queryNumEntries(
+                helper.getReadableDatabase(), DatabaseHelper.TABLE_NOTES));
+        assertEquals(NOTE_COUNT / DatabaseHelper.BULK_INSERT_BATCH_SIZE, progress.size());
+        assertEquals(Integer.valueOf(NOTE_COUNT), progress.get(progress.size() - 1));
+        assertTrue("Bulk insert ran at " + (long) rowsPerSecond + " rows/s",
+                rowsPerSecond >= MIN_ROWS_PER_SECOND);
+    }
+}
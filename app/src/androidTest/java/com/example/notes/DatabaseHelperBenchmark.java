@@ -0,0 +1,104 @@
+package com.example.notes;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the old open/close-per-call pattern with the long-lived pooled
+ * connection on a 10k-note dataset. Results are written to logcat under the
+ * "DatabaseHelperBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseHelperBenchmark {
+
+    private static final String TAG = "DatabaseHelperBenchmark";
+    private static final String DB_NAME = "benchmark_notes.db";
+    private static final int NOTE_COUNT = 10_000;
+    private static final int OPERATIONS = 500;
+    private static final long USER_ID = 1;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < NOTE_COUNT; i++) {
+                values.put(DatabaseHelper.COLUMN_HEADING, "Note " + i);
+                values.put(DatabaseHelper.COLUMN_DETAILS, "Details for note number " + i);
+                values.put(DatabaseHelper.COLUMN_USER_ID, USER_ID);
+                db.insert(DatabaseHelper.TABLE_NOTES, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void pooledConnectionBeatsOpenClosePerCall() {
+        // Warm up both paths once so class loading doesn't skew the first run
+        runOperations(true, 20);
+        runOperations(false, 20);
+
+        long perCallNanos = runOperations(true, OPERATIONS);
+        long pooledNanos = runOperations(false, OPERATIONS);
+
+        Log.i(TAG, "open/close per call: " + (perCallNanos / OPERATIONS / 1000) + " us/op");
+        Log.i(TAG, "pooled connection:   " + (pooledNanos / OPERATIONS / 1000) + " us/op");
+
+        assertTrue("Pooled mode should be faster than reopening the database on every call",
+                pooledNanos < perCallNanos);
+    }
+
+    /**
+     * Runs a read/write mix of {@link DatabaseHelper#getNoteById} and
+     * {@link DatabaseHelper#updateNote}, optionally closing the helper after
+     * every call the way the old code did.
+     */
+    private long runOperations(boolean closeAfterEachCall, int operations) {
+        Random random = new Random(42);
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < operations; i++) {
+            long noteId = 1 + random.nextInt(NOTE_COUNT);
+            Note note = helper.getNoteById(noteId);
+            assertNotNull(note);
+            if (closeAfterEachCall) {
+                helper.close();
+            }
+            helper.updateNote(noteId, note.getHeading(), note.getDetails() + ".");
+            if (closeAfterEachCall) {
+                helper.close();
+            }
+        }
+        return SystemClock.elapsedRealtimeNanos() - start;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Holds a write transaction open on the writer lane and checks that reads on
+ * the reader lanes still complete against the real WAL database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DbDispatcherConcurrencyTest {
+
+    private static final String DB_NAME = "dispatcher_notes.db";
+    private static final int READS = 20;
+
+    private Context context;
+    private DatabaseHelper helper;
+    private DbDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        // WAL needs a file-backed database
+        helper = new DatabaseHelper(context, DB_NAME);
+        for (int i = 0; i < 100; i++) {
+            helper.insertNote("Heading " + i, "Details " + i, 1);
+        }
+        dispatcher = new DbDispatcher(DbDispatcher.READER_LANES, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdownNow();
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void readsCompleteWhileWriteTransactionIsOpen() throws Exception {
+        final CountDownLatch transactionOpen = new CountDownLatch(1);
+        final CountDownLatch readsDone = new CountDownLatch(READS);
+
+        Future<Boolean> write = dispatcher.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws InterruptedException {
+                SQLiteDatabase db = helper.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    db.execSQL("UPDATE " + DatabaseHelper.TABLE_NOTES + " SET "
+                            + DatabaseHelper.COLUMN_DETAILS + " = 'edited'");
+                    transactionOpen.countDown();
+                    // The write lock is held until every read has finished
+                    boolean readsFinished = readsDone.await(5, TimeUnit.SECONDS);
+                    db.setTransactionSuccessful();
+                    return readsFinished;
+                } finally {
+                    db.endTransaction();
+                }
+            }
+        }, null);
+        assertTrue(transactionOpen.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < READS; i++) {
+            dispatcher.read(new Callable<List<NoteSummary>>() {
+                @Override
+                public List<NoteSummary> call() {
+                    return helper.getNotesPage(1, -1, 50);
+                }
+            }, new DbDispatcher.Callback<List<NoteSummary>>() {
+                @Override
+                public void onSuccess(List<NoteSummary> notes) {
+                    if (notes.size() == 50) {
+                        readsDone.countDown();
+                    }
+                }
+
+                @Override
+                public void onError(Exception e) {
+                }
+            });
+        }
+
+        assertTrue("Reads were blocked by the open write transaction", write.get(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stores, streams, edits and exports a 20 MB note. A single TEXT value of
+ * that size can't be read through the 2 MB CursorWindow at all.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LargeNoteTest {
+
+    private static final String TAG = "LargeNoteTest";
+    private static final String DB_NAME = "large_notes.db";
+    private static final int BODY_CHARS = 20 * 1024 * 1024;
+    private static final long USER_ID = 1;
+
+    private Context context;
+    private DatabaseHelper helper;
+    private String body;
+    private long noteId;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        StringBuilder text = new StringBuilder(BODY_CHARS);
+        for (int line = 0; text.length() < BODY_CHARS; line++) {
+            text.append("2024-01-01 12:00:00 INFO request ").append(line).append(" served in 12 ms\n");
+        }
+        text.setLength(BODY_CHARS);
+        body = text.toString();
+        noteId = helper.insertNote("Server log", body, USER_ID);
+        assertNotEquals(-1, noteId);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void largeBodyIsStoredInChunks() {
+        long chunks = DatabaseUtils.longForQuery(helper.getReadableDatabase(),
+                "SELECT " + NoteSql.COLUMN_CHUNK_COUNT + " FROM " + NoteSql.TABLE_NOTES
+                        + " WHERE " + NoteSql.COLUMN_ID + " = ?", new String[]{String.valueOf(noteId)});
+        assertEquals(BODY_CHARS / NoteSql.CHUNK_CHARS - 1, chunks);
+
+        List<NoteSummary> page = helper.getNotesPage(USER_ID, -1, 10);
+        assertEquals(NoteSummary.makePreview(body), page.get(0).getPreview());
+        assertEquals(1, helper.searchNotes(USER_ID, "served", 10).size());
+    }
+
+    @Test
+    public void chunksAreStoredCompressed() {
+        long chunks = BODY_CHARS / NoteSql.CHUNK_CHARS - 1;
+        assertEquals(chunks, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(),
+                NoteSql.TABLE_NOTE_CHUNKS, "typeof(" + NoteSql.COLUMN_BODY + ") = 'blob'", null));
+        long storedBytes = DatabaseUtils.longForQuery(helper.getReadableDatabase(),
+                "SELECT sum(length(" + NoteSql.COLUMN_BODY + ")) FROM " + NoteSql.TABLE_NOTE_CHUNKS, null);
+        Log.i(TAG, chunks * NoteSql.CHUNK_CHARS + " characters of chunks stored in " + storedBytes + " bytes");
+        assertTrue(storedBytes < chunks * NoteSql.CHUNK_CHARS / 2);
+    }
+
+    @Test
+    public void plainAndCompressedChunksReadBackTogether() {
+        // Rows written before compression was turned on stay plain
+        helper.setCompressionEnabled(false);
+        long plainId = helper.insertNote("Plain log", body, USER_ID);
+        helper.setCompressionEnabled(true);
+        assertEquals(0, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), NoteSql.TABLE_NOTE_CHUNKS,
+                NoteSql.COLUMN_NOTE_ID + " = ? AND typeof(" + NoteSql.COLUMN_BODY + ") = 'blob'",
+                new String[]{String.valueOf(plainId)}));
+
+        ChunkLayout layout = new ChunkLayout(NoteSql.CHUNK_CHARS);
+        final StringBuilder edited = new StringBuilder(BODY_CHARS);
+        loadInto(plainId, layout, edited);
+        int position = BODY_CHARS - 10;
+        edited.insert(position, "tail edit ");
+        layout.onTextChanged(position, 0, "tail edit ".length());
+        assertTrue(helper.updateNoteBody(plainId, null, layout.takeEdit(edited)));
+
+        assertEquals(edited.toString(), helper.getNoteById(plainId).getDetails());
+    }
+
+    @Test
+    public void streamingReadReturnsTheWholeBody() {
+        final StringBuilder read = new StringBuilder(BODY_CHARS);
+        final int[] chunks = {0};
+        Note note = helper.readNoteBody(noteId, new DatabaseHelper.ChunkReader() {
+            @Override
+            public void onChunk(long seq, String text) {
+                assertTrue(text.length() <= NoteSql.CHUNK_CHARS);
+                read.append(text);
+                chunks[0]++;
+            }
+        });
+        assertEquals("Server log", note.getHeading());
+        assertNull(note.getDetails());
+        assertEquals(BODY_CHARS / NoteSql.CHUNK_CHARS, chunks[0]);
+        assertTrue(body.contentEquals(read));
+
+        assertEquals(body, helper.getNoteById(noteId).getDetails());
+    }
+
+    @Test
+    public void smallEditRewritesOneChunk() {
+        ChunkLayout layout = loadLayout();
+        StringBuilder edited = new StringBuilder(body);
+        int position = BODY_CHARS / 2;
+        edited.insert(position, "edited ");
+        layout.onTextChanged(position, 0, "edited ".length());
+
+        ChunkLayout.Edit edit = layout.takeEdit(edited);
+        assertEquals(1, edit.writtenSeqs().size());
+        long start = SystemClock.elapsedRealtime();
+        assertTrue(helper.updateNoteBody(noteId, null, edit));
+        Log.i(TAG, "One-chunk edit of a 20 MB note saved in " + (SystemClock.elapsedRealtime() - start) + " ms");
+
+        assertEquals(edited.toString(), helper.getNoteById(noteId).getDetails());
+    }
+
+    @Test
+    public void purgingTheNoteDropsItsChunks() {
+        helper.deleteNoteById(noteId);
+        assertTrue(DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), NoteSql.TABLE_NOTE_CHUNKS) > 0);
+        assertEquals(1, helper.purgeNotes(USER_ID, new long[]{noteId}));
+        assertEquals(0, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), NoteSql.TABLE_NOTE_CHUNKS));
+    }
+
+    @Test
+    public void updateToShortBodyDropsChunks() {
+        assertTrue(helper.updateNote(noteId, "Server log", "short now"));
+        assertEquals(0, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), NoteSql.TABLE_NOTE_CHUNKS));
+        assertEquals("short now", helper.getNoteById(noteId).getDetails());
+    }
+
+    @Test
+    public void exportAndImportKeepTheWholeBody() throws IOException {
+        NoteTransfer transfer = new NoteTransfer(helper);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, transfer.exportNotes(USER_ID, out));
+        assertEquals(1, transfer.importNotes(USER_ID + 1, new ByteArrayInputStream(out.toByteArray())));
+
+        List<NoteSummary> imported = helper.getNotesPage(USER_ID + 1, -1, 10);
+        assertEquals(body, helper.getNoteById(imported.get(0).getId()).getDetails());
+    }
+
+    private ChunkLayout loadLayout() {
+        ChunkLayout layout = new ChunkLayout(NoteSql.CHUNK_CHARS);
+        loadInto(noteId, layout, new StringBuilder());
+        return layout;
+    }
+
+    private void loadInto(long id, final ChunkLayout layout, final StringBuilder text) {
+        helper.readNoteBody(id, new DatabaseHelper.ChunkReader() {
+            @Override
+            public void onChunk(long seq, String chunk) {
+                layout.append(seq, chunk.length());
+                text.append(chunk);
+            }
+        });
+    }
+}
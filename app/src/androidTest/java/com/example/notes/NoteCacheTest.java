@@ -0,0 +1,81 @@
+package com.example.notes;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link DatabaseHelper#getNoteById} reads through the shared
+ * {@link NoteCache} and that writes invalidate exactly the note they touch.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteCacheTest {
+
+    private DatabaseHelper helper;
+    private NoteCache cache;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        cache = helper.getNoteCache();
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void secondOpenIsServedFromCache() {
+        long id = helper.insertNote("Heading", "Details", 1);
+
+        assertEquals("Details", helper.getNoteById(id).getDetails());
+        assertEquals("Details", helper.getNoteById(id).getDetails());
+
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    public void updateInvalidatesOnlyThatNote() {
+        long first = helper.insertNote("First", "One", 1);
+        long second = helper.insertNote("Second", "Two", 1);
+        helper.getNoteById(first);
+        helper.getNoteById(second);
+
+        helper.updateNote(first, "First", "One, edited");
+
+        assertEquals("One, edited", helper.getNoteById(first).getDetails());
+        int hitsBefore = cache.hitCount();
+        helper.getNoteById(second);
+        assertEquals(hitsBefore + 1, cache.hitCount());
+    }
+
+    @Test
+    public void purgeInvalidates() {
+        long id = helper.insertNote("Heading", "Details", 1);
+        helper.getNoteById(id);
+
+        helper.deleteNoteById(id);
+        assertEquals(1, helper.purgeNotes(1, new long[]{id}));
+
+        assertNull(helper.getNoteById(id));
+    }
+
+    @Test
+    public void callersCannotCorruptCachedCopy() {
+        long id = helper.insertNote("Heading", "Details", 1);
+        helper.getNoteById(id).setDetails("mutated");
+
+        assertEquals("Details", helper.getNoteById(id).getDetails());
+    }
+}
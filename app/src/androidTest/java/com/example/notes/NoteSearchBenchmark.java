@@ -0,0 +1,131 @@
+package com.example.notes;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures {@link DatabaseHelper#searchNotes} latency on a 50k-note account,
+ * with another account's notes in the same table. Results are written to
+ * logcat under the "NoteSearchBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteSearchBenchmark {
+
+    private static final String TAG = "NoteSearchBenchmark";
+    private static final String DB_NAME = "benchmark_search.db";
+    private static final int NOTE_COUNT = 50_000;
+    private static final long USER_ID = 1;
+    private static final long OTHER_USER_ID = 2;
+    private static final String UNIQUE_WORD = "zephyrquartz";
+    private static final long MAX_MEDIAN_MILLIS = 100;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        String[] vocabulary = new String[2_000];
+        Random random = new Random(7);
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = randomWord(random);
+        }
+
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < NOTE_COUNT; i++) {
+                values.put(DatabaseHelper.COLUMN_HEADING, sentence(random, vocabulary, 4));
+                values.put(DatabaseHelper.COLUMN_DETAILS, sentence(random, vocabulary, 60));
+                values.put(DatabaseHelper.COLUMN_USER_ID, i % 10 == 0 ? OTHER_USER_ID : USER_ID);
+                db.insert(DatabaseHelper.TABLE_NOTES, null, values);
+            }
+            values.put(DatabaseHelper.COLUMN_HEADING, "Needle");
+            values.put(DatabaseHelper.COLUMN_DETAILS, "The " + UNIQUE_WORD + " is here");
+            values.put(DatabaseHelper.COLUMN_USER_ID, USER_ID);
+            db.insert(DatabaseHelper.TABLE_NOTES, null, values);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void findsUniqueWordByPrefix() {
+        List<NoteSummary> results = helper.searchNotes(USER_ID, UNIQUE_WORD.substring(0, 5), 20);
+        assertEquals(1, results.size());
+        assertEquals("Needle", results.get(0).getHeading());
+
+        assertTrue(helper.searchNotes(OTHER_USER_ID, UNIQUE_WORD, 20).isEmpty());
+    }
+
+    @Test
+    public void searchLatencyAt50kNotes() {
+        String[] queries = {"a", "ka", "mo", "tel", "ri", "sun", "x", "zephyr"};
+        long[] millis = new long[queries.length * 5];
+        int run = 0;
+        for (int repeat = 0; repeat < 5; repeat++) {
+            for (String query : queries) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                helper.searchNotes(USER_ID, query, 50);
+                millis[run++] = (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000;
+            }
+        }
+        Arrays.sort(millis);
+        long median = millis[millis.length / 2];
+        long worst = millis[millis.length - 1];
+        Log.i(TAG, "search over " + NOTE_COUNT + " notes: median " + median + " ms, max " + worst + " ms");
+
+        assertTrue("Median search latency " + median + " ms exceeds " + MAX_MEDIAN_MILLIS + " ms",
+                median <= MAX_MEDIAN_MILLIS);
+    }
+
+    private static String randomWord(Random random) {
+        String syllables = "ka mo te ri su na lo vi pe da xe gu";
+        String[] parts = syllables.split(" ");
+        StringBuilder word = new StringBuilder();
+        int length = 2 + random.nextInt(3);
+        for (int i = 0; i < length; i++) {
+            word.append(parts[random.nextInt(parts.length)]);
+        }
+        return word.toString();
+    }
+
+    private static String sentence(Random random, String[] vocabulary, int words) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(vocabulary[random.nextInt(vocabulary.length)]);
+        }
+        return sentence.toString();
+    }
+}
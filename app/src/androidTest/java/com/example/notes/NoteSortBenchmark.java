@@ -0,0 +1,143 @@
+package com.example.notes;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pages through a 50k-note account in every list order and measures what
+ * switching order costs. Results are written to logcat under the
+ * "NoteSortBenchmark" tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteSortBenchmark {
+
+    private static final String TAG = "NoteSortBenchmark";
+    private static final String DB_NAME = "benchmark_sort.db";
+    private static final int NOTE_COUNT = 50_000;
+    private static final long USER_ID = 1;
+    private static final long OTHER_USER_ID = 2;
+    private static final long MAX_MEDIAN_MILLIS = 20;
+    private static final int[] SORTS = {DatabaseHelper.SORT_NEWEST, DatabaseHelper.SORT_RECENTLY_EDITED,
+            DatabaseHelper.SORT_OLDEST, DatabaseHelper.SORT_TITLE};
+    private static final String[] TITLES = {"Groceries", "groceries", "Meeting", "meeting notes", "Äpfel",
+            "Budget", "budget 2024", "", "Trip plan", "Zebra facts"};
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+
+        // Titles repeat and edit times collide, so the id tiebreakers get exercised
+        Random random = new Random(11);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < NOTE_COUNT; i++) {
+                String title = random.nextInt(50) == 0 ? null
+                        : TITLES[random.nextInt(TITLES.length)] + " " + random.nextInt(100);
+                long time = 1_700_000_000_000L + random.nextInt(10_000) * 1000L;
+                values.put(DatabaseHelper.COLUMN_HEADING, title);
+                values.put(DatabaseHelper.COLUMN_DETAILS, "Details " + i);
+                values.put(DatabaseHelper.COLUMN_PREVIEW, "Details " + i);
+                values.put(DatabaseHelper.COLUMN_USER_ID, i % 10 == 0 ? OTHER_USER_ID : USER_ID);
+                values.put(DatabaseHelper.COLUMN_CREATED_AT, time);
+                values.put(DatabaseHelper.COLUMN_UPDATED_AT, time);
+                db.insert(DatabaseHelper.TABLE_NOTES, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void everyOrderPagesThroughAllNotesInOrder() {
+        List<NoteSummary> all = loadAll(DatabaseHelper.SORT_NEWEST);
+        for (int sort : SORTS) {
+            List<NoteSummary> paged = loadAll(sort);
+            assertEquals(all.size(), paged.size());
+
+            // The list places changed rows with the same order, so it has to agree with SQLite
+            List<NoteSummary> sorted = new ArrayList<>(paged);
+            Collections.shuffle(sorted, new Random(sort));
+            Collections.sort(sorted, NoteSummary.listOrder(sort));
+            for (int i = 0; i < paged.size(); i++) {
+                assertEquals("order " + sort + " at " + i, sorted.get(i).getId(), paged.get(i).getId());
+            }
+        }
+    }
+
+    @Test
+    public void editingMovesNoteToTopOfRecentlyEdited() {
+        List<NoteSummary> oldest = helper.getNotesPage(USER_ID, DatabaseHelper.SORT_OLDEST, null, 1);
+        long noteId = oldest.get(0).getId();
+
+        assertTrue(helper.updateNote(noteId, "Edited", "Just now"));
+
+        NoteSummary top = helper.getNotesPage(USER_ID, DatabaseHelper.SORT_RECENTLY_EDITED, null, 1).get(0);
+        assertEquals(noteId, top.getId());
+        assertTrue(top.getUpdatedAt() > 1_700_000_000_000L + 10_000 * 1000L);
+    }
+
+    @Test
+    public void switchingOrderLatencyAt50kNotes() {
+        long[] millis = new long[SORTS.length * 10];
+        int run = 0;
+        for (int repeat = 0; repeat < 10; repeat++) {
+            for (int sort : SORTS) {
+                long start = SystemClock.elapsedRealtimeNanos();
+                helper.getNotesPage(USER_ID, sort, null, MainActivity.PAGE_SIZE);
+                millis[run++] = (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000;
+            }
+        }
+        Arrays.sort(millis);
+        long median = millis[millis.length / 2];
+        long worst = millis[millis.length - 1];
+        Log.i(TAG, "first page after switching order over " + NOTE_COUNT + " notes: median "
+                + median + " ms, max " + worst + " ms");
+
+        assertTrue("Median first page latency " + median + " ms exceeds " + MAX_MEDIAN_MILLIS + " ms",
+                median <= MAX_MEDIAN_MILLIS);
+    }
+
+    private List<NoteSummary> loadAll(int sort) {
+        List<NoteSummary> notes = new ArrayList<>();
+        List<NoteSummary> page = helper.getNotesPage(USER_ID, sort, null, 500);
+        while (!page.isEmpty()) {
+            notes.addAll(page);
+            page = helper.getNotesPage(USER_ID, sort, page.get(page.size() - 1), 500);
+        }
+        return notes;
+    }
+}
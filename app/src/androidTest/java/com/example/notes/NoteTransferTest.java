@@ -0,0 +1,178 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * Exports and re-imports 100k notes through {@link NoteTransfer} and checks
+ * that the live heap stays under a fixed budget the whole time. Fully
+ * materialising the collection would need several times that budget.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NoteTransferTest {
+
+    private static final String TAG = "NoteTransferTest";
+    private static final String DB_NAME = "transfer_notes.db";
+    private static final int NOTE_COUNT = 100_000;
+    private static final long SOURCE_USER_ID = 1;
+    private static final long TARGET_USER_ID = 2;
+    // 100k notes of ~400 characters are ~80 MB as Java strings
+    private static final long HEAP_BUDGET_BYTES = 24L * 1024 * 1024;
+    private static final int SAMPLE_EVERY_BYTES = 1024 * 1024;
+
+    private Context context;
+    private DatabaseHelper helper;
+    private File exportFile;
+    private long baselineHeap;
+    private long peakHeap;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+        exportFile = new File(context.getCacheDir(), "notes-export.ndjson");
+
+        // Generated lazily so seeding itself stays in constant memory
+        helper.bulkInsertNotes(SOURCE_USER_ID, new Iterable<Note>() {
+            @Override
+            public Iterator<Note> iterator() {
+                return new Iterator<Note>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < NOTE_COUNT;
+                    }
+
+                    @Override
+                    public Note next() {
+                        return makeNote(next++);
+                    }
+                };
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+        exportFile.delete();
+    }
+
+    @Test
+    public void exportAndImportRunInConstantMemory() throws IOException {
+        NoteTransfer transfer = new NoteTransfer(helper);
+        baselineHeap = liveHeap();
+        peakHeap = baselineHeap;
+
+        int exported;
+        try (OutputStream out = new SamplingOutputStream(
+                new BufferedOutputStream(new FileOutputStream(exportFile)))) {
+            exported = transfer.exportNotes(SOURCE_USER_ID, out);
+        }
+        assertEquals(NOTE_COUNT, exported);
+
+        int imported;
+        try (InputStream in = new SamplingInputStream(
+                new BufferedInputStream(new FileInputStream(exportFile)))) {
+            imported = transfer.importNotes(TARGET_USER_ID, in);
+        }
+        assertEquals(NOTE_COUNT, imported);
+
+        long growth = peakHeap - baselineHeap;
+        Log.i(TAG, "export file " + (exportFile.length() / 1024) + " KB, peak heap growth "
+                + (growth / 1024) + " KB");
+        assertTrue("Heap grew by " + growth + " bytes", growth < HEAP_BUDGET_BYTES);
+
+        assertEquals(NOTE_COUNT, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(),
+                DatabaseHelper.TABLE_NOTES, DatabaseHelper.COLUMN_USER_ID + " = ?",
+                new String[]{String.valueOf(TARGET_USER_ID)}));
+        NoteSummary newest = helper.getNotesPage(TARGET_USER_ID, -1, 1).get(0);
+        assertEquals(makeNote(NOTE_COUNT - 1).getHeading(), newest.getHeading());
+    }
+
+    private static Note makeNote(int index) {
+        StringBuilder details = new StringBuilder("Note \"" + index + "\"\n");
+        while (details.length() < 400) {
+            details.append("lorem ipsum dolor sit amet ");
+        }
+        Note note = new Note();
+        note.setHeading("Heading " + index);
+        note.setDetails(details.toString());
+        return note;
+    }
+
+    private static long liveHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private void sample() {
+        peakHeap = Math.max(peakHeap, liveHeap());
+    }
+
+    private class SamplingOutputStream extends FilterOutputStream {
+        private long sinceSample;
+
+        SamplingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            sinceSample += len;
+            if (sinceSample >= SAMPLE_EVERY_BYTES) {
+                sinceSample = 0;
+                sample();
+            }
+        }
+    }
+
+    private class SamplingInputStream extends FilterInputStream {
+        private long sinceSample;
+
+        SamplingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                sinceSample += read;
+                if (sinceSample >= SAMPLE_EVERY_BYTES) {
+                    sinceSample = 0;
+                    sample();
+                }
+            }
+            return read;
+        }
+    }
+}
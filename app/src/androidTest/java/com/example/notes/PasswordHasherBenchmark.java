@@ -0,0 +1,56 @@
+package com.example.notes;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how long one PBKDF2 hash takes on this device across work
+ * factors, next to what calibration picks for the login budget. Read the
+ * numbers from logcat (tag PasswordHasherBenchmark) when tuning
+ * {@link PasswordHasher#TARGET_MILLIS} or {@link PasswordHasher#MIN_ITERATIONS}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PasswordHasherBenchmark {
+
+    private static final String TAG = "PasswordHasherBenchmark";
+    private static final int[] WORK_FACTORS = {10_000, 50_000, 100_000, 200_000, 400_000, 800_000};
+    private static final int RUNS = 5;
+
+    @Test
+    public void hashCostAcrossWorkFactors() {
+        // Warm up the provider and JIT before timing anything
+        new PasswordHasher(WORK_FACTORS[0]).hash("warm up");
+
+        for (int iterations : WORK_FACTORS) {
+            PasswordHasher hasher = new PasswordHasher(iterations);
+            long best = Long.MAX_VALUE;
+            long total = 0;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                hasher.hash("correct horse battery staple");
+                long elapsed = System.nanoTime() - start;
+                best = Math.min(best, elapsed);
+                total += elapsed;
+            }
+            Log.i(TAG, iterations + " iterations: best " + best / 1_000_000 + " ms, mean "
+                    + total / RUNS / 1_000_000 + " ms");
+        }
+
+        int calibrated = PasswordHasher.calibrate(PasswordHasher.TARGET_MILLIS);
+        PasswordHasher hasher = new PasswordHasher(calibrated);
+        long start = System.nanoTime();
+        String stored = hasher.hash("correct horse battery staple");
+        long hashMillis = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        assertTrue(PasswordHasher.verify("correct horse battery staple", stored));
+        long verifyMillis = (System.nanoTime() - start) / 1_000_000;
+        Log.i(TAG, "calibrated to " + calibrated + " iterations for " + PasswordHasher.TARGET_MILLIS
+                + " ms: hash " + hashMillis + " ms, verify " + verifyMillis + " ms");
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.notes;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs EXPLAIN QUERY PLAN on every statement {@link DatabaseHelper} issues and
+ * fails if a hot query scans a whole table or sorts through a temp B-tree.
+ * Scans of the FTS virtual table are expected and allowed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+
+    private DatabaseHelper helper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        db = helper.getWritableDatabase();
+
+        // A few rows for two users so the planner has something to look at
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < 20; i++) {
+            values.put(DatabaseHelper.COLUMN_HEADING, "Heading " + i);
+            values.put(DatabaseHelper.COLUMN_DETAILS, "Details " + i);
+            values.put(DatabaseHelper.COLUMN_USER_ID, i % 2 + 1);
+            db.insert(DatabaseHelper.TABLE_NOTES, null, values);
+        }
+        db.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void userLookupUsesUsernameIndex() {
+        assertIndexed(NoteSql.SQL_USER_BY_NAME, "alice");
+    }
+
+    @Test
+    public void noteByIdUsesPrimaryKey() {
+        assertIndexed(NoteSql.SQL_NOTE_BY_ID, "1");
+        assertIndexed(NoteSql.SQL_NOTE_CHUNKS, "1");
+    }
+
+    @Test
+    public void noteListsUseUserIndexWithoutSorting() {
+        assertIndexed(NoteSql.SQL_ALL_NOTES, "1");
+        assertIndexed(NoteSql.SQL_NOTES_PAGE, "1", String.valueOf(Long.MAX_VALUE), "50");
+        assertIndexed(NoteSql.SQL_EXPORT_NOTES, "1");
+    }
+
+    @Test
+    public void everySortOrderPagesThroughAnIndex() {
+        NoteSummary after = new NoteSummary(10, "Heading 10", null, 0);
+        int[] sorts = {NoteSql.SORT_NEWEST, NoteSql.SORT_RECENTLY_EDITED, NoteSql.SORT_OLDEST, NoteSql.SORT_TITLE};
+        for (int sort : sorts) {
+            assertIndexed(NoteSql.notesPageSql(sort), NoteSql.notesPageArgs(sort, 1, null, 50));
+            assertIndexed(NoteSql.notesPageSql(sort), NoteSql.notesPageArgs(sort, 1, after, 50));
+        }
+        assertTrue(explain(NoteSql.SQL_NOTES_PAGE_EDITED, NoteSql.notesPageArgs(
+                NoteSql.SORT_RECENTLY_EDITED, 1, null, 50)).toString().contains("idx_notes_updated"));
+        assertTrue(explain(NoteSql.SQL_NOTES_PAGE_TITLE, NoteSql.notesPageArgs(
+                NoteSql.SORT_TITLE, 1, null, 50)).toString().contains("idx_notes_title"));
+    }
+
+    @Test
+    public void notePageSkipsTrashThroughPartialIndex() {
+        List<String> plan = explain(NoteSql.SQL_NOTES_PAGE, "1", String.valueOf(Long.MAX_VALUE), "50");
+        assertTrue("Page should use the live-notes index: " + plan, plan.toString().contains("idx_notes_live"));
+    }
+
+    @Test
+    public void trashQueriesUseTrashIndexes() {
+        assertIndexed(NoteSql.SQL_TRASHED_NOTES, "1", "50");
+        assertIndexed(NoteSql.SQL_EXPIRED_TRASH, "0", "100");
+        assertIndexed(NoteSql.purgeExpiredSql(3), "1", "3", "5");
+    }
+
+    @Test
+    public void searchUsesFtsIndexAndPrimaryKey() {
+        assertIndexed(NoteSql.SQL_SEARCH_NOTES, "head*", "1");
+        assertIndexed(NoteSql.summariesByIdSql(3), "1", "2", "3");
+        // Before the index is backfilled the scan stays within the user's live notes
+        assertIndexed(NoteSql.searchNotesLikeSql(2), "1", "%head%", "%head%", "%1%", "%1%", "50");
+    }
+
+    @Test
+    public void writesByIdUsePrimaryKey() {
+        assertIndexed(NoteSql.SQL_UPDATE_NOTE, "h", "d", "p", "0", "1");
+        assertIndexed(NoteSql.SQL_TRASH_NOTE, "1", "1");
+        assertIndexed(NoteSql.ownedNoteIdsSql(3, false), "1", "1", "3", "5");
+        assertIndexed(NoteSql.ownedNoteIdsSql(3, true), "1", "1", "3", "5");
+        assertIndexed(NoteSql.trashNotesSql(3), "1", "1", "1", "3", "5");
+        assertIndexed(NoteSql.restoreNotesSql(3), "1", "1", "3", "5");
+        assertIndexed(NoteSql.purgeNotesSql(3), "1", "1", "3", "5");
+    }
+
+    @Test
+    public void syncQueriesUseIndexes() {
+        assertIndexed(NoteSql.SQL_LOG_CHANGE, "0", "1");
+        assertIndexed(NoteSql.logChangesSql(3), "0", "1", "3", "5");
+        assertIndexed(NoteSql.SQL_PENDING_CHANGES, "1", "100");
+        assertIndexed(NoteSql.SQL_ACKNOWLEDGE_CHANGES, "1", "100");
+        assertIndexed(NoteSql.SQL_NOTE_BY_SYNC_ID, "1", "0b0e2c3e-0000-4000-8000-000000000000");
+        assertIndexed(NoteSql.SQL_PENDING_CHANGE_AT, "1");
+        assertIndexed(NoteSql.SQL_DROP_PENDING_CHANGE, "1");
+        assertIndexed(NoteSql.SQL_PENDING_CHANGE_AT_BY_SYNC_ID, "1", "0b0e2c3e-0000-4000-8000-000000000000");
+        assertIndexed(NoteSql.SQL_DROP_PENDING_CHANGE_BY_SYNC_ID, "1", "0b0e2c3e-0000-4000-8000-000000000000");
+        assertIndexed(NoteSql.SQL_SYNC_CURSOR, "1");
+    }
+
+    private void assertIndexed(String sql, String... args) {
+        List<String> plan = explain(sql, args);
+        assertFalse("No plan for " + sql, plan.isEmpty());
+        for (String detail : plan) {
+            assertFalse("Temp B-tree sort in plan for " + sql + ": " + plan,
+                    detail.contains("TEMP B-TREE"));
+            boolean fullScan = detail.startsWith("SCAN") && !detail.contains("VIRTUAL TABLE");
+            assertFalse("Full scan in plan for " + sql + ": " + plan, fullScan);
+        }
+    }
+
+    private List<String> explain(String sql, String... args) {
+        List<String> details = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args)) {
+            int detailColumn = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                details.add(cursor.getString(detailColumn));
+            }
+        }
+        return details;
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.notes;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Builds a database as it looked at every past schema version, opens it with
+ * the current {@link DatabaseHelper} and checks that no user or note was lost
+ * or changed on the way up.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SchemaMigrationTest {
+
+    private static final String DB_NAME = "migration_notes.db";
+    private static final int CURRENT_VERSION = 9;
+    private static final int NOTE_COUNT = 1200;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (helper != null) {
+            helper.close();
+        }
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void upgradeFromEveryPastVersionKeepsData() {
+        for (int version = SchemaMigrations.OLDEST_MIGRATABLE_VERSION; version < CURRENT_VERSION; version++) {
+            createDatabaseAt(version);
+
+            helper = new DatabaseHelper(context, DB_NAME);
+            SQLiteDatabase db = helper.getWritableDatabase();
+            assertEquals(CURRENT_VERSION, db.getVersion());
+            while (helper.runBackfillBatch()) {
+                // Drain the backfills the upgrade queued
+            }
+
+            assertEquals("users after upgrade from " + version, 2,
+                    DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_USERS));
+            assertEquals("notes after upgrade from " + version, NOTE_COUNT,
+                    DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NOTES));
+            assertNotesUnchanged(db, version);
+            // The structures later versions added work on the migrated rows
+            assertEquals(NOTE_COUNT / 2, helper.searchNotes(1, "heading", NOTE_COUNT).size());
+            List<NoteSummary> page = helper.getNotesPage(2, -1, 1);
+            assertEquals(NoteSummary.makePreview(details(NOTE_COUNT - 1)), page.get(0).getPreview());
+            // Notes from before timestamps fall back to id order when sorted by edit time
+            page = helper.getNotesPage(2, DatabaseHelper.SORT_RECENTLY_EDITED, null, 1);
+            assertEquals(NoteSummary.makePreview(details(NOTE_COUNT - 1)), page.get(0).getPreview());
+            assertEquals(1, helper.getNotesPage(2, DatabaseHelper.SORT_TITLE, null, 1).size());
+            // Every existing note has a sync id and waits for its first upload
+            assertEquals(0, DatabaseUtils.queryNumEntries(db, DatabaseHelper.TABLE_NOTES,
+                    DatabaseHelper.COLUMN_SYNC_ID + " IS NULL"));
+            assertEquals(NOTE_COUNT / 2, helper.getPendingChanges(2, NOTE_COUNT).size());
+
+            helper.close();
+            helper = null;
+            context.deleteDatabase(DB_NAME);
+        }
+    }
+
+    @Test
+    public void previewBackfillResumesAfterRestart() {
+        createDatabaseAt(3);
+
+        helper = new DatabaseHelper(context, DB_NAME);
+        // The notes were added after version 3, so the triggers indexed them and the
+        // search index backfill finishes in its first batch
+        assertTrue(helper.runBackfillBatch());
+        assertTrue(helper.runBackfillBatch());
+        assertEquals(NOTE_COUNT - DatabaseHelper.BACKFILL_BATCH_SIZE, notesWithoutPreview());
+
+        // Simulate the process dying between batches
+        helper.close();
+        helper = new DatabaseHelper(context, DB_NAME);
+        int batches = 0;
+        while (helper.runBackfillBatch()) {
+            batches++;
+        }
+
+        assertEquals(0, notesWithoutPreview());
+        // 1200 notes at 500 per batch: two more batches plus the one that finds nothing left,
+        // then three and an empty one for the sync ids version 9 queued
+        assertEquals(7, batches);
+        assertEquals(0, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(),
+                SchemaMigrations.TABLE_PENDING_BACKFILLS));
+    }
+
+    @Test
+    public void previewBackfillPublishesFilledNotes() {
+        createDatabaseAt(3);
+        helper = new DatabaseHelper(context, DB_NAME);
+        final List<long[]> events = new ArrayList<>();
+        helper.getChangeBus().register(new NoteChangeBus.Listener() {
+            @Override
+            public void onNoteInserted(long noteId) {
+            }
+
+            @Override
+            public void onNoteUpdated(long noteId) {
+            }
+
+            @Override
+            public void onNoteDeleted(long noteId) {
+            }
+
+            @Override
+            public void onNotesDeleted(long[] noteIds) {
+            }
+
+            @Override
+            public void onNotesRestored(long[] noteIds) {
+            }
+
+            @Override
+            public void onNotesUpdated(long[] noteIds) {
+                events.add(noteIds);
+            }
+        });
+
+        while (helper.runBackfillBatch()) {
+            // Drain the backfills the upgrade queued
+        }
+
+        // One event per preview batch; the search index and sync ids change nothing the list shows
+        assertEquals(3, events.size());
+        Set<Long> published = new HashSet<>();
+        for (long[] batch : events) {
+            assertTrue(batch.length <= DatabaseHelper.BACKFILL_BATCH_SIZE);
+            for (long noteId : batch) {
+                published.add(noteId);
+            }
+        }
+        assertEquals(NOTE_COUNT, published.size());
+    }
+
+    @Test
+    public void searchWorksWhileIndexIsBackfilled() {
+        createDatabaseAt(2);
+
+        helper = new DatabaseHelper(context, DB_NAME);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        assertTrue(SchemaMigrations.isBackfillPending(db, SchemaMigrations.BACKFILL_SEARCH_INDEX));
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, NoteSql.TABLE_NOTES_FTS_DOCSIZE));
+        assertEquals(NOTE_COUNT / 2, helper.searchNotes(1, "heading", NOTE_COUNT).size());
+
+        // Half indexed, with one note the backfill has not reached edited in between
+        assertTrue(helper.runBackfillBatch());
+        long lastId = NOTE_COUNT;
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_NOTES + " SET " + DatabaseHelper.COLUMN_HEADING
+                + " = 'Renamed' WHERE " + DatabaseHelper.COLUMN_ID + " = ?", new Object[]{lastId});
+        assertEquals(NOTE_COUNT / 2, helper.searchNotes(1, "heading", NOTE_COUNT).size());
+        assertEquals(1, helper.searchNotes(2, "renamed", 10).size());
+
+        while (helper.runBackfillBatch()) {
+            // Finish indexing and the other backfills
+        }
+        assertFalse(SchemaMigrations.isBackfillPending(db, SchemaMigrations.BACKFILL_SEARCH_INDEX));
+        assertEquals(NOTE_COUNT, DatabaseUtils.queryNumEntries(db, NoteSql.TABLE_NOTES_FTS_DOCSIZE));
+        assertEquals(NOTE_COUNT / 2, helper.searchNotes(1, "heading", NOTE_COUNT).size());
+        assertEquals(NOTE_COUNT / 2 - 1, helper.searchNotes(2, "heading", NOTE_COUNT).size());
+        List<NoteSummary> renamed = helper.searchNotes(2, "renamed", 10);
+        assertEquals(1, renamed.size());
+        assertEquals(lastId, renamed.get(0).getId());
+    }
+
+    @Test
+    public void freshInstallHasNoBackfills() {
+        helper = new DatabaseHelper(context, DB_NAME);
+        helper.getWritableDatabase();
+        assertFalse(helper.runBackfillBatch());
+    }
+
+    /** Creates the oldest schema, migrates it to {@code version} and fills it with users and notes. */
+    private void createDatabaseAt(int version) {
+        File path = context.getDatabasePath(DB_NAME);
+        path.getParentFile().mkdirs();
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(path, null);
+        try {
+            SchemaMigrations.createVersion2Schema(db);
+            SchemaMigrations.migrate(db, SchemaMigrations.OLDEST_MIGRATABLE_VERSION, version);
+
+            ContentValues values = new ContentValues();
+            for (int user = 1; user <= 2; user++) {
+                values.clear();
+                values.put(DatabaseHelper.COLUMN_USERNAME, "user" + user);
+                values.put(DatabaseHelper.COLUMN_PASSWORD, "secret" + user);
+                db.insertOrThrow(DatabaseHelper.TABLE_USERS, null, values);
+            }
+            db.beginTransaction();
+            try {
+                for (int i = 0; i < NOTE_COUNT; i++) {
+                    values.clear();
+                    values.put(DatabaseHelper.COLUMN_HEADING, "Heading " + i);
+                    values.put(DatabaseHelper.COLUMN_DETAILS, details(i));
+                    values.put(DatabaseHelper.COLUMN_USER_ID, i % 2 + 1);
+                    db.insertOrThrow(DatabaseHelper.TABLE_NOTES, null, values);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            db.setVersion(version);
+        } finally {
+            db.close();
+        }
+    }
+
+    private void assertNotesUnchanged(SQLiteDatabase db, int fromVersion) {
+        try (Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.COLUMN_HEADING + ", "
+                + DatabaseHelper.COLUMN_DETAILS + ", " + DatabaseHelper.COLUMN_USER_ID
+                + " FROM " + DatabaseHelper.TABLE_NOTES
+                + " ORDER BY " + DatabaseHelper.COLUMN_ID, null)) {
+            int i = 0;
+            while (cursor.moveToNext()) {
+                String message = "note " + i + " after upgrade from " + fromVersion;
+                assertEquals(message, "Heading " + i, cursor.getString(0));
+                assertEquals(message, details(i), cursor.getString(1));
+                assertEquals(message, i % 2 + 1, cursor.getLong(2));
+                i++;
+            }
+            assertEquals(NOTE_COUNT, i);
+        }
+        try (Cursor cursor = db.rawQuery(NoteSql.SQL_USER_BY_NAME, new String[]{"user2"})) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("secret2", cursor.getString(2));
+        }
+    }
+
+    private long notesWithoutPreview() {
+        return DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), DatabaseHelper.TABLE_NOTES,
+                DatabaseHelper.COLUMN_PREVIEW + " IS NULL");
+    }
+
+    private static String details(int index) {
+        return "Details of note " + index + "\n\twith  some   whitespace";
+    }
+}
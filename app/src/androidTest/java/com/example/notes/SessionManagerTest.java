@@ -0,0 +1,91 @@
+package com.example.notes;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that {@link SessionManager} serves the login state from memory,
+ * tells listeners about changes and persists them for the next process.
+ * Fresh instances stand in for a restarted process.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SessionManagerTest {
+
+    private Context context;
+    private SessionManager sessionManager;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        sessionManager = new SessionManager(context);
+        sessionManager.logout();
+    }
+
+    @After
+    public void tearDown() {
+        sessionManager.logout();
+    }
+
+    @Test
+    public void loginIsVisibleImmediatelyAndNotifiesListeners() {
+        final List<SessionManager.Session> seen = new ArrayList<>();
+        sessionManager.addListener(new SessionManager.Listener() {
+            @Override
+            public void onSessionChanged(SessionManager.Session session) {
+                seen.add(session);
+            }
+        });
+
+        sessionManager.createLoginSession(42, "alice");
+
+        assertTrue(sessionManager.isLoggedIn());
+        assertEquals(42, sessionManager.getUserId());
+        assertEquals("alice", sessionManager.getUsername());
+        assertEquals(1, seen.size());
+        assertSame(sessionManager.getSession(), seen.get(0));
+
+        sessionManager.logout();
+
+        assertFalse(sessionManager.isLoggedIn());
+        assertEquals(-1, sessionManager.getUserId());
+        assertEquals(2, seen.size());
+        assertFalse(seen.get(1).isLoggedIn());
+    }
+
+    @Test
+    public void readsReturnTheSameSnapshotUntilItChanges() {
+        sessionManager.createLoginSession(7, "bob");
+        SessionManager.Session before = sessionManager.getSession();
+
+        assertSame(before, sessionManager.getSession());
+        sessionManager.createLoginSession(8, "carol");
+        assertNotSame(before, sessionManager.getSession());
+        // Snapshots never change once handed out
+        assertEquals(7, before.getUserId());
+    }
+
+    @Test
+    public void stateSurvivesARestart() {
+        sessionManager.createLoginSession(42, "alice");
+
+        SessionManager restarted = new SessionManager(context);
+        assertTrue(restarted.isLoggedIn());
+        assertEquals(42, restarted.getUserId());
+        assertEquals("alice", restarted.getUsername());
+
+        sessionManager.logout();
+        assertFalse(new SessionManager(context).isLoggedIn());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.notes;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Launches the app as a logged-in user and checks the cold-start path: the
+ * splash prefetches the first page, routes as soon as it has it, and the
+ * first page of notes is drawn within {@link #FIRST_PAGE_BUDGET_MS}.
+ *
+ * Uses the app's real database and session, and removes what it added.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupTest {
+
+    private static final String TAG = "StartupTest";
+    // The splash used to wait this long before doing anything at all
+    private static final long FIRST_PAGE_BUDGET_MS = 1000;
+    private static final long TIMEOUT_MS = 10_000;
+
+    private Instrumentation instrumentation;
+    private Context context;
+    private DatabaseHelper helper;
+    private long userId;
+    private Activity mainActivity;
+
+    @Before
+    public void setUp() {
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        context = instrumentation.getTargetContext();
+        helper = DatabaseHelper.getInstance(context);
+
+        String username = "startup-test-" + System.nanoTime();
+        userId = helper.addUser(new User(username, "secret"));
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < MainActivity.PAGE_SIZE * 2; i++) {
+            Note note = new Note();
+            note.setHeading("Startup note " + i);
+            note.setDetails("Details " + i);
+            notes.add(note);
+        }
+        helper.bulkInsertNotes(userId, notes);
+        SessionManager.getInstance(context).createLoginSession(userId, username);
+    }
+
+    @After
+    public void tearDown() {
+        if (mainActivity != null) {
+            mainActivity.finish();
+        }
+        helper.getWritableDatabase().delete(DatabaseHelper.TABLE_NOTES,
+                DatabaseHelper.COLUMN_USER_ID + " = ?", new String[]{String.valueOf(userId)});
+        helper.getWritableDatabase().delete(DatabaseHelper.TABLE_USERS,
+                DatabaseHelper.COLUMN_ID + " = ?", new String[]{String.valueOf(userId)});
+        SessionManager.getInstance(context).logout();
+    }
+
+    @Test
+    public void firstPageIsPrefetchedAndDrawnWithinBudget() {
+        Instrumentation.ActivityMonitor monitor = instrumentation.addMonitor(MainActivity.class.getName(), null, false);
+        try {
+            Intent intent = new Intent(context, SplashActivity.class);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            context.startActivity(intent);
+
+            mainActivity = monitor.waitForActivityWithTimeout(TIMEOUT_MS);
+            assertNotNull("MainActivity never started", mainActivity);
+        } finally {
+            instrumentation.removeMonitor(monitor);
+        }
+
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        while (StartupTrace.elapsed(StartupTrace.FIRST_PAGE_DRAWN) == -1
+                && SystemClock.elapsedRealtime() < deadline) {
+            SystemClock.sleep(10);
+        }
+
+        long loaded = StartupTrace.elapsed(StartupTrace.FIRST_PAGE_LOADED);
+        long routed = StartupTrace.elapsed(StartupTrace.SPLASH_ROUTED);
+        long drawn = StartupTrace.elapsed(StartupTrace.FIRST_PAGE_DRAWN);
+        Log.i(TAG, "first page loaded +" + loaded + " ms, splash routed +" + routed
+                + " ms, first page drawn +" + drawn + " ms");
+
+        assertTrue("First page never drawn", drawn != -1);
+        assertTrue("MainActivity queried again instead of using the prefetch",
+                StartupTrace.elapsed(StartupTrace.PREFETCH_USED) != -1);
+        assertTrue("Splash routed before the page was ready", loaded <= routed);
+        assertTrue("First page drawn after " + drawn + " ms", drawn < FIRST_PAGE_BUDGET_MS);
+    }
+
+    @Test
+    public void prefetchedPageIsDroppedWhenNotesChange() {
+        NoteChangeBus bus = new NoteChangeBus();
+        List<NoteSummary> page = helper.getNotesPage(userId, DatabaseHelper.SORT_NEWEST, null, MainActivity.PAGE_SIZE);
+
+        FirstPagePrefetch.watch(bus);
+        FirstPagePrefetch.put(userId, DatabaseHelper.SORT_NEWEST, page);
+        assertSame(page, FirstPagePrefetch.take(userId, DatabaseHelper.SORT_NEWEST));
+        assertNull("A page is handed over only once", FirstPagePrefetch.take(userId, DatabaseHelper.SORT_NEWEST));
+
+        FirstPagePrefetch.watch(bus);
+        FirstPagePrefetch.put(userId, DatabaseHelper.SORT_NEWEST, page);
+        bus.publishUpdated(new long[]{page.get(0).getId()});
+        assertNull(FirstPagePrefetch.take(userId, DatabaseHelper.SORT_NEWEST));
+
+        // A change while the page is being read keeps it from being stored at all
+        FirstPagePrefetch.watch(bus);
+        bus.publishInserted(page.get(0).getId());
+        FirstPagePrefetch.put(userId, DatabaseHelper.SORT_NEWEST, page);
+        assertNull(FirstPagePrefetch.take(userId, DatabaseHelper.SORT_NEWEST));
+    }
+}
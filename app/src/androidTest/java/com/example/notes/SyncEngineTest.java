@@ -0,0 +1,375 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.os.SystemClock;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * Syncs two devices, each with its own in-memory database, through
+ * {@link RestSyncRemote} against a change-feed server running in-process on
+ * {@link MockWebServer}. Covers delta uploads, paged downloads, conflicts and
+ * resuming after failures.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncEngineTest {
+
+    private static final long USER_ID = 1;
+    private static final int NOTE_COUNT = 1000;
+
+    private MockWebServer server;
+    private FeedServer feed;
+    private DatabaseHelper phone;
+    private DatabaseHelper tablet;
+    private SyncEngine phoneSync;
+    private SyncEngine tabletSync;
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        phone = new DatabaseHelper(context, null);
+        tablet = new DatabaseHelper(context, null);
+
+        feed = new FeedServer();
+        server = new MockWebServer();
+        server.setDispatcher(feed);
+        server.start();
+        String baseUrl = server.url("/v1/accounts/alice/").toString();
+        phoneSync = new SyncEngine(phone, new RestSyncRemote(baseUrl), "phone");
+        tabletSync = new SyncEngine(tablet, new RestSyncRemote(baseUrl), "tablet");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        phone.close();
+        tablet.close();
+    }
+
+    @Test
+    public void uploadsOnlyWhatChangedSinceLastSync() throws IOException, JSONException {
+        insertNotes(phone, NOTE_COUNT);
+        SyncEngine.Result first = phoneSync.sync(USER_ID);
+        assertEquals(NOTE_COUNT, first.getPushed());
+        assertEquals(NOTE_COUNT / SyncEngine.PUSH_BATCH_SIZE, feed.pushRequests);
+        long firstUploadBytes = feed.pushedBytes;
+
+        List<Note> notes = phone.getAllNotes(USER_ID);
+        long edited = notes.get(0).getId();
+        phone.updateNote(edited, "Edited", "Once");
+        phone.updateNote(edited, "Edited", "Twice");
+        phone.updateNote(notes.get(1).getId(), "Also edited", "Details");
+        phone.deleteNoteById(notes.get(2).getId());
+
+        feed.resetCounters();
+        SyncEngine.Result second = phoneSync.sync(USER_ID);
+        // Two edits of one note go up once, with the latest text
+        assertEquals(3, second.getPushed());
+        assertEquals(1, feed.pushRequests);
+        assertTrue("Delta upload of " + feed.pushedBytes + " bytes is not small next to "
+                + firstUploadBytes, feed.pushedBytes * 100 < firstUploadBytes);
+        assertEquals("Twice", feed.latest(syncId(phone, edited)).getString("details"));
+        // Nothing came from another device
+        assertEquals(0, second.getPulled());
+
+        feed.resetCounters();
+        SyncEngine.Result idle = phoneSync.sync(USER_ID);
+        assertEquals(0, idle.getPushed());
+        assertEquals(0, feed.pushRequests);
+        assertEquals(1, feed.pullRequests);
+    }
+
+    @Test
+    public void secondDeviceDownloadsInPagesAndChangesFlowBack() throws IOException {
+        insertNotes(phone, NOTE_COUNT);
+        phoneSync.sync(USER_ID);
+
+        feed.resetCounters();
+        SyncEngine.Result download = tabletSync.sync(USER_ID);
+        assertEquals(NOTE_COUNT, download.getApplied());
+        assertEquals(NOTE_COUNT / SyncEngine.PULL_PAGE_SIZE, feed.pullRequests);
+        // Applied changes are not queued again, so nothing is echoed back
+        assertEquals(0, download.getPushed());
+        assertEquals(contents(phone), contents(tablet));
+
+        List<Note> tabletNotes = tablet.getAllNotes(USER_ID);
+        Note edited = tabletNotes.get(0);
+        Note deleted = tabletNotes.get(1);
+        tablet.updateNote(edited.getId(), "From the tablet", "Edited on the tablet");
+        tablet.deleteNoteById(deleted.getId());
+        tabletSync.sync(USER_ID);
+
+        SyncEngine.Result back = phoneSync.sync(USER_ID);
+        assertEquals(2, back.getApplied());
+        assertEquals(contents(tablet), contents(phone));
+        List<NoteSummary> trash = phone.getTrashedNotes(USER_ID, 10);
+        assertEquals(1, trash.size());
+        assertEquals(deleted.getHeading(), trash.get(0).getHeading());
+    }
+
+    @Test
+    public void concurrentEditsSettleOnLatestWhicheverDeviceSyncsFirst() throws IOException {
+        phone.insertNote("Shared", "Original", USER_ID);
+        phoneSync.sync(USER_ID);
+        tabletSync.sync(USER_ID);
+
+        // The tablet edits last but syncs second: its queued edit beats the download
+        editOnly(phone, "Phone");
+        SystemClock.sleep(5);
+        editOnly(tablet, "Tablet");
+        phoneSync.sync(USER_ID);
+        SyncEngine.Result tabletResult = tabletSync.sync(USER_ID);
+        assertEquals(0, tabletResult.getApplied());
+        phoneSync.sync(USER_ID);
+        assertEquals("Tablet", onlyNote(phone).getDetails());
+        assertEquals("Tablet", onlyNote(tablet).getDetails());
+
+        // The phone edits last but the tablet syncs first: the download replaces the phone's edit
+        editOnly(tablet, "Tablet again");
+        SystemClock.sleep(5);
+        editOnly(phone, "Phone again");
+        tabletSync.sync(USER_ID);
+        phoneSync.sync(USER_ID);
+        SyncEngine.Result last = tabletSync.sync(USER_ID);
+        assertEquals(1, last.getApplied());
+        assertEquals("Phone again", onlyNote(phone).getDetails());
+        assertEquals("Phone again", onlyNote(tablet).getDetails());
+        assertEquals(0, phone.getPendingChanges(USER_ID, 10).size());
+        assertEquals(0, tablet.getPendingChanges(USER_ID, 10).size());
+    }
+
+    @Test
+    public void interruptedDownloadResumesAfterLastAppliedPage() throws IOException {
+        insertNotes(phone, NOTE_COUNT);
+        phoneSync.sync(USER_ID);
+
+        feed.resetCounters();
+        feed.failPullsAfter = 2;
+        try {
+            tabletSync.sync(USER_ID);
+            fail("Sync should fail when the server does");
+        } catch (IOException expected) {
+            // The two pages before the failure stay applied
+        }
+        assertEquals(2 * SyncEngine.PULL_PAGE_SIZE, tablet.getAllNotes(USER_ID).size());
+
+        feed.resetCounters();
+        SyncEngine.Result resumed = tabletSync.sync(USER_ID);
+        assertEquals(NOTE_COUNT - 2 * SyncEngine.PULL_PAGE_SIZE, resumed.getApplied());
+        assertEquals(NOTE_COUNT / SyncEngine.PULL_PAGE_SIZE - 2, feed.pullRequests);
+        assertEquals(contents(phone), contents(tablet));
+    }
+
+    @Test
+    public void failedUploadStaysQueued() throws IOException {
+        phone.insertNote("Groceries", "Milk", USER_ID);
+        feed.failPushes = true;
+        try {
+            phoneSync.sync(USER_ID);
+            fail("Sync should fail when the server does");
+        } catch (IOException expected) {
+            // Nothing was acknowledged
+        }
+        assertEquals(1, phone.getPendingChanges(USER_ID, 10).size());
+
+        feed.failPushes = false;
+        assertEquals(1, phoneSync.sync(USER_ID).getPushed());
+        assertEquals(0, phone.getPendingChanges(USER_ID, 10).size());
+        tabletSync.sync(USER_ID);
+        assertEquals("Milk", onlyNote(tablet).getDetails());
+    }
+
+    @Test
+    public void noteDeletedAndPurgedBeforeSyncSettlesLikeAnyConflict() throws IOException {
+        phone.insertNote("Shared", "Original", USER_ID);
+        phoneSync.sync(USER_ID);
+        tabletSync.sync(USER_ID);
+
+        // The phone deletes and purges first, the tablet edits later: the edit brings the note back
+        purgeOnly(phone);
+        SystemClock.sleep(5);
+        editOnly(tablet, "Edited after the purge");
+        tabletSync.sync(USER_ID);
+        SyncEngine.Result restored = phoneSync.sync(USER_ID);
+        assertEquals(1, restored.getApplied());
+        assertEquals(0, restored.getPushed());
+        tabletSync.sync(USER_ID);
+        assertEquals("Edited after the purge", onlyNote(phone).getDetails());
+        assertEquals(contents(tablet), contents(phone));
+
+        // The tablet edits first, the phone deletes and purges later: the deletion wins everywhere
+        editOnly(tablet, "Edited before the purge");
+        SystemClock.sleep(5);
+        purgeOnly(phone);
+        tabletSync.sync(USER_ID);
+        SyncEngine.Result deleted = phoneSync.sync(USER_ID);
+        assertEquals(0, deleted.getApplied());
+        assertEquals(1, deleted.getPushed());
+        tabletSync.sync(USER_ID);
+        assertTrue(phone.getAllNotes(USER_ID).isEmpty());
+        assertEquals(contents(tablet), contents(phone));
+        assertEquals(0, phone.getPendingChanges(USER_ID, 10).size());
+        assertEquals(0, tablet.getPendingChanges(USER_ID, 10).size());
+    }
+
+    private static void insertNotes(DatabaseHelper helper, int count) {
+        List<Note> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Note note = new Note();
+            note.setHeading("Note " + i);
+            note.setDetails("Details of note " + i);
+            notes.add(note);
+        }
+        assertEquals(count, helper.bulkInsertNotes(USER_ID, notes));
+    }
+
+    private static void editOnly(DatabaseHelper helper, String details) {
+        assertTrue(helper.updateNote(onlyNote(helper).getId(), "Shared", details));
+    }
+
+    private static void purgeOnly(DatabaseHelper helper) {
+        long noteId = onlyNote(helper).getId();
+        helper.deleteNoteById(noteId);
+        assertEquals(1, helper.purgeNotes(USER_ID, new long[]{noteId}));
+    }
+
+    private static Note onlyNote(DatabaseHelper helper) {
+        List<Note> notes = helper.getAllNotes(USER_ID);
+        assertEquals(1, notes.size());
+        return notes.get(0);
+    }
+
+    private static String syncId(DatabaseHelper helper, long noteId) {
+        return DatabaseUtils.stringForQuery(helper.getReadableDatabase(),
+                "SELECT " + DatabaseHelper.COLUMN_SYNC_ID + " FROM " + DatabaseHelper.TABLE_NOTES
+                        + " WHERE " + DatabaseHelper.COLUMN_ID + " = ?",
+                new String[]{String.valueOf(noteId)});
+    }
+
+    /** Every live note's heading and body, in a fixed order, to compare devices by. */
+    private static List<String> contents(DatabaseHelper helper) {
+        List<String> contents = new ArrayList<>();
+        for (Note note : helper.getAllNotes(USER_ID)) {
+            contents.add(note.getHeading() + "\n" + note.getDetails());
+        }
+        Collections.sort(contents);
+        return contents;
+    }
+
+    /**
+     * A stand-in for the sync server. Keeps the feed in memory, one winning
+     * change per note, and serves it the way {@link RestSyncRemote} expects.
+     */
+    private static class FeedServer extends Dispatcher {
+        // A null marks a change that a later one for the same note replaced
+        private final List<JSONObject> feed = new ArrayList<>();
+        private final Map<String, Integer> positions = new HashMap<>();
+
+        volatile int failPullsAfter = Integer.MAX_VALUE;
+        volatile boolean failPushes;
+        int pushRequests;
+        int pullRequests;
+        long pushedBytes;
+
+        synchronized void resetCounters() {
+            pushRequests = 0;
+            pullRequests = 0;
+            pushedBytes = 0;
+            failPullsAfter = Integer.MAX_VALUE;
+        }
+
+        synchronized JSONObject latest(String syncId) {
+            return feed.get(positions.get(syncId));
+        }
+
+        @Override
+        public synchronized MockResponse dispatch(RecordedRequest request) {
+            try {
+                if ("POST".equals(request.getMethod())) {
+                    return push(request);
+                }
+                return pull(request);
+            } catch (JSONException e) {
+                return new MockResponse().setResponseCode(400);
+            }
+        }
+
+        private MockResponse push(RecordedRequest request) throws JSONException {
+            pushRequests++;
+            pushedBytes += request.getBodySize();
+            if (failPushes) {
+                return new MockResponse().setResponseCode(503);
+            }
+            JSONArray changes = new JSONObject(request.getBody().readUtf8()).getJSONArray("changes");
+            for (int i = 0; i < changes.length(); i++) {
+                JSONObject change = changes.getJSONObject(i);
+                String id = change.getString("id");
+                Integer position = positions.get(id);
+                if (position != null) {
+                    JSONObject current = feed.get(position);
+                    boolean wins = new SyncChange(id, null, null, false, 0, change.getLong("changedAt"),
+                            change.getString("device"), -1)
+                            .supersedes(current.getLong("changedAt"), current.getString("device"));
+                    if (!wins) {
+                        continue;
+                    }
+                    feed.set(position, null);
+                }
+                positions.put(id, feed.size());
+                feed.add(change);
+            }
+            return new MockResponse().setResponseCode(200).setBody("{}");
+        }
+
+        private MockResponse pull(RecordedRequest request) throws JSONException {
+            pullRequests++;
+            if (pullRequests > failPullsAfter) {
+                return new MockResponse().setResponseCode(503);
+            }
+            String since = request.getRequestUrl().queryParameter("since");
+            int limit = Integer.parseInt(request.getRequestUrl().queryParameter("limit"));
+            String device = request.getRequestUrl().queryParameter("device");
+
+            JSONArray changes = new JSONArray();
+            int next = since == null ? 0 : Integer.parseInt(since);
+            while (next < feed.size() && changes.length() < limit) {
+                JSONObject change = feed.get(next++);
+                if (change != null && !change.getString("device").equals(device)) {
+                    changes.put(change);
+                }
+            }
+            JSONObject page = new JSONObject()
+                    .put("changes", changes)
+                    .put("cursor", String.valueOf(next))
+                    .put("hasMore", next < feed.size());
+            return new MockResponse()
+                    .setResponseCode(200)
+                    .setHeader("Content-Type", "application/json")
+                    .setBody(page.toString());
+        }
+    }
+}
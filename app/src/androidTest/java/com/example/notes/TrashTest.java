@@ -0,0 +1,153 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Deleted notes leave every list but the trash, come back on restore and are
+ * purged for good once {@link DatabaseHelper#TRASH_RETENTION_MILLIS} has passed.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TrashTest {
+
+    private static final long USER_ID = 1;
+
+    private DatabaseHelper helper;
+    private final List<long[]> restoreEvents = new ArrayList<>();
+
+    private final NoteChangeBus.Listener listener = new NoteChangeBus.Listener() {
+        @Override
+        public void onNoteInserted(long noteId) {
+        }
+
+        @Override
+        public void onNoteUpdated(long noteId) {
+        }
+
+        @Override
+        public void onNoteDeleted(long noteId) {
+        }
+
+        @Override
+        public void onNotesDeleted(long[] noteIds) {
+        }
+
+        @Override
+        public void onNotesRestored(long[] noteIds) {
+            restoreEvents.add(noteIds);
+        }
+
+        @Override
+        public void onNotesUpdated(long[] noteIds) {
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        helper = new DatabaseHelper(context, null);
+        helper.getChangeBus().register(listener);
+    }
+
+    @After
+    public void tearDown() {
+        helper.getChangeBus().unregister(listener);
+        helper.close();
+    }
+
+    @Test
+    public void deletedNoteOnlyShowsInTrash() throws IOException {
+        long kept = helper.insertNote("Kept", "Shopping list", USER_ID);
+        long deleted = helper.insertNote("Deleted", "Shopping receipt", USER_ID);
+
+        assertEquals(1, helper.deleteNoteById(deleted));
+        // Already in the trash, so there is nothing to undo a second time
+        assertEquals(0, helper.deleteNoteById(deleted));
+
+        assertEquals(1, helper.getNotesPage(USER_ID, -1, 10).size());
+        assertEquals(kept, helper.getNotesPage(USER_ID, -1, 10).get(0).getId());
+        assertEquals(1, helper.searchNotes(USER_ID, "shopping", 10).size());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, new NoteTransfer(helper).exportNotes(USER_ID, out));
+
+        List<NoteSummary> trash = helper.getTrashedNotes(USER_ID, 10);
+        assertEquals(1, trash.size());
+        assertEquals(deleted, trash.get(0).getId());
+    }
+
+    @Test
+    public void restoreBringsNotesBack() {
+        long[] ids = {
+                helper.insertNote("One", "First", USER_ID),
+                helper.insertNote("Two", "Second", USER_ID)
+        };
+        assertEquals(2, helper.deleteNotes(USER_ID, ids));
+        assertTrue(helper.getNotesPage(USER_ID, -1, 10).isEmpty());
+
+        assertEquals(2, helper.restoreNotes(USER_ID, ids));
+
+        assertEquals(2, helper.getNotesPage(USER_ID, -1, 10).size());
+        assertTrue(helper.getTrashedNotes(USER_ID, 10).isEmpty());
+        assertEquals(1, restoreEvents.size());
+        assertEquals(2, restoreEvents.get(0).length);
+        // Restoring again finds nothing in the trash
+        assertEquals(0, helper.restoreNotes(USER_ID, ids));
+    }
+
+    @Test
+    public void purgeLeavesLiveNotesAlone() {
+        long live = helper.insertNote("Live", "Still here", USER_ID);
+        long trashed = helper.insertNote("Trashed", "Going away", USER_ID);
+        helper.deleteNoteById(trashed);
+
+        assertEquals(1, helper.purgeNotes(USER_ID, new long[]{live, trashed}));
+
+        assertNotNull(helper.getNoteById(live));
+        assertNull(helper.getNoteById(trashed));
+        assertTrue(helper.getTrashedNotes(USER_ID, 10).isEmpty());
+    }
+
+    @Test
+    public void expiredTrashIsPurgedInBoundedBatches() {
+        StringBuilder longBody = new StringBuilder();
+        while (longBody.length() < NoteSql.CHUNK_CHARS * 2) {
+            longBody.append("A long note that needs chunks. ");
+        }
+        long[] ids = new long[5];
+        ids[0] = helper.insertNote("Long", longBody.toString(), USER_ID);
+        for (int i = 1; i < ids.length; i++) {
+            ids[i] = helper.insertNote("Note " + i, "Details " + i, USER_ID);
+        }
+        long live = helper.insertNote("Live", "Not deleted", USER_ID);
+        assertEquals(ids.length, helper.deleteNotes(USER_ID, ids));
+
+        // Nothing has expired yet
+        assertFalse(helper.purgeExpiredTrash(System.currentTimeMillis(), 2));
+        assertEquals(ids.length, helper.getTrashedNotes(USER_ID, 10).size());
+
+        long expired = System.currentTimeMillis() + DatabaseHelper.TRASH_RETENTION_MILLIS + 1;
+        assertTrue(helper.purgeExpiredTrash(expired, 2));
+        assertEquals(3, helper.getTrashedNotes(USER_ID, 10).size());
+        assertTrue(helper.purgeExpiredTrash(expired, 2));
+        assertFalse(helper.purgeExpiredTrash(expired, 2));
+
+        assertTrue(helper.getTrashedNotes(USER_ID, 10).isEmpty());
+        assertEquals(0, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), NoteSql.TABLE_NOTE_CHUNKS));
+        assertNotNull(helper.getNoteById(live));
+    }
+}
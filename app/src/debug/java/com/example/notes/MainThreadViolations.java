@@ -0,0 +1,120 @@
+package com.example.notes;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Counts StrictMode disk and unbuffered I/O violations on the main thread,
+ * by violation type, for {@link PerfOverlayActivity}. Debug builds only.
+ *
+ * Nothing is logged; a violation costs one map update. The stack of the
+ * most recent violation is kept so the overlay can point at the culprit.
+ */
+final class MainThreadViolations {
+
+    private static final Map<String, Integer> counts = new TreeMap<>();
+    private static String lastLocation;
+
+    private MainThreadViolations() {
+    }
+
+    /** Sets the main thread's policy; call on the main thread. */
+    static void install() {
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectUnbufferedIo()
+                .penaltyListener(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                }, new StrictMode.OnThreadViolationListener() {
+                    @Override
+                    public void onThreadViolation(Violation violation) {
+                        record(violation);
+                    }
+                })
+                .build());
+    }
+
+    private static synchronized void record(Violation violation) {
+        String type = violation.getClass().getSimpleName();
+        Integer count = counts.get(type);
+        counts.put(type, count == null ? 1 : count + 1);
+        lastLocation = firstAppFrame(violation.getStackTrace());
+    }
+
+    // The first frame in our own code is more useful than the framework frame that tripped StrictMode
+    private static String firstAppFrame(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith("com.example.notes.")) {
+                return frame.toString();
+            }
+        }
+        return stack.length > 0 ? stack[0].toString() : null;
+    }
+
+    /** @return violation counts by type, sorted by type */
+    static synchronized Map<String, Integer> counts() {
+        return new TreeMap<>(counts);
+    }
+
+    /** @return where the most recent violation came from, or null if there was none */
+    static synchronized String lastLocation() {
+        return lastLocation;
+    }
+
+    static synchronized void reset() {
+        counts.clear();
+        lastLocation = null;
+    }
+
+    /**
+     * Installs the policy when the process starts. Content providers are
+     * created on the main thread before the first activity, which keeps this
+     * hook out of the main source set.
+     */
+    public static class Installer extends ContentProvider {
+
+        @Override
+        public boolean onCreate() {
+            install();
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                            String sortOrder) {
+            return null;
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+            return 0;
+        }
+    }
+}
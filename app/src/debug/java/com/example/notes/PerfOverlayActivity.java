@@ -0,0 +1,253 @@
+package com.example.notes;
+
+import android.content.Intent;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Live storage and UI metrics for diagnosing slowness. Debug builds only.
+ *
+ * Shows the {@link DbTrace} summaries (DatabaseHelper queries, list loads
+ * and adapter binds), the database file and page statistics, and
+ * {@link MainThreadViolations}. Everything is recorded all along at the
+ * cost of a clock read or a counter; the expensive part, reading the
+ * database statistics and formatting, only runs while this screen is
+ * resumed, once per {@link #REFRESH_INTERVAL_MS}.
+ */
+public class PerfOverlayActivity extends AppCompatActivity {
+
+    private static final String TAG = "PerfOverlayActivity";
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+            handler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    private DatabaseHelper databaseHelper;
+    private DbDispatcher.Scope dbScope;
+    private TextView perfText;
+    private DatabaseStats lastStats;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_perf_overlay);
+
+        databaseHelper = DatabaseHelper.getInstance(this);
+        dbScope = DbDispatcher.getInstance().newScope();
+        perfText = findViewById(R.id.perfText);
+
+        Button resetButton = findViewById(R.id.perfResetButton);
+        resetButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                DbTrace.reset();
+                MainThreadViolations.reset();
+                refresh();
+            }
+        });
+
+        Button exportButton = findViewById(R.id.perfExportButton);
+        exportButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                exportSnapshot();
+            }
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        handler.post(refresh);
+    }
+
+    @Override
+    protected void onPause() {
+        handler.removeCallbacks(refresh);
+        super.onPause();
+    }
+
+    @Override
+    protected void onDestroy() {
+        dbScope.cancel();
+        super.onDestroy();
+    }
+
+    private void refresh() {
+        dbScope.read(new Callable<DatabaseStats>() {
+            @Override
+            public DatabaseStats call() {
+                return DatabaseStats.read(databaseHelper.getReadableDatabase());
+            }
+        }, new DbDispatcher.Callback<DatabaseStats>() {
+            @Override
+            public void onSuccess(DatabaseStats stats) {
+                lastStats = stats;
+                perfText.setText(format(stats));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error reading database stats", e);
+                perfText.setText(format(null));
+            }
+        });
+    }
+
+    private String format(DatabaseStats stats) {
+        StringBuilder text = new StringBuilder();
+        text.append("Operations (us)          calls    p50    p95    p99    max   rows\n");
+        for (DbTrace.Summary summary : DbTrace.snapshot()) {
+            text.append(String.format(Locale.US, "%-24s %6d %6d %6d %6d %6d %6d\n",
+                    summary.operation, summary.calls, summary.p50, summary.p95, summary.p99,
+                    summary.max, summary.totalRows));
+        }
+        text.append("Slow query threshold: ").append(DbTrace.getSlowQueryThresholdMillis()).append(" ms\n");
+
+        NoteCache cache = databaseHelper.getNoteCache();
+        text.append("\nNote cache: ").append(cache.hitCount()).append(" hits, ")
+                .append(cache.missCount()).append(" misses, ")
+                .append(cache.evictionCount()).append(" evictions\n");
+
+        text.append("\nDatabase\n");
+        if (stats == null) {
+            text.append("unavailable\n");
+        } else {
+            text.append("file ").append(stats.fileBytes / 1024).append(" KiB, WAL ")
+                    .append(stats.walBytes / 1024).append(" KiB\n");
+            text.append("pages ").append(stats.pageCount).append(" x ").append(stats.pageSize)
+                    .append(" B, free ").append(stats.freelistCount).append('\n');
+        }
+
+        text.append("\nMain-thread I/O violations\n");
+        Map<String, Integer> violations = MainThreadViolations.counts();
+        if (violations.isEmpty()) {
+            text.append("none\n");
+        }
+        for (Map.Entry<String, Integer> entry : violations.entrySet()) {
+            text.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        String lastLocation = MainThreadViolations.lastLocation();
+        if (lastLocation != null) {
+            text.append("last at ").append(lastLocation).append('\n');
+        }
+        return text.toString();
+    }
+
+    private void exportSnapshot() {
+        String json;
+        try {
+            json = toJson(lastStats).toString(2);
+        } catch (JSONException e) {
+            Log.e(TAG, "Error building snapshot", e);
+            Toast.makeText(this, "Error building snapshot", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Intent send = new Intent(Intent.ACTION_SEND);
+        send.setType("application/json");
+        send.putExtra(Intent.EXTRA_SUBJECT, "Notes performance snapshot");
+        send.putExtra(Intent.EXTRA_TEXT, json);
+        startActivity(Intent.createChooser(send, getString(R.string.perf_overlay)));
+    }
+
+    private JSONObject toJson(DatabaseStats stats) throws JSONException {
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("capturedAt", System.currentTimeMillis());
+        snapshot.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        snapshot.put("sdk", Build.VERSION.SDK_INT);
+        snapshot.put("slowQueryThresholdMillis", DbTrace.getSlowQueryThresholdMillis());
+
+        JSONArray operations = new JSONArray();
+        for (DbTrace.Summary summary : DbTrace.snapshot()) {
+            JSONObject operation = new JSONObject();
+            operation.put("name", summary.operation);
+            operation.put("calls", summary.calls);
+            operation.put("p50Micros", summary.p50);
+            operation.put("p95Micros", summary.p95);
+            operation.put("p99Micros", summary.p99);
+            operation.put("maxMicros", summary.max);
+            operation.put("totalRows", summary.totalRows);
+            operation.put("maxRows", summary.maxRows);
+            operations.put(operation);
+        }
+        snapshot.put("operations", operations);
+
+        NoteCache cache = databaseHelper.getNoteCache();
+        JSONObject noteCache = new JSONObject();
+        noteCache.put("hits", cache.hitCount());
+        noteCache.put("misses", cache.missCount());
+        noteCache.put("evictions", cache.evictionCount());
+        snapshot.put("noteCache", noteCache);
+
+        if (stats != null) {
+            JSONObject database = new JSONObject();
+            database.put("fileBytes", stats.fileBytes);
+            database.put("walBytes", stats.walBytes);
+            database.put("pageSize", stats.pageSize);
+            database.put("pageCount", stats.pageCount);
+            database.put("freelistCount", stats.freelistCount);
+            snapshot.put("database", database);
+        }
+
+        JSONObject violations = new JSONObject();
+        for (Map.Entry<String, Integer> entry : MainThreadViolations.counts().entrySet()) {
+            violations.put(entry.getKey(), entry.getValue());
+        }
+        snapshot.put("mainThreadViolations", violations);
+        snapshot.put("lastViolationAt", MainThreadViolations.lastLocation());
+        return snapshot;
+    }
+
+    /** File and page statistics of the notes database. */
+    static final class DatabaseStats {
+        final long fileBytes;
+        final long walBytes;
+        final long pageSize;
+        final long pageCount;
+        final long freelistCount;
+
+        private DatabaseStats(long fileBytes, long walBytes, long pageSize, long pageCount, long freelistCount) {
+            this.fileBytes = fileBytes;
+            this.walBytes = walBytes;
+            this.pageSize = pageSize;
+            this.pageCount = pageCount;
+            this.freelistCount = freelistCount;
+        }
+
+        static DatabaseStats read(SQLiteDatabase db) {
+            File file = new File(db.getPath());
+            return new DatabaseStats(
+                    file.length(),
+                    new File(db.getPath() + "-wal").length(),
+                    DatabaseUtils.longForQuery(db, "PRAGMA page_size", null),
+                    DatabaseUtils.longForQuery(db, "PRAGMA page_count", null),
+                    DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Logs users in and registers them without touching the main thread.
+ *
+ * Login is one indexed lookup by username followed by password verification
+ * on a reader lane. Registration is a single insert on the writer lane; a
+ * taken username is detected by the UNIQUE constraint, not a separate check.
+ *
+ * Both flows are timed from the tap to the first page of the note list:
+ * the screen starting the flow passes {@link #beginFlow}'s timestamp to
+ * MainActivity with {@link #attachFlow}, and MainActivity calls
+ * {@link #endFlow} once the list is drawn. Background work also shows up
+ * as {@code AuthService.login} and {@code AuthService.register} trace sections.
+ */
+public class AuthService {
+
+    private static final String TAG = "AuthService";
+
+    static final String FLOW_LOGIN = "login";
+    static final String FLOW_REGISTER = "register";
+
+    private static final String EXTRA_FLOW = "com.example.notes.AUTH_FLOW";
+    private static final String EXTRA_STARTED_AT = "com.example.notes.AUTH_STARTED_AT";
+
+    private static AuthService instance;
+
+    private final DatabaseHelper databaseHelper;
+    private final DbDispatcher dispatcher;
+
+    public static synchronized AuthService getInstance(Context context) {
+        if (instance == null) {
+            instance = new AuthService(DatabaseHelper.getInstance(context), DbDispatcher.getInstance());
+        }
+        return instance;
+    }
+
+    AuthService(DatabaseHelper databaseHelper, DbDispatcher dispatcher) {
+        this.databaseHelper = databaseHelper;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Checks the credentials. The callback gets the user, or null if the
+     * username is unknown or the password is wrong.
+     */
+    public Future<User> login(DbDispatcher.Scope scope, final String username, final String password,
+                              DbDispatcher.Callback<User> callback) {
+        return scope.read(new Callable<User>() {
+            @Override
+            public User call() {
+                long start = SystemClock.elapsedRealtime();
+                Trace.beginSection("AuthService.login");
+                try {
+                    User user = databaseHelper.getUser(username);
+                    if (user == null || !user.checkPassword(password)) {
+                        return null;
+                    }
+                    upgradePasswordHash(user, password);
+                    return user;
+                } finally {
+                    Trace.endSection();
+                    if (DbTrace.ENABLED) {
+                        Log.d(TAG, "login checked in " + (SystemClock.elapsedRealtime() - start) + " ms");
+                    }
+                }
+            }
+        }, callback);
+    }
+
+    /**
+     * Creates the user. The callback gets the new user, or null if the
+     * username is already taken.
+     */
+    public Future<User> register(DbDispatcher.Scope scope, final String username, final String password,
+                                 DbDispatcher.Callback<User> callback) {
+        return scope.write(new Callable<User>() {
+            @Override
+            public User call() {
+                long start = SystemClock.elapsedRealtime();
+                Trace.beginSection("AuthService.register");
+                try {
+                    // Hashing holds up the writer lane, but nothing else writes before anyone is signed in
+                    long userId = databaseHelper.addUser(new User(username, password));
+                    if (userId == -1) {
+                        return null;
+                    }
+                    User user = new User();
+                    user.setId(userId);
+                    user.setUsername(username);
+                    return user;
+                } finally {
+                    Trace.endSection();
+                    if (DbTrace.ENABLED) {
+                        Log.d(TAG, "register wrote in " + (SystemClock.elapsedRealtime() - start) + " ms");
+                    }
+                }
+            }
+        }, callback);
+    }
+
+    /**
+     * Re-hashes the password at the current cost on the writer lane. Not tied
+     * to a scope: the login screen finishes right after a successful login.
+     */
+    private void upgradePasswordHash(final User user, final String password) {
+        if (!databaseHelper.getPasswordHasher().needsRehash(user.getPassword())) {
+            return;
+        }
+        dispatcher.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return databaseHelper.upgradePasswordHash(user.getId(), user.getPassword(), password);
+            }
+        }, null);
+    }
+
+    /** Call when the user taps to log in or register. */
+    static long beginFlow() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    /** Carries the flow's start time to MainActivity. */
+    static void attachFlow(Intent intent, String flow, long startedAt) {
+        intent.putExtra(EXTRA_FLOW, flow);
+        intent.putExtra(EXTRA_STARTED_AT, startedAt);
+    }
+
+    /**
+     * Logs how long it took from the tap to now, if the intent carries a flow.
+     * The extras are removed so a recreated activity doesn't log it again.
+     *
+     * @return true if a flow ended here
+     */
+    static boolean endFlow(Intent intent) {
+        String flow = intent.getStringExtra(EXTRA_FLOW);
+        if (flow == null) {
+            return false;
+        }
+        long elapsed = SystemClock.elapsedRealtime() - intent.getLongExtra(EXTRA_STARTED_AT, 0);
+        intent.removeExtra(EXTRA_FLOW);
+        intent.removeExtra(EXTRA_STARTED_AT);
+        if (DbTrace.ENABLED) {
+            Log.i(TAG, flow + " tap-to-MainActivity: " + elapsed + " ms");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.notes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How a note body is cut into stored chunks, and which of them an editor
+ * has changed since the last save.
+ *
+ * The first chunk, {@link #HEAD_SEQ}, is stored inline in the notes table
+ * so previews and search keep working off the row; the rest live in the
+ * chunk table, ordered by a sequence number. Sequence numbers are spread
+ * {@link #SEQ_STEP} apart so that a chunk that outgrows the limit can be
+ * split in place without renumbering its neighbours.
+ *
+ * The editor reports every text change with {@link #onTextChanged}, which
+ * only adjusts chunk lengths. {@link #takeEdit} then copies out just the
+ * chunks that changed, so saving costs time in proportion to the edit, not
+ * to the note. Not thread-safe; use it from the thread that owns the text.
+ */
+final class ChunkLayout {
+
+    static final long HEAD_SEQ = 0;
+    static final long SEQ_STEP = 1L << 20;
+
+    private final int maxChunkChars;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private boolean rewriteAll;
+
+    private static final class Chunk {
+        long seq;
+        int length;
+        boolean dirty;
+
+        Chunk(long seq, int length, boolean dirty) {
+            this.seq = seq;
+            this.length = length;
+            this.dirty = dirty;
+        }
+    }
+
+    ChunkLayout(int maxChunkChars) {
+        this.maxChunkChars = maxChunkChars;
+    }
+
+    /** Adds a stored chunk after the ones added so far, e.g. while loading the note. */
+    void append(long seq, int length) {
+        chunks.add(new Chunk(seq, length, false));
+    }
+
+    int chunkCount() {
+        return chunks.size();
+    }
+
+    int length() {
+        int length = 0;
+        for (Chunk chunk : chunks) {
+            length += chunk.length;
+        }
+        return length;
+    }
+
+    /**
+     * Records that {@code before} characters at {@code start} were replaced by
+     * {@code count} new ones, as reported by a TextWatcher.
+     */
+    void onTextChanged(int start, int before, int count) {
+        if (chunks.isEmpty()) {
+            chunks.add(new Chunk(HEAD_SEQ, 0, true));
+        }
+        int index = chunks.size() - 1;
+        int offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            if (start < offset + chunks.get(i).length) {
+                index = i;
+                break;
+            }
+            offset += chunks.get(i).length;
+        }
+        if (index == chunks.size() - 1 && start >= offset + chunks.get(index).length) {
+            // Appending at the very end
+            offset -= chunks.get(index).length;
+        }
+
+        Chunk first = chunks.get(index);
+        int position = start - offset;
+        int remaining = before;
+        for (int i = index; i < chunks.size() && remaining > 0; i++) {
+            Chunk chunk = chunks.get(i);
+            int removed = Math.min(remaining, chunk.length - position);
+            chunk.length -= removed;
+            chunk.dirty = true;
+            remaining -= removed;
+            position = 0;
+        }
+        first.length += count;
+        first.dirty = true;
+    }
+
+    /** Makes the next {@link #takeEdit} write the whole body again, e.g. after a failed save. */
+    void markAllDirty() {
+        rewriteAll = true;
+    }
+
+    /**
+     * Copies out the chunks changed since the last call and assigns sequence
+     * numbers to chunks that had to be split. The layout then treats them as
+     * saved.
+     *
+     * @param text the full current body; its length must match the layout
+     */
+    Edit takeEdit(CharSequence text) {
+        if (rewriteAll || text.length() != length() || chunks.isEmpty()) {
+            return rewrite(text);
+        }
+
+        Edit edit = new Edit();
+        List<Chunk> updated = new ArrayList<>(chunks.size());
+        int offset = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            int end = offset + chunk.length;
+            if (!chunk.dirty) {
+                updated.add(chunk);
+            } else if (chunk.length == 0 && chunk.seq != HEAD_SEQ) {
+                edit.removedSeqs.add(chunk.seq);
+            } else {
+                List<int[]> pieces = cut(text, offset, end, maxChunkChars);
+                long nextSeq = i + 1 < chunks.size() ? chunks.get(i + 1).seq : Long.MAX_VALUE;
+                long gap = nextSeq == Long.MAX_VALUE ? SEQ_STEP : (nextSeq - chunk.seq) / pieces.size();
+                if (gap < 1) {
+                    // No room between this chunk and the next; renumber everything once
+                    return rewrite(text);
+                }
+                for (int p = 0; p < pieces.size(); p++) {
+                    int[] piece = pieces.get(p);
+                    Chunk written = new Chunk(chunk.seq + p * gap, piece[1] - piece[0], false);
+                    edit.add(written.seq, text.subSequence(piece[0], piece[1]).toString());
+                    updated.add(written);
+                }
+            }
+            offset = end;
+        }
+        chunks.clear();
+        chunks.addAll(updated);
+        return edit;
+    }
+
+    private Edit rewrite(CharSequence text) {
+        Edit edit = split(text, maxChunkChars);
+        chunks.clear();
+        for (int i = 0; i < edit.seqs.size(); i++) {
+            chunks.add(new Chunk(edit.seqs.get(i), edit.texts.get(i).length(), false));
+        }
+        rewriteAll = false;
+        return edit;
+    }
+
+    /** Cuts a whole body into chunks for storage, the first one under {@link #HEAD_SEQ}. */
+    static Edit split(CharSequence text, int maxChunkChars) {
+        Edit edit = new Edit();
+        List<int[]> pieces = cut(text, 0, text.length(), maxChunkChars);
+        for (int i = 0; i < pieces.size(); i++) {
+            int[] piece = pieces.get(i);
+            edit.add(HEAD_SEQ + i * SEQ_STEP, text.subSequence(piece[0], piece[1]).toString());
+        }
+        edit.replacesAll = true;
+        return edit;
+    }
+
+    // Ranges of at most maxChunkChars covering [start, end); never splits a surrogate pair
+    private static List<int[]> cut(CharSequence text, int start, int end, int maxChunkChars) {
+        List<int[]> pieces = new ArrayList<>();
+        int from = start;
+        do {
+            int to = Math.min(end, from + maxChunkChars);
+            if (to < end && to > from + 1 && Character.isHighSurrogate(text.charAt(to - 1))) {
+                to--;
+            }
+            pieces.add(new int[]{from, to});
+            from = to;
+        } while (from < end);
+        return pieces;
+    }
+
+    /** Chunks to write and chunks to delete, in body order. */
+    static final class Edit {
+        private final List<Long> seqs = new ArrayList<>();
+        private final List<String> texts = new ArrayList<>();
+        private final List<Long> removedSeqs = new ArrayList<>();
+        private boolean replacesAll;
+
+        private void add(long seq, String text) {
+            seqs.add(seq);
+            texts.add(text);
+        }
+
+        boolean isEmpty() {
+            return seqs.isEmpty() && removedSeqs.isEmpty();
+        }
+
+        /** @return the new inline head, or null if it didn't change */
+        String headText() {
+            return !seqs.isEmpty() && seqs.get(0) == HEAD_SEQ ? texts.get(0) : null;
+        }
+
+        /** True if every stored chunk not written by this edit should be dropped. */
+        boolean replacesAll() {
+            return replacesAll;
+        }
+
+        List<Long> writtenSeqs() {
+            return Collections.unmodifiableList(seqs);
+        }
+
+        List<String> writtenTexts() {
+            return Collections.unmodifiableList(texts);
+        }
+
+        List<Long> removedSeqs() {
+            return Collections.unmodifiableList(removedSeqs);
+        }
+    }
+}
@@ -6,62 +6,105 @@ import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "notes.db";
-    // Increment version to force database recreation
-    private static final int DATABASE_VERSION = 2;
+    // Version 3 adds the full-text search index over notes, version 4 the list preview column,
+    // version 5 the per-user index on notes, version 6 chunked storage for long bodies,
+    // version 7 the trash, version 8 timestamps and the indexes behind the list's sort orders,
+    // version 9 sync ids and the sync change log. Upgrades run the steps in SchemaMigrations.
+    private static final int DATABASE_VERSION = 9;
 
     // Table names
-    public static final String TABLE_NOTES = "notes";
-    public static final String TABLE_USERS = "users";
+    public static final String TABLE_NOTES = NoteSql.TABLE_NOTES;
+    public static final String TABLE_USERS = NoteSql.TABLE_USERS;
+    public static final String TABLE_NOTES_FTS = NoteSql.TABLE_NOTES_FTS;
     
     // Common column names
-    public static final String COLUMN_ID = "_id";
+    public static final String COLUMN_ID = NoteSql.COLUMN_ID;
     
     // Notes table columns
-    public static final String COLUMN_HEADING = "heading";
-    public static final String COLUMN_DETAILS = "details";
-    public static final String COLUMN_USER_ID = "user_id";
+    public static final String COLUMN_HEADING = NoteSql.COLUMN_HEADING;
+    public static final String COLUMN_DETAILS = NoteSql.COLUMN_DETAILS;
+    public static final String COLUMN_USER_ID = NoteSql.COLUMN_USER_ID;
+    public static final String COLUMN_PREVIEW = NoteSql.COLUMN_PREVIEW;
+    public static final String COLUMN_CHUNK_COUNT = NoteSql.COLUMN_CHUNK_COUNT;
+    public static final String COLUMN_DELETED_AT = NoteSql.COLUMN_DELETED_AT;
+    public static final String COLUMN_CREATED_AT = NoteSql.COLUMN_CREATED_AT;
+    public static final String COLUMN_UPDATED_AT = NoteSql.COLUMN_UPDATED_AT;
+    public static final String COLUMN_SYNC_ID = NoteSql.COLUMN_SYNC_ID;
+
+    // Orders for getNotesPage
+    public static final int SORT_NEWEST = NoteSql.SORT_NEWEST;
+    public static final int SORT_RECENTLY_EDITED = NoteSql.SORT_RECENTLY_EDITED;
+    public static final int SORT_OLDEST = NoteSql.SORT_OLDEST;
+    public static final int SORT_TITLE = NoteSql.SORT_TITLE;
     
     // Users table columns
-    public static final String COLUMN_USERNAME = "username";
-    public static final String COLUMN_PASSWORD = "password";
-
-    // Table create statements
-    private static final String CREATE_TABLE_NOTES = 
-            "CREATE TABLE " + TABLE_NOTES + "("
-            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-            + COLUMN_HEADING + " TEXT,"
-            + COLUMN_DETAILS + " TEXT,"
-            + COLUMN_USER_ID + " INTEGER,"
-            + "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ")"
-            + ")";
-
-    private static final String CREATE_TABLE_USERS =
-            "CREATE TABLE " + TABLE_USERS + "("
-            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-            + COLUMN_USERNAME + " TEXT UNIQUE,"
-            + COLUMN_PASSWORD + " TEXT"
-            + ")";
-
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    public static final String COLUMN_USERNAME = NoteSql.COLUMN_USERNAME;
+    public static final String COLUMN_PASSWORD = NoteSql.COLUMN_PASSWORD;
+
+    // The schema and query strings live in NoteSql, shared with the JVM benchmarks
+
+    // Notes per transaction when backfilling after an upgrade; short enough not to stall other writes
+    static final int BACKFILL_BATCH_SIZE = 500;
+
+    // Budget for the shared note cache, counted in characters of heading and details
+    private static final int NOTE_CACHE_MAX_CHARS = 1024 * 1024;
+
+    private static DatabaseHelper instance;
+
+    private final Context context;
+    private final NoteCache noteCache = new NoteCache(NOTE_CACHE_MAX_CHARS);
+    private final NoteChangeBus changeBus = new NoteChangeBus();
+    private volatile boolean compressChunks = true;
+    // Stays false until the search index backfill is known to be done; it is never queued again
+    private volatile boolean searchIndexComplete;
+
+    /**
+     * Returns the process-wide helper. The underlying connection pool is opened
+     * once on first use and intentionally never closed: it lives as long as the
+     * process, so SQLite keeps its page and statement caches warm and every
+     * thread shares the same connections.
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a standalone helper. Only tests and benchmarks should use this
+     * directly; pass {@code null} as the name for an in-memory database.
+     */
+    DatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        this.context = context;
+        // Write-ahead logging lets readers run concurrently with the single writer
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
         try {
-            // Create tables
-            db.execSQL(CREATE_TABLE_USERS);
-            db.execSQL(CREATE_TABLE_NOTES);
-            Log.d("DatabaseHelper", "Database tables created");
+            for (String statement : NoteSql.CREATE_SCHEMA) {
+                db.execSQL(statement);
+            }
+            if (DbTrace.ENABLED) {
+                Log.d("DatabaseHelper", "Database tables created");
+            }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "Error creating tables: " + e.getMessage());
             throw e;
@@ -71,80 +114,345 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
         try {
-            // Drop older tables if they exist
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_NOTES);
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
-            
-            // Create tables again
-            onCreate(db);
-            Log.d("DatabaseHelper", "Database upgraded from version " + oldVersion + " to " + newVersion);
+            if (oldVersion < SchemaMigrations.OLDEST_MIGRATABLE_VERSION) {
+                // No record of what these looked like, so there is nothing to migrate from
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE_NOTES_FTS);
+                db.execSQL("DROP TABLE IF EXISTS " + NoteSql.TABLE_NOTE_CHUNKS);
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE_NOTES);
+                db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+
+                // Create tables again
+                onCreate(db);
+            } else {
+                SchemaMigrations.migrate(db, oldVersion, newVersion);
+            }
+            if (DbTrace.ENABLED) {
+                Log.d("DatabaseHelper", "Database upgraded from version " + oldVersion + " to " + newVersion);
+            }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "Error upgrading database: " + e.getMessage());
             throw e;
         }
     }
-    public void deleteNoteById(long noteId) {
+
+    /**
+     * Runs one batch of row backfills left behind by {@link #onUpgrade}. Call
+     * repeatedly off the main thread until it returns false; it picks up where
+     * it stopped, even across restarts. Listeners get one
+     * {@link NoteChangeBus.Listener#onNotesUpdated} for the notes in the batch
+     * whose list rows changed, e.g. that got their preview.
+     *
+     * @return true if more backfill work remains
+     */
+    public boolean runBackfillBatch() {
+        long started = DbTrace.start();
+        List<Long> shownChanged = new ArrayList<>();
+        boolean moreWork = SchemaMigrations.runBackfillBatch(getWritableDatabase(), BACKFILL_BATCH_SIZE,
+                shownChanged);
+        DbTrace.end("runBackfillBatch", started, shownChanged.size());
+        if (!shownChanged.isEmpty()) {
+            changeBus.publishUpdated(toArray(shownChanged));
+        }
+        return moreWork;
+    }
+
+    /** The cache {@link #getNoteById} reads through; exposed for its hit, miss and eviction counters. */
+    public NoteCache getNoteCache() {
+        return noteCache;
+    }
+
+    /** Inserts, updates and deletes made through this helper are published here. */
+    public NoteChangeBus getChangeBus() {
+        return changeBus;
+    }
+
+    /**
+     * Whether chunks written from now on are compressed; on by default. Rows
+     * keep the encoding they were written with, and reads handle both.
+     *
+     * Compression only starts past the first {@link NoteSql#CHUNK_CHARS}
+     * characters of a body. That inline head stays plain text because the
+     * search index and the list preview read it straight from the notes row,
+     * so bodies that fit inline are never compressed.
+     */
+    public void setCompressionEnabled(boolean enabled) {
+        compressChunks = enabled;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressChunks;
+    }
+
+    static void createSearchIndex(SQLiteDatabase db) {
+        db.execSQL(NoteSql.CREATE_TABLE_NOTES_FTS);
+        for (String trigger : NoteSql.CREATE_NOTES_FTS_TRIGGERS) {
+            db.execSQL(trigger);
+        }
+    }
+
+    /**
+     * Moves the note to the trash. It stays there, restorable, for
+     * {@link #TRASH_RETENTION_MILLIS} before {@link #purgeExpiredTrash} removes it.
+     *
+     * @return 1 if the note was trashed, 0 if there was no live note with that id,
+     *         or -1 if the delete failed and was rolled back
+     */
+    public int deleteNoteById(long noteId) {
         SQLiteDatabase db = this.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        long started = DbTrace.start();
+        int trashedRows = -1;
         try {
-            int deletedRows = db.delete(TABLE_NOTES, COLUMN_ID + " = ?",
-                    new String[]{String.valueOf(noteId)});
-            if (deletedRows > 0) {
-                // Note deleted successfully
-            } else {
-                // Handle deletion failure
+            int changed;
+            db.beginTransaction();
+            try (SQLiteStatement trash = db.compileStatement(NoteSql.SQL_TRASH_NOTE)) {
+                trash.bindLong(1, now);
+                trash.bindLong(2, noteId);
+                changed = trash.executeUpdateDelete();
+                if (changed > 0) {
+                    logChange(db, noteId, now);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
             }
+            trashedRows = changed;
         } catch (SQLException e) {
-            // Handle the exception
+            Log.e("DatabaseHelper", "Error deleting note " + noteId + ": " + e.getMessage());
         } finally {
-            db.close();
+            DbTrace.end("deleteNoteById", started, Math.max(trashedRows, 0));
+        }
+        if (trashedRows > 0) {
+            changeBus.publishDeleted(noteId);
         }
+        return trashedRows;
     }
-    // User related methods
-    public long addUser(User user) {
-        SQLiteDatabase db = null;
+
+    // How long deleted notes stay in the trash before the purge job removes them
+    static final long TRASH_RETENTION_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    // Ids per statement in the bulk calls below; well under the 999 bound parameters older SQLite builds allow
+    static final int DELETE_BATCH_SIZE = 500;
+
+    // Notes hard-deleted per purge transaction; each takes its chunks and FTS entries with it
+    static final int PURGE_BATCH_SIZE = 100;
+
+    private static final int BULK_TRASH = 0;
+    private static final int BULK_RESTORE = 1;
+    private static final int BULK_PURGE = 2;
+
+    /**
+     * Moves many notes of one user to the trash in a single transaction, a
+     * batch of ids per statement. Ids that don't exist, belong to another user
+     * or are already in the trash are skipped. Listeners get one
+     * {@link NoteChangeBus.Listener#onNotesDeleted} for the whole delete.
+     *
+     * @return the number of notes deleted, or -1 if the delete failed and was rolled back
+     */
+    public int deleteNotes(long userId, long[] noteIds) {
+        long[] trashed = changeNotes("deleteNotes", BULK_TRASH, userId, noteIds);
+        if (trashed == null) {
+            return -1;
+        }
+        if (trashed.length > 0) {
+            changeBus.publishDeleted(trashed);
+        }
+        return trashed.length;
+    }
+
+    /**
+     * Takes notes of one user back out of the trash, e.g. to undo a delete.
+     * Listeners get one {@link NoteChangeBus.Listener#onNotesRestored}.
+     *
+     * @return the number of notes restored, or -1 if the restore failed and was rolled back
+     */
+    public int restoreNotes(long userId, long[] noteIds) {
+        long[] restored = changeNotes("restoreNotes", BULK_RESTORE, userId, noteIds);
+        if (restored == null) {
+            return -1;
+        }
+        if (restored.length > 0) {
+            changeBus.publishRestored(restored);
+        }
+        return restored.length;
+    }
+
+    /**
+     * Removes notes of one user from the trash for good. Notes that are not
+     * in the trash are left alone.
+     *
+     * @return the number of notes removed, or -1 if the purge failed and was rolled back
+     */
+    public int purgeNotes(long userId, long[] noteIds) {
+        long[] purged = changeNotes("purgeNotes", BULK_PURGE, userId, noteIds);
+        return purged == null ? -1 : purged.length;
+    }
+
+    /**
+     * Runs one bulk trash, restore or purge over the user's notes in a single
+     * transaction, {@link #DELETE_BATCH_SIZE} ids per statement.
+     *
+     * @return the ids it applied to, or null if it failed and was rolled back
+     */
+    private long[] changeNotes(String operation, int change, long userId, long[] noteIds) {
+        if (noteIds.length == 0) {
+            return new long[0];
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        long[] changedIds = new long[noteIds.length];
+        int changed = 0;
+        long now = System.currentTimeMillis();
+        long started = DbTrace.start();
+        db.beginTransaction();
         try {
-            db = this.getWritableDatabase();
-            
-            // First check if username already exists
-            if (isUsernameTaken(user.getUsername())) {
-                Log.d("DatabaseHelper", "Username already exists: " + user.getUsername());
-                return -1; // Username already exists
+            for (int from = 0; from < noteIds.length; from += DELETE_BATCH_SIZE) {
+                int count = Math.min(DELETE_BATCH_SIZE, noteIds.length - from);
+                String[] args = new String[count + 1];
+                args[0] = String.valueOf(userId);
+                for (int i = 0; i < count; i++) {
+                    args[i + 1] = String.valueOf(noteIds[from + i]);
+                }
+                int batchStart = changed;
+                try (Cursor cursor = db.rawQuery(NoteSql.ownedNoteIdsSql(count, change != BULK_TRASH), args)) {
+                    while (cursor.moveToNext()) {
+                        changedIds[changed++] = cursor.getLong(0);
+                    }
+                }
+                if (change == BULK_TRASH) {
+                    Object[] trashArgs = new Object[args.length + 1];
+                    trashArgs[0] = now;
+                    System.arraycopy(args, 0, trashArgs, 1, args.length);
+                    db.execSQL(NoteSql.trashNotesSql(count), trashArgs);
+                } else if (change == BULK_RESTORE) {
+                    db.execSQL(NoteSql.restoreNotesSql(count), args);
+                } else {
+                    // Purged notes were logged for sync when they went to the trash
+                    db.execSQL(NoteSql.purgeNotesSql(count), args);
+                    continue;
+                }
+                if (changed > batchStart) {
+                    Object[] logArgs = new Object[changed - batchStart + 1];
+                    logArgs[0] = now;
+                    for (int i = batchStart; i < changed; i++) {
+                        logArgs[i - batchStart + 1] = changedIds[i];
+                    }
+                    db.execSQL(NoteSql.logChangesSql(changed - batchStart), logArgs);
+                }
             }
-            
-            ContentValues values = new ContentValues();
-            values.put(COLUMN_USERNAME, user.getUsername());
-            // Store password as plain text
-            values.put(COLUMN_PASSWORD, user.getPassword());
-            
-            Log.d("DatabaseHelper", "Attempting to add user: " + user.getUsername());
-            
-            // Insert the user
-            long userId = db.insertOrThrow(TABLE_USERS, null, values);
-            Log.d("DatabaseHelper", "User added successfully with ID: " + userId);
-            return userId;
-            
+            db.setTransactionSuccessful();
         } catch (SQLException e) {
-            Log.e("DatabaseHelper", "Error adding user: " + e.getMessage(), e);
-            return -1;
+            Log.e("DatabaseHelper", "Error in " + operation + ": " + e.getMessage());
+            return null;
         } finally {
-            if (db != null) {
-                try {
-                    db.close();
-                } catch (Exception e) {
-                    Log.e("DatabaseHelper", "Error closing database", e);
+            db.endTransaction();
+        }
+        DbTrace.end(operation, started, changed);
+
+        changedIds = Arrays.copyOf(changedIds, changed);
+        if (change == BULK_PURGE) {
+            for (long noteId : changedIds) {
+                noteCache.invalidate(noteId);
+            }
+        }
+        return changedIds;
+    }
+
+    /**
+     * The user's trash, most recently deleted first.
+     *
+     * @param limit maximum number of notes to return
+     */
+    public List<NoteSummary> getTrashedNotes(long userId, int limit) {
+        List<NoteSummary> notes = new ArrayList<>();
+        long started = DbTrace.start();
+        try (Cursor cursor = this.getReadableDatabase().rawQuery(NoteSql.SQL_TRASHED_NOTES,
+                new String[]{String.valueOf(userId), String.valueOf(limit)})) {
+            while (cursor.moveToNext()) {
+                notes.add(new NoteSummary(cursor.getLong(0), cursor.getString(1), cursor.getString(2)));
+            }
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Error loading trash: " + e.getMessage());
+        }
+        DbTrace.end("getTrashedNotes", started, notes.size());
+        return notes;
+    }
+
+    /**
+     * Removes one batch of notes that have been in the trash longer than
+     * {@link #TRASH_RETENTION_MILLIS}, in its own transaction. Call repeatedly
+     * on the writer lane until it returns false, so other writes get in
+     * between batches.
+     *
+     * @return true if more expired notes may remain
+     */
+    public boolean purgeExpiredTrash() {
+        return purgeExpiredTrash(System.currentTimeMillis(), PURGE_BATCH_SIZE);
+    }
+
+    boolean purgeExpiredTrash(long now, int batchSize) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        long[] purgedIds = new long[batchSize];
+        int purged = 0;
+        long started = DbTrace.start();
+        db.beginTransaction();
+        try {
+            try (Cursor cursor = db.rawQuery(NoteSql.SQL_EXPIRED_TRASH, new String[]{
+                    String.valueOf(now - TRASH_RETENTION_MILLIS), String.valueOf(batchSize)})) {
+                while (cursor.moveToNext()) {
+                    purgedIds[purged++] = cursor.getLong(0);
                 }
             }
+            if (purged > 0) {
+                Object[] args = new Object[purged];
+                for (int i = 0; i < purged; i++) {
+                    args[i] = purgedIds[i];
+                }
+                db.execSQL(NoteSql.purgeExpiredSql(purged), args);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
+        DbTrace.end("purgeExpiredTrash", started, purged);
+
+        for (int i = 0; i < purged; i++) {
+            noteCache.invalidate(purgedIds[i]);
+        }
+        return purged == batchSize;
+    }
+
+    // User related methods
+
+    /**
+     * Inserts the user with a hashed password. One statement: a taken username
+     * is caught by the UNIQUE constraint rather than checked for first.
+     *
+     * @return the new user id, or -1 if the username is taken
+     */
+    public long addUser(User user) {
+        SQLiteDatabase db = this.getWritableDatabase();
+
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_USERNAME, user.getUsername());
+        values.put(COLUMN_PASSWORD, getPasswordHasher().hash(user.getPassword()));
+
+        long started = DbTrace.start();
+        long userId = db.insertWithOnConflict(TABLE_USERS, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        DbTrace.end("addUser", started, userId == -1 ? 0 : 1);
+        if (DbTrace.ENABLED) {
+            Log.d("DatabaseHelper", userId == -1 ? "Username already exists" : "Added user " + userId);
+        }
+        return userId;
     }
     
     public User getUser(String username) {
         SQLiteDatabase db = null;
         Cursor cursor = null;
+        long started = DbTrace.start();
         
         try {
             db = this.getReadableDatabase();
-            String selectQuery = "SELECT * FROM " + TABLE_USERS + " WHERE " + COLUMN_USERNAME + " = ?";
-            cursor = db.rawQuery(selectQuery, new String[]{username});
+            cursor = db.rawQuery(NoteSql.SQL_USER_BY_NAME, new String[]{username});
             
             if (cursor != null && cursor.moveToFirst()) {
                 try {
@@ -157,9 +465,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     user.setUsername(dbUsername);
                     user.setPassword(dbPassword);
                     
-                    Log.d("DatabaseHelper", "Retrieved user - ID: " + userId + 
-                                          ", Username: " + dbUsername + 
-                                          ", Password: " + dbPassword);
+                    DbTrace.end("getUser", started, 1);
                     return user;
                 } catch (Exception e) {
                     Log.e("DatabaseHelper", "Error creating user object", e);
@@ -167,6 +473,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 }
             }
             
+            DbTrace.end("getUser", started, 0);
             return null;
             
         } catch (Exception e) {
@@ -176,100 +483,76 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             if (cursor != null) {
                 cursor.close();
             }
-            if (db != null) {
-                try {
-                    db.close();
-                } catch (Exception e) {
-                    Log.e("DatabaseHelper", "Error closing database", e);
-                }
-            }
         }
     }
     
-    public boolean checkUser(String username, String password) {
-        Log.d("DatabaseHelper", "Checking user: " + username);
-        User user = getUser(username);
-        if (user != null) {
-            Log.d("DatabaseHelper", "User found. Checking password...");
-            boolean passwordMatches = user.checkPassword(password);
-            Log.d("DatabaseHelper", "Password " + (passwordMatches ? "matches" : "does not match"));
-            return passwordMatches;
-        }
-        Log.d("DatabaseHelper", "User not found: " + username);
-        return false;
-    }
-    
-    public boolean isUsernameTaken(String username) {
-        SQLiteDatabase db = null;
-        Cursor cursor = null;
-        try {
-            db = this.getReadableDatabase();
-            String selectQuery = "SELECT * FROM " + TABLE_USERS + " WHERE " + COLUMN_USERNAME + " = ?";
-            
-            cursor = db.rawQuery(selectQuery, new String[]{username});
-            return cursor != null && cursor.getCount() > 0;
-        } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
-            // Don't close the database connection here as it might be used by the calling method
+    /**
+     * Re-hashes a user's password at the current cost if the stored value is
+     * plain text or was hashed at a lower cost. Call after the password has
+     * been verified, off the main thread.
+     *
+     * @return true if the stored hash was replaced
+     */
+    public boolean upgradePasswordHash(long userId, String storedPassword, String password) {
+        PasswordHasher hasher = getPasswordHasher();
+        if (!hasher.needsRehash(storedPassword)) {
+            return false;
         }
-    }
-    
-    private String hashPassword(String password) {
-        try {
-            // Create MessageDigest instance for MD5
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            // Add password bytes to digest
-            md.update(password.getBytes());
-            // Get the hash's bytes
-            byte[] bytes = md.digest();
-            // Convert it to hexadecimal format
-            StringBuilder sb = new StringBuilder();
-            for (byte aByte : bytes) {
-                sb.append(Integer.toString((aByte & 0xff) + 0x100, 16).substring(1));
-            }
-            // Get complete hashed password in hex format
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-            return "";
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_PASSWORD, hasher.hash(password));
+        // Only replace what we verified against, in case the password changed meanwhile
+        int updated = getWritableDatabase().update(TABLE_USERS, values,
+                COLUMN_ID + " = ? AND " + COLUMN_PASSWORD + " = ?",
+                new String[]{String.valueOf(userId), storedPassword});
+        if (DbTrace.ENABLED) {
+            Log.d("DatabaseHelper", "Upgraded password hash for user " + userId + ": " + (updated > 0));
         }
+        return updated > 0;
     }
-    
+
+    /** The hasher new passwords go through; calibrated on first use, so don't call on the main thread. */
+    PasswordHasher getPasswordHasher() {
+        return PasswordHasher.forDevice(context);
+    }
+
     public long insertNote(String heading, String details, long userId) {
         SQLiteDatabase db = null;
         try {
             db = this.getWritableDatabase();
             
-            Log.d("DatabaseHelper", "Inserting note - Title: " + heading + ", User ID: " + userId);
-            
+            ChunkLayout.Edit chunks = splitIfLong(details);
+            String inline = chunks == null ? details : chunks.headText();
             ContentValues values = new ContentValues();
             values.put(COLUMN_HEADING, heading);
-            values.put(COLUMN_DETAILS, details);
+            values.put(COLUMN_DETAILS, inline);
+            values.put(COLUMN_PREVIEW, NoteSummary.makePreview(inline));
             values.put(COLUMN_USER_ID, userId);
+            long now = System.currentTimeMillis();
+            values.put(COLUMN_CREATED_AT, now);
+            values.put(COLUMN_UPDATED_AT, now);
+            values.put(COLUMN_SYNC_ID, newSyncId());
             
-            long id = db.insert(TABLE_NOTES, null, values);
-            
-            if (id == -1) {
-                Log.e("DatabaseHelper", "Failed to insert note into database");
-            } else {
-                Log.d("DatabaseHelper", "Note inserted successfully with ID: " + id);
-                
-                // Verify the note was actually inserted
-                Cursor cursor = db.query(TABLE_NOTES, 
-                    new String[]{COLUMN_ID, COLUMN_HEADING, COLUMN_DETAILS, COLUMN_USER_ID},
-                    COLUMN_ID + "=?",
-                    new String[]{String.valueOf(id)},
-                    null, null, null);
-                
-                if (cursor != null && cursor.moveToFirst()) {
-                    Log.d("DatabaseHelper", "Verification - Found note with ID: " + 
-                        cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-                    cursor.close();
-                } else {
-                    Log.e("DatabaseHelper", "Verification failed - Note not found after insertion!");
+            long started = DbTrace.start();
+            long id;
+            db.beginTransaction();
+            try {
+                id = db.insert(TABLE_NOTES, null, values);
+                if (id != -1 && chunks != null) {
+                    writeChunks(db, id, chunks);
                 }
+                if (id != -1) {
+                    logChange(db, id, now);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            DbTrace.end("insertNote", started, id == -1 ? 0 : 1);
+            if (id != -1) {
+                noteCache.invalidate(id);
+                changeBus.publishInserted(id);
+            } else {
+                Log.e("DatabaseHelper", "Failed to insert note into database");
             }
             
             return id;
@@ -277,37 +560,305 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             Log.e("DatabaseHelper", "Error inserting note: " + e.getMessage());
             e.printStackTrace();
             return -1;
+        }
+    }
+
+    /**
+     * Receives progress while {@link #bulkInsertNotes} runs. Called on the
+     * inserting thread after every {@link #BULK_INSERT_BATCH_SIZE} rows and once
+     * more at the end.
+     */
+    public interface BulkInsertListener {
+        void onBatchInserted(int insertedSoFar);
+    }
+
+    static final int BULK_INSERT_BATCH_SIZE = 500;
+
+    public int bulkInsertNotes(long userId, Iterable<Note> notes) {
+        return bulkInsertNotes(userId, notes, null);
+    }
+
+    /**
+     * Inserts many notes for one user in a single transaction, reusing one
+     * compiled INSERT statement for every row. Either all notes are inserted
+     * or none are.
+     *
+     * @return the number of notes inserted, or -1 if the insert failed and was rolled back
+     */
+    public int bulkInsertNotes(long userId, Iterable<Note> notes, BulkInsertListener listener) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int inserted = 0;
+        long[] insertedIds = new long[BULK_INSERT_BATCH_SIZE];
+        long now = System.currentTimeMillis();
+        long started = DbTrace.start();
+        db.beginTransaction();
+        try (SQLiteStatement statement = db.compileStatement(NoteSql.SQL_INSERT_NOTE);
+             SQLiteStatement log = db.compileStatement(NoteSql.SQL_LOG_CHANGE)) {
+            for (Note note : notes) {
+                ChunkLayout.Edit chunks = splitIfLong(note.getDetails());
+                String inline = chunks == null ? note.getDetails() : chunks.headText();
+                bindNullable(statement, 1, note.getHeading());
+                bindNullable(statement, 2, inline);
+                bindNullable(statement, 3, NoteSummary.makePreview(inline));
+                statement.bindLong(4, userId);
+                statement.bindLong(5, now);
+                statement.bindLong(6, now);
+                statement.bindString(7, newSyncId());
+                long id = statement.executeInsert();
+                statement.clearBindings();
+                if (chunks != null) {
+                    writeChunks(db, id, chunks);
+                }
+                log.bindLong(1, now);
+                log.bindLong(2, id);
+                log.executeInsert();
+
+                if (inserted == insertedIds.length) {
+                    insertedIds = Arrays.copyOf(insertedIds, inserted * 2);
+                }
+                insertedIds[inserted++] = id;
+                if (listener != null && inserted % BULK_INSERT_BATCH_SIZE == 0) {
+                    listener.onBatchInserted(inserted);
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Error bulk inserting notes: " + e.getMessage());
+            return -1;
         } finally {
-            if (db != null) {
-                try {
-                    db.close();
-                } catch (Exception e) {
-                    Log.e("DatabaseHelper", "Error closing database", e);
+            db.endTransaction();
+        }
+        DbTrace.end("bulkInsertNotes", started, inserted);
+
+        if (listener != null && inserted % BULK_INSERT_BATCH_SIZE != 0) {
+            listener.onBatchInserted(inserted);
+        }
+        // Only announce rows once the transaction has committed
+        for (int i = 0; i < inserted; i++) {
+            changeBus.publishInserted(insertedIds[i]);
+        }
+        return inserted;
+    }
+
+    private static String newSyncId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Queues the note for the next sync upload. Call inside the transaction
+     * that changed it, so a committed change is never missing from the log.
+     * Changes applied from the remote are not logged.
+     */
+    private static void logChange(SQLiteDatabase db, long noteId, long changedAt) {
+        db.execSQL(NoteSql.SQL_LOG_CHANGE, new Object[]{changedAt, noteId});
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    // Drops every stored chunk of a body that now fits inline
+    private static final ChunkLayout.Edit NO_CHUNKS = ChunkLayout.split("", NoteSql.CHUNK_CHARS);
+
+    /** @return the chunks to store a body as, or null if it fits inline */
+    private static ChunkLayout.Edit splitIfLong(String details) {
+        return details != null && details.length() > NoteSql.CHUNK_CHARS
+                ? ChunkLayout.split(details, NoteSql.CHUNK_CHARS)
+                : null;
+    }
+
+    /**
+     * Applies the chunk table side of an edit and refreshes the note's chunk
+     * count, compressing the chunks unless that is turned off. The inline
+     * head is the caller's business. Call inside a transaction.
+     */
+    private void writeChunks(SQLiteDatabase db, long noteId, ChunkLayout.Edit edit) {
+        String[] noteIdArg = {String.valueOf(noteId)};
+        if (edit.replacesAll()) {
+            db.execSQL(NoteSql.SQL_DELETE_NOTE_CHUNKS, noteIdArg);
+        } else {
+            for (long seq : edit.removedSeqs()) {
+                db.execSQL(NoteSql.SQL_DELETE_NOTE_CHUNK, new Object[]{noteId, seq});
+            }
+        }
+        boolean compress = compressChunks;
+        try (SQLiteStatement put = db.compileStatement(NoteSql.SQL_PUT_NOTE_CHUNK)) {
+            for (int i = 0; i < edit.writtenSeqs().size(); i++) {
+                long seq = edit.writtenSeqs().get(i);
+                if (seq == ChunkLayout.HEAD_SEQ) {
+                    continue;
+                }
+                String text = edit.writtenTexts().get(i);
+                byte[] compressed = compress ? NoteCodec.compress(text) : null;
+                put.bindLong(1, noteId);
+                put.bindLong(2, seq);
+                if (compressed != null) {
+                    put.bindBlob(3, compressed);
+                } else {
+                    put.bindString(3, text);
                 }
+                put.executeInsert();
+            }
+        }
+        db.execSQL(NoteSql.SQL_UPDATE_CHUNK_COUNT, new Object[]{noteId, noteId});
+    }
+
+    /** Receives a body one stored chunk at a time, in order. Called on the reading thread. */
+    public interface ChunkReader {
+        void onChunk(long seq, String text);
+    }
+
+    /**
+     * Hands the chunks stored after a note's inline head to {@code reader}, in
+     * order, decompressing any that were stored compressed.
+     */
+    void readChunks(long noteId, ChunkReader reader) {
+        // One row per chunk, so no single row comes near the CursorWindow limit
+        try (Cursor cursor = getReadableDatabase().rawQuery(NoteSql.SQL_NOTE_CHUNKS,
+                new String[]{String.valueOf(noteId)})) {
+            while (cursor.moveToNext()) {
+                String text = cursor.getType(1) == Cursor.FIELD_TYPE_BLOB
+                        ? NoteCodec.decompress(cursor.getBlob(1))
+                        : cursor.getString(1);
+                reader.onChunk(cursor.getLong(0), text);
             }
         }
     }
 
+    private String readFullDetails(long noteId, String head) {
+        final StringBuilder details = new StringBuilder(head == null ? "" : head);
+        readChunks(noteId, new ChunkReader() {
+            @Override
+            public void onChunk(long seq, String text) {
+                details.append(text);
+            }
+        });
+        return details.toString();
+    }
+
     public boolean updateNote(long noteId, String heading, String details) {
         SQLiteDatabase db = this.getWritableDatabase();
+        ChunkLayout.Edit chunks = splitIfLong(details);
+        String inline = chunks == null ? details : chunks.headText();
         ContentValues values = new ContentValues();
         values.put(COLUMN_HEADING, heading);
-        values.put(COLUMN_DETAILS, details);
+        values.put(COLUMN_DETAILS, inline);
+        values.put(COLUMN_PREVIEW, NoteSummary.makePreview(inline));
+        long now = System.currentTimeMillis();
+        values.put(COLUMN_UPDATED_AT, now);
 
         int rowsAffected = -1;
 
+        long started = DbTrace.start();
+        db.beginTransaction();
         try {
             rowsAffected = db.update(TABLE_NOTES, values, COLUMN_ID + " = ?",
                     new String[]{String.valueOf(noteId)});
+            if (rowsAffected > 0) {
+                // A whole new body replaces every chunk the old one had
+                writeChunks(db, noteId, chunks != null ? chunks : NO_CHUNKS);
+                logChange(db, noteId, now);
+            }
+            db.setTransactionSuccessful();
         } catch (SQLException e) {
-            // Handle the exception
+            Log.e("DatabaseHelper", "Error updating note " + noteId + ": " + e.getMessage());
+            rowsAffected = -1;
         } finally {
-            db.close();
+            db.endTransaction();
+            noteCache.invalidate(noteId);
+            DbTrace.end("updateNote", started, Math.max(rowsAffected, 0));
         }
 
+        if (rowsAffected > 0) {
+            changeBus.publishUpdated(noteId);
+        }
         return rowsAffected > 0;
     }
 
+    /**
+     * Saves an edit to a chunked body from {@link ChunkLayout#takeEdit}: only
+     * the chunks it carries are written, so the cost follows the size of the
+     * edit rather than of the note.
+     *
+     * @param heading the new heading, or null to leave it as it is
+     */
+    public boolean updateNoteBody(long noteId, String heading, ChunkLayout.Edit edit) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        if (heading != null) {
+            values.put(COLUMN_HEADING, heading);
+        }
+        String head = edit.headText();
+        if (head != null) {
+            values.put(COLUMN_DETAILS, head);
+            values.put(COLUMN_PREVIEW, NoteSummary.makePreview(head));
+        }
+        long now = System.currentTimeMillis();
+        values.put(COLUMN_UPDATED_AT, now);
+
+        long started = DbTrace.start();
+        db.beginTransaction();
+        try {
+            // Leaving heading and details out of the update keeps the FTS triggers from firing
+            if (db.update(TABLE_NOTES, values, COLUMN_ID + " = ?",
+                    new String[]{String.valueOf(noteId)}) == 0) {
+                return false;
+            }
+            writeChunks(db, noteId, edit);
+            logChange(db, noteId, now);
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Error saving note body: " + e.getMessage());
+            return false;
+        } finally {
+            db.endTransaction();
+            noteCache.invalidate(noteId);
+        }
+        DbTrace.end("updateNoteBody", started, edit.writtenSeqs().size());
+        changeBus.publishUpdated(noteId);
+        return true;
+    }
+
+    /**
+     * Reads a note without ever holding its whole body: the body goes to
+     * {@code reader} one stored chunk at a time, starting with the inline
+     * head, and the returned note carries everything else.
+     *
+     * @return the note with null details, or null if it doesn't exist
+     */
+    public Note readNoteBody(long noteId, ChunkReader reader) {
+        // Only notes without chunks are cached, so a hit is the whole body
+        Note note = noteCache.get(noteId);
+        if (note != null) {
+            reader.onChunk(ChunkLayout.HEAD_SEQ, note.getDetails() == null ? "" : note.getDetails());
+            note.setDetails(null);
+            return note;
+        }
+
+        long started = DbTrace.start();
+        int chunkCount;
+        try (Cursor cursor = getReadableDatabase().rawQuery(NoteSql.SQL_NOTE_BY_ID,
+                new String[]{String.valueOf(noteId)})) {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            note = new Note();
+            note.setId(cursor.getLong(0));
+            note.setHeading(cursor.getString(1));
+            reader.onChunk(ChunkLayout.HEAD_SEQ, cursor.isNull(2) ? "" : cursor.getString(2));
+            chunkCount = cursor.getInt(3);
+        }
+        if (chunkCount > 0) {
+            readChunks(noteId, reader);
+        }
+        DbTrace.end("readNoteBody", started, chunkCount + 1);
+        return note;
+    }
+
     public List<Note> getAllNotes(long userId) {
         List<Note> notes = new ArrayList<>();
         if (userId == -1) {
@@ -317,29 +868,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         
         SQLiteDatabase db = null;
         Cursor cursor = null;
+        long cacheStamp = noteCache.stamp();
+        long started = DbTrace.start();
         
         try {
             db = this.getReadableDatabase();
-            Log.d("DatabaseHelper", "Querying notes for user ID: " + userId);
-            
-            String[] columns = {COLUMN_ID, COLUMN_HEADING, COLUMN_DETAILS};
-            String selection = COLUMN_USER_ID + "=?";
-            String[] selectionArgs = {String.valueOf(userId)};
-            String orderBy = COLUMN_ID + " DESC";
-            
-            Log.d("DatabaseHelper", "Query: SELECT " + String.join(", ", columns) + 
-                                 " FROM " + TABLE_NOTES + 
-                                 " WHERE " + selection + 
-                                 " ORDER BY " + orderBy);
-            
-            cursor = db.query(TABLE_NOTES, columns, selection, selectionArgs, null, null, orderBy);
+            cursor = db.rawQuery(NoteSql.SQL_ALL_NOTES, new String[]{String.valueOf(userId)});
             
             if (cursor == null) {
                 Log.e("DatabaseHelper", "Cursor is null after query");
                 return notes;
             }
-            
-            Log.d("DatabaseHelper", "Found " + cursor.getCount() + " notes in database");
 
             if (cursor.moveToFirst()) {
                 do {
@@ -347,22 +886,23 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                         long id = cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID));
                         String heading = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_HEADING));
                         String details = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DETAILS));
+                        boolean chunked = cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_CHUNK_COUNT)) > 0;
 
                         Note note = new Note();
                         note.setId(id);
                         note.setHeading(heading);
-                        note.setDetails(details);
+                        note.setDetails(chunked ? readFullDetails(id, details) : details);
                         note.setUserId(userId);
 
-                        Log.d("DatabaseHelper", "Adding note - ID: " + id + ", Title: " + heading);
                         notes.add(note);
+                        if (!chunked) {
+                            noteCache.putIfUnchanged(note, cacheStamp);
+                        }
                     } catch (Exception e) {
                         Log.e("DatabaseHelper", "Error reading note data: " + e.getMessage());
                         e.printStackTrace();
                     }
                 } while (cursor.moveToNext());
-            } else {
-                Log.d("DatabaseHelper", "No notes found for user ID: " + userId);
             }
         } catch (Exception e) {
             Log.e("DatabaseHelper", "Error in getAllNotes: " + e.getMessage());
@@ -375,52 +915,471 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     Log.e("DatabaseHelper", "Error closing cursor: " + e.getMessage());
                 }
             }
-            if (db != null) {
-                try {
-                    db.close();
-                } catch (Exception e) {
-                    Log.e("DatabaseHelper", "Error closing database: " + e.getMessage());
+        }
+
+        DbTrace.end("getAllNotes", started, notes.size());
+        return notes;
+    }
+
+    /**
+     * Loads one page of the user's notes, newest first.
+     *
+     * @param afterId  id of the last note of the previous page, or -1 for the first page
+     * @param pageSize maximum number of notes to return
+     */
+    public List<NoteSummary> getNotesPage(long userId, long afterId, int pageSize) {
+        return getNotesPage(userId, SORT_NEWEST, afterId == -1 ? null : new NoteSummary(afterId, null, null), pageSize);
+    }
+
+    /**
+     * Loads one page of the user's notes in the given order. Pages are
+     * addressed by the last row of the previous page rather than an offset,
+     * and every order has an index to walk, so every page costs the same no
+     * matter the order or how deep the user has scrolled.
+     *
+     * @param sort     one of the {@code SORT_} constants
+     * @param after    the last note of the previous page, as loaded in this order, or null for the first page
+     * @param pageSize maximum number of notes to return
+     */
+    public List<NoteSummary> getNotesPage(long userId, int sort, NoteSummary after, int pageSize) {
+        List<NoteSummary> notes = new ArrayList<>(pageSize);
+        if (userId == -1) {
+            Log.e("DatabaseHelper", "Invalid user ID (-1) provided to getNotesPage");
+            return notes;
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = null;
+        long started = DbTrace.start();
+        try {
+            cursor = db.rawQuery(NoteSql.notesPageSql(sort), NoteSql.notesPageArgs(sort, userId, after, pageSize));
+            while (cursor.moveToNext()) {
+                notes.add(new NoteSummary(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getLong(3)));
+            }
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Error loading notes page: " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        DbTrace.end("getNotesPage", started, notes.size());
+        return notes;
+    }
+
+    /**
+     * Opens a cursor over the heading, inline details, id and chunk count of
+     * every note of the user, oldest first, for {@link NoteTransfer}. The
+     * caller must close it and read any chunks with {@link #readChunks}.
+     */
+    Cursor queryNotesForExport(long userId) {
+        return this.getReadableDatabase().rawQuery(NoteSql.SQL_EXPORT_NOTES, new String[]{String.valueOf(userId)});
+    }
+
+    /**
+     * The user's oldest changes waiting to be uploaded, for {@link SyncEngine}.
+     * Notes in the trash or already purged come back as deleted, without a
+     * body; other bodies are read whole, chunks included.
+     *
+     * @param limit maximum number of changes to return
+     */
+    List<SyncChange> getPendingChanges(long userId, int limit) {
+        List<SyncChange> changes = new ArrayList<>();
+        long started = DbTrace.start();
+        try (Cursor cursor = this.getReadableDatabase().rawQuery(NoteSql.SQL_PENDING_CHANGES,
+                new String[]{String.valueOf(userId), String.valueOf(limit)})) {
+            while (cursor.moveToNext()) {
+                boolean deleted = cursor.isNull(3) || !cursor.isNull(4);
+                String heading = null;
+                String details = null;
+                if (!deleted) {
+                    heading = cursor.getString(5);
+                    details = cursor.getInt(7) > 0
+                            ? readFullDetails(cursor.getLong(3), cursor.getString(6))
+                            : cursor.getString(6);
                 }
+                long createdAt = cursor.isNull(8) ? 0 : cursor.getLong(8);
+                changes.add(new SyncChange(cursor.getString(1), heading, details, deleted,
+                        createdAt, cursor.getLong(2), null, cursor.getLong(0)));
             }
         }
+        DbTrace.end("getPendingChanges", started, changes.size());
+        return changes;
+    }
 
-        Log.d("DatabaseHelper", "Returning " + notes.size() + " notes to caller");
-        return notes;
+    /**
+     * Drops the user's queued changes up to and including {@code throughSeq}
+     * once the remote has stored them. A note changed again since it was read
+     * for upload stays queued.
+     */
+    void acknowledgeChanges(long userId, long throughSeq) {
+        long started = DbTrace.start();
+        this.getWritableDatabase().execSQL(NoteSql.SQL_ACKNOWLEDGE_CHANGES, new Object[]{userId, throughSeq});
+        DbTrace.end("acknowledgeChanges", started, 0);
+    }
+
+    /** @return where the user's next download starts, or null if nothing was downloaded yet */
+    String getSyncCursor(long userId) {
+        try (Cursor cursor = this.getReadableDatabase().rawQuery(NoteSql.SQL_SYNC_CURSOR,
+                new String[]{String.valueOf(userId)})) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    /**
+     * Applies one downloaded page of remote changes to the user's notes and
+     * moves the user's cursor past it, all in one transaction, so a page is
+     * applied exactly once even if the sync is cut off.
+     *
+     * Changes made by {@code deviceId} itself are skipped. When a note also
+     * has a change queued here, the one that {@link SyncChange#supersedes}
+     * the other is kept: a remote winner replaces the note and drops the
+     * queued change, a local winner stays queued to be uploaded. That
+     * includes the deletion still queued for a note purged here. Applied
+     * changes are not logged, so they are never sent back.
+     *
+     * @return the number of changes applied, or -1 if the page failed and was rolled back
+     */
+    int applyRemoteChanges(long userId, String deviceId, List<SyncChange> changes, String cursor) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String[] noteArgs = {String.valueOf(userId), null};
+        List<Long> inserted = new ArrayList<>();
+        List<Long> updated = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        List<Long> restored = new ArrayList<>();
+        int applied = 0;
+        long started = DbTrace.start();
+        db.beginTransaction();
+        try {
+            for (SyncChange change : changes) {
+                if (deviceId.equals(change.getDeviceId())) {
+                    continue;
+                }
+                long noteId = -1;
+                boolean wasDeleted = false;
+                noteArgs[1] = change.getSyncId();
+                try (Cursor note = db.rawQuery(NoteSql.SQL_NOTE_BY_SYNC_ID, noteArgs)) {
+                    if (note.moveToFirst()) {
+                        noteId = note.getLong(0);
+                        wasDeleted = !note.isNull(1);
+                    }
+                }
+
+                if (noteId == -1) {
+                    if (change.isDeleted()) {
+                        // Deleted before this device ever saw it, or already purged here
+                        continue;
+                    }
+                    // Purged here with its deletion still queued: the deletion and the
+                    // remote change settle like any other conflict
+                    try (Cursor pending = db.rawQuery(NoteSql.SQL_PENDING_CHANGE_AT_BY_SYNC_ID, noteArgs)) {
+                        if (pending.moveToFirst() && !change.supersedes(pending.getLong(0), deviceId)) {
+                            continue;
+                        }
+                    }
+                    db.execSQL(NoteSql.SQL_DROP_PENDING_CHANGE_BY_SYNC_ID, noteArgs);
+                    inserted.add(insertRemoteNote(db, userId, change));
+                    applied++;
+                    continue;
+                }
+
+                String[] noteIdArg = {String.valueOf(noteId)};
+                try (Cursor pending = db.rawQuery(NoteSql.SQL_PENDING_CHANGE_AT, noteIdArg)) {
+                    if (pending.moveToFirst() && !change.supersedes(pending.getLong(0), deviceId)) {
+                        continue;
+                    }
+                }
+                db.execSQL(NoteSql.SQL_DROP_PENDING_CHANGE, noteIdArg);
+                updateRemoteNote(db, noteId, wasDeleted, change);
+                applied++;
+                if (change.isDeleted()) {
+                    if (!wasDeleted) {
+                        deleted.add(noteId);
+                    }
+                } else if (wasDeleted) {
+                    restored.add(noteId);
+                } else {
+                    updated.add(noteId);
+                }
+            }
+            db.execSQL(NoteSql.SQL_PUT_SYNC_CURSOR, new Object[]{userId, cursor});
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Error applying remote changes: " + e.getMessage());
+            return -1;
+        } finally {
+            db.endTransaction();
+        }
+        DbTrace.end("applyRemoteChanges", started, applied);
+
+        for (long noteId : updated) {
+            noteCache.invalidate(noteId);
+            changeBus.publishUpdated(noteId);
+        }
+        for (long noteId : inserted) {
+            changeBus.publishInserted(noteId);
+        }
+        if (!deleted.isEmpty()) {
+            changeBus.publishDeleted(toArray(deleted));
+        }
+        if (!restored.isEmpty()) {
+            for (long noteId : restored) {
+                noteCache.invalidate(noteId);
+            }
+            changeBus.publishRestored(toArray(restored));
+        }
+        return applied;
     }
 
+    private long insertRemoteNote(SQLiteDatabase db, long userId, SyncChange change) {
+        ChunkLayout.Edit chunks = splitIfLong(change.getDetails());
+        String inline = chunks == null ? change.getDetails() : chunks.headText();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_HEADING, change.getHeading());
+        values.put(COLUMN_DETAILS, inline);
+        values.put(COLUMN_PREVIEW, NoteSummary.makePreview(inline));
+        values.put(COLUMN_USER_ID, userId);
+        values.put(COLUMN_CREATED_AT, change.getCreatedAt());
+        values.put(COLUMN_UPDATED_AT, change.getChangedAt());
+        values.put(COLUMN_SYNC_ID, change.getSyncId());
+        long id = db.insertOrThrow(TABLE_NOTES, null, values);
+        if (chunks != null) {
+            writeChunks(db, id, chunks);
+        }
+        return id;
+    }
+
+    // A deletion only moves the note to the trash; its text stays as it was
+    private void updateRemoteNote(SQLiteDatabase db, long noteId, boolean wasDeleted, SyncChange change) {
+        ContentValues values = new ContentValues();
+        ChunkLayout.Edit chunks = null;
+        if (change.isDeleted()) {
+            if (wasDeleted) {
+                return;
+            }
+            values.put(COLUMN_DELETED_AT, change.getChangedAt());
+        } else {
+            chunks = splitIfLong(change.getDetails());
+            String inline = chunks == null ? change.getDetails() : chunks.headText();
+            values.put(COLUMN_HEADING, change.getHeading());
+            values.put(COLUMN_DETAILS, inline);
+            values.put(COLUMN_PREVIEW, NoteSummary.makePreview(inline));
+            values.put(COLUMN_UPDATED_AT, change.getChangedAt());
+            values.putNull(COLUMN_DELETED_AT);
+        }
+        db.update(TABLE_NOTES, values, COLUMN_ID + " = ?", new String[]{String.valueOf(noteId)});
+        if (!change.isDeleted()) {
+            writeChunks(db, noteId, chunks != null ? chunks : NO_CHUNKS);
+        }
+    }
+
+    private static long[] toArray(List<Long> ids) {
+        long[] array = new long[ids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Loads list rows for the given ids, e.g. to apply change events to a list
+     * that is already on screen. Ids that no longer exist are left out.
+     */
+    public Map<Long, NoteSummary> getNoteSummaries(long[] noteIds) {
+        Map<Long, NoteSummary> summaries = new HashMap<>();
+        if (noteIds.length == 0) {
+            return summaries;
+        }
+        String[] args = new String[noteIds.length];
+        for (int i = 0; i < noteIds.length; i++) {
+            args[i] = String.valueOf(noteIds[i]);
+        }
+        Cursor cursor = null;
+        long started = DbTrace.start();
+        try {
+            cursor = this.getReadableDatabase().rawQuery(NoteSql.summariesByIdSql(args.length), args);
+            while (cursor.moveToNext()) {
+                NoteSummary summary = new NoteSummary(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getLong(3));
+                summaries.put(summary.getId(), summary);
+            }
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Error loading note summaries: " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        DbTrace.end("getNoteSummaries", started, summaries.size());
+        return summaries;
+    }
+
+    /**
+     * Returns the full note, from the shared {@link NoteCache} when possible.
+     * The returned object is a copy and may be modified freely.
+     */
     public Note getNoteById(long noteId) {
+        Note note = noteCache.get(noteId);
+        if (note != null) {
+            return note;
+        }
+
+        long cacheStamp = noteCache.stamp();
         SQLiteDatabase db = this.getReadableDatabase();
-        Note note = null;
+        Cursor cursor = null;
+        // Cache hits are counted by NoteCache; only database reads are traced
+        long started = DbTrace.start();
 
         try {
-            Cursor cursor = db.query(
-                    TABLE_NOTES,
-                    new String[]{COLUMN_ID, COLUMN_HEADING, COLUMN_DETAILS},
-                    COLUMN_ID + " = ?",
-                    new String[]{String.valueOf(noteId)},
-                    null,
-                    null,
-                    null
-            );
+            cursor = db.rawQuery(NoteSql.SQL_NOTE_BY_ID, new String[]{String.valueOf(noteId)});
 
             if (cursor != null && cursor.moveToFirst()) {
                 long id = cursor.getLong(cursor.getColumnIndex(COLUMN_ID));
                 String heading = cursor.getString(cursor.getColumnIndex(COLUMN_HEADING));
                 String details = cursor.getString(cursor.getColumnIndex(COLUMN_DETAILS));
+                boolean chunked = cursor.getInt(cursor.getColumnIndex(COLUMN_CHUNK_COUNT)) > 0;
 
                 note = new Note();
                 note.setId(id);
                 note.setHeading(heading);
-                note.setDetails(details);
+                if (chunked) {
+                    // Too big to be worth caching; NoteDetailActivity streams these with readNoteBody
+                    note.setDetails(readFullDetails(id, details));
+                } else {
+                    note.setDetails(details);
+                    noteCache.putIfUnchanged(note, cacheStamp);
+                }
+            }
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Error loading note " + noteId + ": " + e.getMessage());
+            note = null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            DbTrace.end("getNoteById", started, note == null ? 0 : 1);
+        }
+
+        return note;
+    }
 
+    /**
+     * Full-text search over the user's note headings and details. Every word in
+     * the query is matched as a prefix, so results update sensibly as the user
+     * types. Results are ordered best match first, headings weighing more than
+     * details.
+     *
+     * Right after an upgrade from a version without the index, and until its
+     * backfill finishes, notes are matched with LIKE instead and come newest
+     * first.
+     *
+     * @return at most {@code limit} notes, or an empty list if the query has no words
+     */
+    public List<NoteSummary> searchNotes(long userId, String query, int limit) {
+        List<NoteSummary> notes = new ArrayList<>();
+        String matchExpression = FtsQuery.toMatchExpression(query);
+        if (userId == -1 || matchExpression == null || limit <= 0) {
+            return notes;
+        }
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        if (!isSearchIndexComplete(db)) {
+            return searchNotesUnindexed(db, userId, query, limit);
+        }
+
+        // Keep only the best `limit` candidates; the heap's head is the weakest one
+        PriorityQueue<FtsQuery.Match> best = new PriorityQueue<>(limit + 1);
+        Cursor cursor = null;
+        long started = DbTrace.start();
+        try {
+            cursor = db.rawQuery(NoteSql.SQL_SEARCH_NOTES,
+                    new String[]{matchExpression, String.valueOf(userId)});
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                double score = FtsQuery.score(cursor.getBlob(1));
+                best.add(new FtsQuery.Match(id, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Error searching notes: " + e.getMessage());
+            return notes;
+        } finally {
+            if (cursor != null) {
                 cursor.close();
             }
+        }
+
+        if (best.isEmpty()) {
+            return notes;
+        }
+
+        List<FtsQuery.Match> ranked = new ArrayList<>(best);
+        Collections.sort(ranked, Collections.reverseOrder());
+
+        // Fetch the winning rows in one query, then restore rank order
+        String[] args = new String[ranked.size()];
+        for (int i = 0; i < ranked.size(); i++) {
+            args[i] = String.valueOf(ranked.get(i).noteId);
+        }
+        Map<Long, NoteSummary> byId = new HashMap<>();
+        try {
+            cursor = db.rawQuery(NoteSql.summariesByIdSql(args.length), args);
+            while (cursor.moveToNext()) {
+                NoteSummary note = new NoteSummary(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getLong(3));
+                byId.put(note.getId(), note);
+            }
         } catch (SQLException e) {
-            // Handle the exception
+            Log.e("DatabaseHelper", "Error loading search results: " + e.getMessage());
         } finally {
-            db.close();
+            if (cursor != null) {
+                cursor.close();
+            }
         }
 
-        return note;
+        for (FtsQuery.Match match : ranked) {
+            NoteSummary note = byId.get(match.noteId);
+            if (note != null) {
+                notes.add(note);
+            }
+        }
+        DbTrace.end("searchNotes", started, notes.size());
+        return notes;
+    }
+
+    private boolean isSearchIndexComplete(SQLiteDatabase db) {
+        if (!searchIndexComplete) {
+            searchIndexComplete = !SchemaMigrations.isBackfillPending(db, SchemaMigrations.BACKFILL_SEARCH_INDEX);
+        }
+        return searchIndexComplete;
+    }
+
+    // Scans the user's notes; slower than the index, but complete while the index is not
+    private List<NoteSummary> searchNotesUnindexed(SQLiteDatabase db, long userId, String query, int limit) {
+        List<NoteSummary> notes = new ArrayList<>();
+        String[] patterns = FtsQuery.toLikePatterns(query);
+        String[] args = new String[2 + 2 * patterns.length];
+        args[0] = String.valueOf(userId);
+        for (int i = 0; i < patterns.length; i++) {
+            args[1 + 2 * i] = patterns[i];
+            args[2 + 2 * i] = patterns[i];
+        }
+        args[args.length - 1] = String.valueOf(limit);
+
+        long started = DbTrace.start();
+        try (Cursor cursor = db.rawQuery(NoteSql.searchNotesLikeSql(patterns.length), args)) {
+            while (cursor.moveToNext()) {
+                notes.add(new NoteSummary(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getLong(3)));
+            }
+        } catch (SQLException e) {
+            Log.e("DatabaseHelper", "Error searching notes: " + e.getMessage());
+        } finally {
+            DbTrace.end("searchNotesUnindexed", started, notes.size());
+        }
+        return notes;
     }
 }
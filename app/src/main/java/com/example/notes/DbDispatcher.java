@@ -0,0 +1,257 @@
+package com.example.notes;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs all {@link DatabaseHelper} work off the main thread.
+ *
+ * Writes go through a single writer lane, so they never contend for SQLite's
+ * write lock and always land in the order they were submitted. Reads go to a
+ * small fixed pool of reader lanes. With WAL enabled, each read runs on its
+ * own connection and keeps making progress while a long write transaction is
+ * open. Results are delivered on the main thread.
+ *
+ * Work submitted through a {@link Scope} belongs to one screen.
+ * {@link Scope#cancel()} drops that screen's reads that haven't started and
+ * suppresses every callback not yet delivered. Queued writes still run, so a
+ * delete issued just before {@code finish()} is not lost.
+ */
+public class DbDispatcher {
+
+    // Android's WAL connection pool usually holds four connections, one of them the writer's
+    static final int READER_LANES = 3;
+
+    /** Receives the outcome of a piece of work on the main thread. */
+    public interface Callback<T> {
+        void onSuccess(T result);
+
+        void onError(Exception e);
+    }
+
+    private static DbDispatcher instance;
+
+    public static synchronized DbDispatcher getInstance() {
+        if (instance == null) {
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new DbDispatcher(READER_LANES, new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    mainHandler.post(command);
+                }
+            });
+        }
+        return instance;
+    }
+
+    private final ScheduledThreadPoolExecutor writer;
+    private final ThreadPoolExecutor readers;
+    private final Executor callbackExecutor;
+    private final AtomicInteger peakWriteQueueDepth = new AtomicInteger();
+    private final AtomicInteger peakReadQueueDepth = new AtomicInteger();
+
+    /**
+     * @param callbackExecutor where callbacks run; the main thread in the app
+     */
+    DbDispatcher(int readerLanes, Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        writer = new ScheduledThreadPoolExecutor(1, namedThreads("db-writer"));
+        // Cancelled autosaves shouldn't sit in the queue and inflate its depth
+        writer.setRemoveOnCancelPolicy(true);
+        readers = new ThreadPoolExecutor(readerLanes, readerLanes, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), namedThreads("db-reader"));
+    }
+
+    /** Creates a scope for work that should stop with the given screen. */
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    /** Runs {@code work} on a reader lane. {@code callback} may be null. */
+    public <T> Future<T> read(Callable<T> work, Callback<T> callback) {
+        return submit(null, false, work, callback);
+    }
+
+    /** Runs {@code work} on the writer lane, after every write submitted before it. */
+    public <T> Future<T> write(Callable<T> work, Callback<T> callback) {
+        return submit(null, true, work, callback);
+    }
+
+    /**
+     * The writer lane itself, for components like {@link NoteWriteQueue} that
+     * schedule their own writes. Do not shut it down.
+     */
+    public ScheduledExecutorService getWriteExecutor() {
+        return writer;
+    }
+
+    /** Writes waiting for the writer lane, including scheduled ones. */
+    public int getWriteQueueDepth() {
+        return writer.getQueue().size();
+    }
+
+    /** Reads waiting for a free reader lane. */
+    public int getReadQueueDepth() {
+        return readers.getQueue().size();
+    }
+
+    /** Reads currently running. */
+    public int getActiveReads() {
+        return readers.getActiveCount();
+    }
+
+    public int getPeakWriteQueueDepth() {
+        return peakWriteQueueDepth.get();
+    }
+
+    public int getPeakReadQueueDepth() {
+        return peakReadQueueDepth.get();
+    }
+
+    void shutdownNow() {
+        writer.shutdownNow();
+        readers.shutdownNow();
+    }
+
+    private <T> Future<T> submit(Scope scope, boolean isWrite, Callable<T> work, Callback<T> callback) {
+        DbTask<T> task = new DbTask<>(scope, isWrite, work, callback);
+        if (scope != null) {
+            scope.track(task);
+        }
+        if (isWrite) {
+            writer.execute(task);
+            recordPeak(peakWriteQueueDepth, writer.getQueue().size());
+        } else {
+            readers.execute(task);
+            recordPeak(peakReadQueueDepth, readers.getQueue().size());
+        }
+        return task;
+    }
+
+    private static void recordPeak(AtomicInteger peak, int depth) {
+        int current;
+        while (depth > (current = peak.get()) && !peak.compareAndSet(current, depth)) {
+            // Retry until our depth is recorded or someone recorded a larger one
+        }
+    }
+
+    private static ThreadFactory namedThreads(final String prefix) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Work tied to one screen. Call {@link #cancel()} when the screen is
+     * destroyed.
+     */
+    public class Scope {
+        private final Set<DbTask<?>> tasks = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+
+        private Scope() {
+        }
+
+        public <T> Future<T> read(Callable<T> work, Callback<T> callback) {
+            return submit(this, false, work, callback);
+        }
+
+        public <T> Future<T> write(Callable<T> work, Callback<T> callback) {
+            return submit(this, true, work, callback);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** Drops reads that haven't started and every callback not yet delivered. */
+        public void cancel() {
+            cancelled = true;
+            List<DbTask<?>> pending = new ArrayList<>(tasks);
+            for (DbTask<?> task : pending) {
+                if (!task.isWrite) {
+                    // Never interrupt: a read already inside SQLite is left to finish
+                    task.cancel(false);
+                }
+            }
+        }
+
+        private void track(DbTask<?> task) {
+            tasks.add(task);
+            if (cancelled && !task.isWrite) {
+                task.cancel(false);
+            }
+        }
+
+        private void untrack(DbTask<?> task) {
+            tasks.remove(task);
+        }
+    }
+
+    private class DbTask<T> extends FutureTask<T> {
+        private final Scope scope;
+        private final boolean isWrite;
+        private final Callback<T> callback;
+
+        DbTask(Scope scope, boolean isWrite, Callable<T> work, Callback<T> callback) {
+            super(work);
+            this.scope = scope;
+            this.isWrite = isWrite;
+            this.callback = callback;
+        }
+
+        @Override
+        protected void done() {
+            if (scope != null) {
+                scope.untrack(this);
+            }
+            if (callback == null || isCancelled()) {
+                return;
+            }
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (scope != null && scope.isCancelled()) {
+                        return;
+                    }
+                    T result;
+                    try {
+                        result = get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        callback.onError(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+                        return;
+                    } catch (InterruptedException e) {
+                        // Can't happen, the task is already done
+                        callback.onError(e);
+                        return;
+                    }
+                    callback.onSuccess(result);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.notes;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Debug-build tracing for the storage layer: per-operation latency
+ * histograms and row counts, plus a slow-query log. The note list records
+ * its page loads and adapter binds here too, so the debug performance
+ * overlay shows them side by side with the queries behind them.
+ *
+ * Recording costs two clock reads and an uncontended lock per operation;
+ * nothing is formatted or logged unless a call is slow.
+ *
+ * {@link #ENABLED} is a compile-time constant taken from the
+ * {@code DB_TRACE} build config field, which is false in release builds.
+ * Guard debug logging with {@code if (DbTrace.ENABLED)} so javac drops the
+ * statement, and the strings it would have built, from release builds
+ * altogether. {@link #start()} and {@link #end} check it themselves.
+ *
+ * Usage:
+ * <pre>
+ *     long started = DbTrace.start();
+ *     ... run the query ...
+ *     DbTrace.end("getNotesPage", started, rows);
+ * </pre>
+ */
+final class DbTrace {
+
+    private static final String TAG = "DbTrace";
+
+    static final boolean ENABLED = BuildConfig.DB_TRACE;
+
+    static final long DEFAULT_SLOW_QUERY_MILLIS = 50;
+
+    private static volatile long slowQueryMicros = DEFAULT_SLOW_QUERY_MILLIS * 1000;
+    private static final ConcurrentHashMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+    private DbTrace() {
+    }
+
+    /** @return the start timestamp to pass to {@link #end} */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records one call of {@code operation} that started at {@code startedAt}
+     * and returned or touched {@code rows} rows, and logs it if it was slow.
+     */
+    static void end(String operation, long startedAt, int rows) {
+        if (!ENABLED) {
+            return;
+        }
+        long micros = (System.nanoTime() - startedAt) / 1000;
+        Operation stats = operations.get(operation);
+        if (stats == null) {
+            stats = new Operation();
+            Operation existing = operations.putIfAbsent(operation, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        stats.record(micros, rows);
+        if (micros >= slowQueryMicros) {
+            Log.w(TAG, "Slow " + operation + ": " + micros / 1000 + " ms, " + rows + " rows on "
+                    + Thread.currentThread().getName());
+        }
+    }
+
+    /** Calls taking at least this long are logged as warnings. */
+    static void setSlowQueryThresholdMillis(long millis) {
+        slowQueryMicros = millis * 1000;
+    }
+
+    static long getSlowQueryThresholdMillis() {
+        return slowQueryMicros / 1000;
+    }
+
+    /** @return a summary per operation recorded so far, sorted by name */
+    static List<Summary> snapshot() {
+        List<Summary> summaries = new ArrayList<>();
+        for (ConcurrentHashMap.Entry<String, Operation> entry : operations.entrySet()) {
+            summaries.add(entry.getValue().summarize(entry.getKey()));
+        }
+        Collections.sort(summaries, new Comparator<Summary>() {
+            @Override
+            public int compare(Summary a, Summary b) {
+                return a.operation.compareTo(b.operation);
+            }
+        });
+        return summaries;
+    }
+
+    /** Writes {@link #snapshot()} to logcat, one line per operation. */
+    static void logSummary() {
+        if (!ENABLED) {
+            return;
+        }
+        for (Summary summary : snapshot()) {
+            Log.d(TAG, summary.toString());
+        }
+    }
+
+    static void reset() {
+        operations.clear();
+    }
+
+    private static final class Operation {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long totalRows;
+        private int maxRows;
+
+        synchronized void record(long micros, int rows) {
+            latency.record(micros);
+            totalRows += rows;
+            maxRows = Math.max(maxRows, rows);
+        }
+
+        synchronized Summary summarize(String name) {
+            return new Summary(name, latency.count(), latency.percentile(50), latency.percentile(95),
+                    latency.percentile(99), latency.max(), totalRows, maxRows);
+        }
+    }
+
+    /** Latencies of one operation, in microseconds. */
+    static final class Summary {
+        final String operation;
+        final long calls;
+        final long p50;
+        final long p95;
+        final long p99;
+        final long max;
+        final long totalRows;
+        final int maxRows;
+
+        Summary(String operation, long calls, long p50, long p95, long p99, long max, long totalRows, int maxRows) {
+            this.operation = operation;
+            this.calls = calls;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.max = max;
+            this.totalRows = totalRows;
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: %d calls, p50 %d us, p95 %d us, p99 %d us, max %d us, %d rows (max %d)",
+                    operation, calls, p50, p95, p99, max, totalRows, maxRows);
+        }
+    }
+}
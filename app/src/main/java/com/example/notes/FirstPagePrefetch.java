@@ -0,0 +1,101 @@
+package com.example.notes;
+
+import android.os.SystemClock;
+
+import java.util.List;
+
+/**
+ * Hands the first page of notes loaded during the splash screen to
+ * MainActivity, so its first frame needs no query. A page is used at most
+ * once, only for the user and sort order it was loaded for, and only shortly
+ * after loading.
+ *
+ * Writes can still land in between, e.g. from the post-upgrade backfills
+ * that run alongside the prefetch, before MainActivity listens for changes.
+ * Any change published on the {@link NoteChangeBus} drops the page, and
+ * MainActivity loads a fresh one instead.
+ */
+final class FirstPagePrefetch {
+
+    private static final long MAX_AGE_MS = 10_000;
+
+    private static long userId = -1;
+    private static int sortOrder;
+    private static List<NoteSummary> page;
+    private static long loadedAt;
+    private static NoteChangeBus changeBus;
+
+    private static final NoteChangeBus.Listener dropOnChange = new NoteChangeBus.Listener() {
+        @Override
+        public void onNoteInserted(long noteId) {
+            drop();
+        }
+
+        @Override
+        public void onNoteUpdated(long noteId) {
+            drop();
+        }
+
+        @Override
+        public void onNoteDeleted(long noteId) {
+            drop();
+        }
+
+        @Override
+        public void onNotesDeleted(long[] noteIds) {
+            drop();
+        }
+
+        @Override
+        public void onNotesRestored(long[] noteIds) {
+            drop();
+        }
+
+        @Override
+        public void onNotesUpdated(long[] noteIds) {
+            drop();
+        }
+    };
+
+    private FirstPagePrefetch() {
+    }
+
+    /**
+     * Keeps the page until it is taken or {@code bus} publishes a change.
+     * Register before the page is read, so no change can slip in between.
+     */
+    static synchronized void watch(NoteChangeBus bus) {
+        drop();
+        changeBus = bus;
+        bus.register(dropOnChange);
+    }
+
+    static synchronized void put(long forUserId, int forSortOrder, List<NoteSummary> firstPage) {
+        if (changeBus == null) {
+            // A change came in while the page was being read
+            return;
+        }
+        userId = forUserId;
+        sortOrder = forSortOrder;
+        page = firstPage;
+        loadedAt = SystemClock.elapsedRealtime();
+    }
+
+    /** @return the prefetched page for the user, or null if there is none to use */
+    static synchronized List<NoteSummary> take(long forUserId, int forSortOrder) {
+        List<NoteSummary> result = page;
+        boolean usable = result != null && userId == forUserId && sortOrder == forSortOrder
+                && SystemClock.elapsedRealtime() - loadedAt <= MAX_AGE_MS;
+        drop();
+        return usable ? result : null;
+    }
+
+    private static synchronized void drop() {
+        page = null;
+        userId = -1;
+        if (changeBus != null) {
+            changeBus.unregister(dropOnChange);
+            changeBus = null;
+        }
+    }
+}
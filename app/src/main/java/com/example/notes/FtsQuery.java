@@ -0,0 +1,119 @@
+package com.example.notes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Helpers for turning user input into an FTS4 MATCH expression and for ranking
+ * rows from the {@code matchinfo(..., 'pcx')} blob SQLite returns.
+ */
+final class FtsQuery {
+
+    // Relative importance of each indexed column, in FTS table column order
+    private static final double[] COLUMN_WEIGHTS = {2.0, 1.0}; // heading, details
+
+    private FtsQuery() {
+    }
+
+    /**
+     * Builds a MATCH expression where every word of the query is a prefix term,
+     * e.g. {@code "Shop list"} becomes {@code shop* list*}. Punctuation is
+     * dropped so user input can never inject FTS operators.
+     *
+     * @return the expression, or {@code null} if the query contains no words
+     */
+    static String toMatchExpression(String query) {
+        List<String> words = words(query);
+        if (words.isEmpty()) {
+            return null;
+        }
+        StringBuilder expression = new StringBuilder();
+        for (String word : words) {
+            if (expression.length() > 0) {
+                expression.append(' ');
+            }
+            expression.append(word).append('*');
+        }
+        return expression.toString();
+    }
+
+    /**
+     * Builds one LIKE pattern per word of the query, for searching while the
+     * FTS index is still being built, e.g. {@code "Shop list"} becomes
+     * {@code %shop%} and {@code %list%}. Words are letters and digits only,
+     * so the patterns need no escaping.
+     *
+     * @return the patterns, or an empty array if the query contains no words
+     */
+    static String[] toLikePatterns(String query) {
+        List<String> words = words(query);
+        String[] patterns = new String[words.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = "%" + words.get(i) + "%";
+        }
+        return patterns;
+    }
+
+    // The query's runs of letters and digits, lower-cased
+    private static List<String> words(String query) {
+        List<String> words = new ArrayList<>();
+        if (query == null) {
+            return words;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                words.add(word.toString().toLowerCase(Locale.ROOT));
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Scores a row from its {@code matchinfo(fts, 'pcx')} blob: for each phrase
+     * and column, the share of all hits for that phrase that land in this row,
+     * weighted by column.
+     */
+    static double score(byte[] matchInfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phraseCount = buffer.getInt(0);
+        int columnCount = buffer.getInt(4);
+        double score = 0;
+        for (int phrase = 0; phrase < phraseCount; phrase++) {
+            for (int column = 0; column < columnCount; column++) {
+                int offset = 8 + 12 * (phrase * columnCount + column);
+                int hitsThisRow = buffer.getInt(offset);
+                int hitsAllRows = buffer.getInt(offset + 4);
+                if (hitsThisRow > 0) {
+                    double weight = column < COLUMN_WEIGHTS.length ? COLUMN_WEIGHTS[column] : 1.0;
+                    score += weight * hitsThisRow / hitsAllRows;
+                }
+            }
+        }
+        return score;
+    }
+
+    /** A candidate result, ordered by score and then by newest note first. */
+    static final class Match implements Comparable<Match> {
+        final long noteId;
+        final double score;
+
+        Match(long noteId, double score) {
+            this.noteId = noteId;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : Long.compare(noteId, other.noteId);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.notes;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size latency histogram with log-linear buckets, in microseconds.
+ *
+ * Every power of two is split into {@link #SUB_BUCKETS} equal buckets, so a
+ * reported percentile is at most 12.5% above the true value while the
+ * whole histogram stays a few hundred longs, however many samples it takes.
+ * Values below {@link #SUB_BUCKETS} microseconds are counted exactly.
+ */
+final class LatencyHistogram {
+
+    static final int SUB_BUCKETS = 8;
+    private static final int SUB_BUCKET_BITS = 3;
+    // 2^36 us is about 19 hours; anything longer lands in the last bucket
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private long max;
+
+    synchronized void record(long micros) {
+        micros = Math.max(0, micros);
+        counts[bucketFor(micros)]++;
+        count++;
+        max = Math.max(max, micros);
+    }
+
+    synchronized long count() {
+        return count;
+    }
+
+    synchronized long max() {
+        return max;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding that percentile, never
+     *         more than the largest recorded value; 0 if nothing was recorded
+     */
+    synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                // The last bucket is open-ended
+                return bucket == counts.length - 1 ? max : Math.min(upperBound(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        max = 0;
+    }
+
+    static int bucketFor(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+        if (exponent == MAX_EXPONENT && micros >= 1L << (MAX_EXPONENT + 1)) {
+            return BUCKET_COUNT - 1;
+        }
+        // The bits right below the leading one pick the bucket within the octave
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + subBucket + 1L) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -3,6 +3,7 @@ package com.example.notes;
 import android.content.Intent;
 import android.os.Bundle;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ProgressBar;
@@ -16,10 +17,13 @@ import com.google.android.material.textfield.TextInputLayout;
 
 public class LoginActivity extends AppCompatActivity {
 
+    private static final String TAG = "LoginActivity";
+
     private TextInputEditText etUsername, etPassword;
     private TextInputLayout usernameLayout, passwordLayout;
     private ProgressBar progressBar;
-    private DatabaseHelper databaseHelper;
+    private AuthService authService;
+    private DbDispatcher.Scope dbScope;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -35,8 +39,9 @@ public class LoginActivity extends AppCompatActivity {
         Button btnLogin = findViewById(R.id.btnLogin);
         TextView tvRegister = findViewById(R.id.tvRegister);
 
-        // Initialize database helper
-        databaseHelper = new DatabaseHelper(this);
+        // Initialize auth service
+        authService = AuthService.getInstance(this);
+        dbScope = DbDispatcher.getInstance().newScope();
 
         // Set click listener for login button
         btnLogin.setOnClickListener(new View.OnClickListener() {
@@ -104,61 +109,52 @@ public class LoginActivity extends AppCompatActivity {
     }
 
     private void performLogin(final String username, final String password) {
-        // This is where you would perform the actual login
-        // For now, we'll simulate network access.
-        new android.os.Handler().postDelayed(
-                new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            boolean isValidUser = databaseHelper.checkUser(username, password);
-                            runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    if (isValidUser) {
-                                        // Login successful
-                                        User user = databaseHelper.getUser(username);
-                                        if (user != null) {
-                                            try {
-                                                // Save user session
-                                                SessionManager sessionManager = new SessionManager(LoginActivity.this);
-                                                sessionManager.createLoginSession(user.getId(), user.getUsername());
-                                                
-                                                // Launch main activity
-                                                Intent intent = new Intent(LoginActivity.this, MainActivity.class);
-                                                intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                                                startActivity(intent);
-                                                finish();
-                                            } catch (Exception e) {
-                                                e.printStackTrace();
-                                                showProgress(false);
-                                                Toast.makeText(LoginActivity.this, 
-                                                    "Error creating session: " + e.getMessage(), 
-                                                    Toast.LENGTH_SHORT).show();
-                                            }
-                                        }
-                                    } else {
-                                        // Login failed
-                                        showProgress(false);
-                                        passwordLayout.setError("Invalid username or password");
-                                        etPassword.requestFocus();
-                                    }
-                                }
-                            });
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                            runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    showProgress(false);
-                                    Toast.makeText(LoginActivity.this, 
-                                        "Login error: " + e.getMessage(), 
-                                        Toast.LENGTH_SHORT).show();
-                                }
-                            });
-                        }
-                    }
-                }, 1500);
+        final long startedAt = AuthService.beginFlow();
+        authService.login(dbScope, username, password, new DbDispatcher.Callback<User>() {
+            @Override
+            public void onSuccess(User user) {
+                if (user == null) {
+                    // Login failed
+                    showProgress(false);
+                    passwordLayout.setError("Invalid username or password");
+                    etPassword.requestFocus();
+                    return;
+                }
+                try {
+                    // Save user session
+                    SessionManager.getInstance(LoginActivity.this)
+                            .createLoginSession(user.getId(), user.getUsername());
+
+                    // Launch main activity
+                    Intent intent = new Intent(LoginActivity.this, MainActivity.class);
+                    intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                    AuthService.attachFlow(intent, AuthService.FLOW_LOGIN, startedAt);
+                    startActivity(intent);
+                    finish();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    showProgress(false);
+                    Toast.makeText(LoginActivity.this,
+                        "Error creating session: " + e.getMessage(),
+                        Toast.LENGTH_SHORT).show();
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Login error", e);
+                showProgress(false);
+                Toast.makeText(LoginActivity.this,
+                    "Login error: " + e.getMessage(),
+                    Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        dbScope.cancel();
+        super.onDestroy();
     }
 
     private void showProgress(boolean show) {
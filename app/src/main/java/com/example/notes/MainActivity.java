@@ -1,43 +1,182 @@
 package com.example.notes;
 
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.view.ActionMode;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.Button;
 import android.widget.ListView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 
+import com.google.android.material.snackbar.Snackbar;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
-public class MainActivity extends AppCompatActivity implements NoteAdapter.OnNoteClickListener {
+public class MainActivity extends AppCompatActivity {
     
     private static final String TAG = "MainActivity";
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+    private static final int SEARCH_RESULT_LIMIT = 100;
+    static final int PAGE_SIZE = 50;
+    // Start fetching the next page when this many rows are left below the fold
+    private static final int PREFETCH_DISTANCE = 15;
+
+    private static final int CHANGE_INSERTED = 1;
+    private static final int CHANGE_UPDATED = 2;
+    private static final int CHANGE_DELETED = 3;
+    // Changed in place; only worth fetching if the row is already in the list
+    private static final int CHANGE_REFRESHED = 4;
+
+    // The list order is kept across launches; SplashActivity prefetches in it too
+    private static final String PREFS_NOTE_LIST = "note_list";
+    private static final String KEY_SORT_ORDER = "sort_order";
+    private static final int[] SORT_ORDERS = {DatabaseHelper.SORT_NEWEST, DatabaseHelper.SORT_RECENTLY_EDITED,
+            DatabaseHelper.SORT_OLDEST, DatabaseHelper.SORT_TITLE};
+    private static final int[] SORT_MENU_ITEMS = {R.id.sort_newest, R.id.sort_recently_edited,
+            R.id.sort_oldest, R.id.sort_title};
+
+    // Part of the debug source set only, so it is started by name
+    private static final String PERF_OVERLAY_ACTIVITY = "com.example.notes.PerfOverlayActivity";
     
     private SessionManager sessionManager;
     private ListView noteListView;
     private Button newNoteButton;
     private NoteAdapter adapter;
     private DatabaseHelper databaseHelper;
+    private DbDispatcher.Scope dbScope;
     private long userId;
 
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private String currentQuery = "";
+    // Bumped for every load or search so results from superseded requests are dropped
+    private int requestGeneration;
+
+    // Keyset paging state for the unfiltered list
+    private int sortOrder;
+    private NoteSummary lastLoaded;
+    private boolean hasMorePages;
+    private boolean pageLoading;
+
+    // Note changes not yet applied to the list, keyed by note id. Only touched on the main thread.
+    private final Map<Long, Integer> pendingChanges = new LinkedHashMap<>();
+    private boolean resumed;
+
+    // Leaves the list as soon as the user is logged out, whoever logged them out
+    private final SessionManager.Listener sessionListener = new SessionManager.Listener() {
+        @Override
+        public void onSessionChanged(SessionManager.Session session) {
+            if (!session.isLoggedIn()) {
+                finish();
+            }
+        }
+    };
+
+    private final NoteChangeBus.Listener changeListener = new NoteChangeBus.Listener() {
+        @Override
+        public void onNoteInserted(long noteId) {
+            postChange(noteId, CHANGE_INSERTED);
+        }
+
+        @Override
+        public void onNoteUpdated(long noteId) {
+            postChange(noteId, CHANGE_UPDATED);
+        }
+
+        @Override
+        public void onNoteDeleted(long noteId) {
+            postChange(noteId, CHANGE_DELETED);
+        }
+
+        @Override
+        public void onNotesDeleted(long[] noteIds) {
+            postChanges(noteIds, CHANGE_DELETED);
+        }
+
+        @Override
+        public void onNotesRestored(long[] noteIds) {
+            // Back from the trash is the same as new to the list
+            postChanges(noteIds, CHANGE_INSERTED);
+        }
+
+        @Override
+        public void onNotesUpdated(long[] noteIds) {
+            postChanges(noteIds, CHANGE_REFRESHED);
+        }
+    };
+
+    private final NoteAdapter.OnDeleteClickListener deleteClickListener = new NoteAdapter.OnDeleteClickListener() {
+        @Override
+        public void onDeleteClick(NoteSummary note) {
+            deleteNotes(new long[]{note.getId()});
+        }
+    };
+
+    // Long-pressing a note starts selecting; the action mode deletes the checked notes in one go
+    private final AbsListView.MultiChoiceModeListener selectionListener = new AbsListView.MultiChoiceModeListener() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.note_selection_menu, menu);
+            adapter.setSelecting(true);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public void onItemCheckedStateChanged(ActionMode mode, int position, long id, boolean checked) {
+            mode.setTitle(getString(R.string.selected_count, noteListView.getCheckedItemCount()));
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            if (item.getItemId() == R.id.action_delete_selected) {
+                long[] noteIds = noteListView.getCheckedItemIds();
+                mode.finish();
+                deleteNotes(noteIds);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            adapter.setSelecting(false);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         try {
             super.onCreate(savedInstanceState);
             
             // Session manager
-            sessionManager = new SessionManager(getApplicationContext());
+            sessionManager = SessionManager.getInstance(this);
+            sessionManager.addListener(sessionListener);
             
             // Check if user is not logged in, redirect to LoginActivity
             sessionManager.checkLogin();
@@ -54,8 +193,13 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.OnNot
             newNoteButton = findViewById(R.id.newNoteButton);
 
             // Initialize DatabaseHelper
-            databaseHelper = new DatabaseHelper(this);
+            databaseHelper = DatabaseHelper.getInstance(this);
+            dbScope = DbDispatcher.getInstance().newScope();
             userId = sessionManager.getUserId();
+            sortOrder = savedSortOrder(this);
+
+            // Keep the list in step with writes made anywhere in the app
+            databaseHelper.getChangeBus().register(changeListener);
             
             // Load notes
             loadNotes();
@@ -69,14 +213,30 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.OnNot
                 }
             });
 
-            // Set long click listener for deleting a note
-            noteListView.setOnItemLongClickListener(new AdapterView.OnItemLongClickListener() {
+            // Load the next page as the user nears the end of the list
+            noteListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+                @Override
+                public void onScrollStateChanged(AbsListView view, int scrollState) {
+                }
+
+                @Override
+                public void onScroll(AbsListView view, int firstVisibleItem,
+                                     int visibleItemCount, int totalItemCount) {
+                    if (firstVisibleItem + visibleItemCount >= totalItemCount - PREFETCH_DISTANCE) {
+                        loadNextPage();
+                    }
+                }
+            });
+
+            // Tapping a note opens it; long-pressing starts multi-select
+            noteListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
                 @Override
-                public boolean onItemLongClick(AdapterView<?> adapterView, View view, int position, long id) {
-                    showDeleteDialog(adapter, position);
-                    return true;
+                public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
+                    openNote(adapter.getItem(position));
                 }
             });
+            noteListView.setChoiceMode(ListView.CHOICE_MODE_MULTIPLE_MODAL);
+            noteListView.setMultiChoiceModeListener(selectionListener);
         } catch (Exception e) {
             Log.e(TAG, "Error in onCreate", e);
             showToast("An error occurred. Please try again.");
@@ -90,60 +250,343 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.OnNot
             return;
         }
         
-        new LoadNotesTask().execute();
+        // Start over from the first page
+        pageLoading = true;
+        int generation = ++requestGeneration;
+        List<NoteSummary> prefetched = FirstPagePrefetch.take(userId, sortOrder);
+        if (prefetched != null) {
+            // SplashActivity already loaded it while the splash was showing
+            StartupTrace.mark(StartupTrace.PREFETCH_USED);
+            onPageLoaded(generation, null, prefetched);
+        } else {
+            loadPage(generation, null);
+        }
+    }
+
+    private void loadNextPage() {
+        if (pageLoading || !hasMorePages || !currentQuery.isEmpty()) {
+            return;
+        }
+        pageLoading = true;
+        loadPage(requestGeneration, lastLoaded);
     }
     
-    private class LoadNotesTask extends AsyncTask<Void, Void, List<Note>> {
-        @Override
-        protected List<Note> doInBackground(Void... voids) {
-            try {
-                return databaseHelper.getAllNotes(userId);
-            } catch (Exception e) {
+    private void loadPage(final int generation, final NoteSummary after) {
+        // From the request to the list showing the page, including time queued for a reader
+        final long started = DbTrace.start();
+        final int sort = sortOrder;
+        dbScope.read(new Callable<List<NoteSummary>>() {
+            @Override
+            public List<NoteSummary> call() {
+                return databaseHelper.getNotesPage(userId, sort, after, PAGE_SIZE);
+            }
+        }, new DbDispatcher.Callback<List<NoteSummary>>() {
+            @Override
+            public void onSuccess(List<NoteSummary> notes) {
+                onPageLoaded(generation, after, notes);
+                DbTrace.end("MainActivity.loadPage", started, notes.size());
+            }
+
+            @Override
+            public void onError(Exception e) {
                 Log.e(TAG, "Error loading notes", e);
-                return null;
+                if (generation == requestGeneration) {
+                    pageLoading = false;
+                    showToast("Error loading notes");
+                }
             }
+        });
+    }
+
+    private void onPageLoaded(int generation, NoteSummary after, List<NoteSummary> notes) {
+        if (generation != requestGeneration) {
+            return;
         }
+        pageLoading = false;
 
-        @Override
-        protected void onPostExecute(List<Note> notes) {
-            if (notes == null) {
-                showToast("Error loading notes");
-                return;
+        hasMorePages = notes.size() == PAGE_SIZE;
+        if (!notes.isEmpty()) {
+            lastLoaded = notes.get(notes.size() - 1);
+        } else if (after == null) {
+            lastLoaded = null;
+        }
+
+        if (after == null) {
+            showNotes(notes);
+            reportFirstPageDrawn();
+            if (notes.isEmpty()) {
+                showToast("No notes found. Tap + to create a new note.");
             }
+            // Changes that raced with this load are safe to re-apply
+            if (resumed) {
+                applyPendingChanges();
+            }
+        } else {
+            adapter.addAll(notes);
+        }
+    }
 
-            if (adapter == null) {
-                // First time setup
-                adapter = new NoteAdapter(MainActivity.this, notes, MainActivity.this);
-                noteListView.setAdapter(adapter);
-            } else {
-                // Update existing adapter
-                adapter.clear();
-                adapter.addAll(notes);
-                adapter.notifyDataSetChanged();
+    /** Closes the startup and login/register measurements once the first page is on screen. */
+    private void reportFirstPageDrawn() {
+        noteListView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                noteListView.getViewTreeObserver().removeOnPreDrawListener(this);
+                AuthService.endFlow(getIntent());
+                StartupTrace.mark(StartupTrace.FIRST_PAGE_DRAWN);
+                StartupTrace.finish();
+                // Only the first call per activity counts; later reloads are ignored
+                reportFullyDrawn();
+                return true;
             }
+        });
+    }
 
-            if (notes.isEmpty()) {
-                showToast("No notes found. Tap + to create a new note.");
+    private void searchNotes(final int generation, final String query) {
+        dbScope.read(new Callable<List<NoteSummary>>() {
+            @Override
+            public List<NoteSummary> call() {
+                return databaseHelper.searchNotes(userId, query, SEARCH_RESULT_LIMIT);
+            }
+        }, new DbDispatcher.Callback<List<NoteSummary>>() {
+            @Override
+            public void onSuccess(List<NoteSummary> notes) {
+                if (generation != requestGeneration) {
+                    return;
+                }
+                pageLoading = false;
+                showNotes(notes);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error searching notes", e);
+                if (generation == requestGeneration) {
+                    pageLoading = false;
+                    showToast("Error searching notes");
+                }
+            }
+        });
+    }
+
+    private void showNotes(List<NoteSummary> notes) {
+        if (adapter == null) {
+            // First time setup
+            adapter = new NoteAdapter(MainActivity.this, notes, deleteClickListener);
+            noteListView.setAdapter(adapter);
+        } else {
+            // Update existing adapter
+            adapter.clear();
+            adapter.addAll(notes);
+            adapter.notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Runs a search once the user stops typing for {@link #SEARCH_DEBOUNCE_MS}.
+     * An empty query goes back to the full list.
+     */
+    private void scheduleSearch(final String query, long delayMillis) {
+        searchHandler.removeCallbacksAndMessages(null);
+        searchHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                runSearch(query);
+            }
+        }, delayMillis);
+    }
+
+    private void runSearch(String query) {
+        currentQuery = query.trim();
+        if (currentQuery.isEmpty()) {
+            loadNotes();
+        } else {
+            pageLoading = true;
+            searchNotes(++requestGeneration, currentQuery);
+        }
+    }
+
+    private void postChange(long noteId, int change) {
+        postChanges(new long[]{noteId}, change);
+    }
+
+    /** Queues the same change for several notes; they reach the list in one update. */
+    private void postChanges(final long[] noteIds, final int change) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                for (long noteId : noteIds) {
+                    Integer previous = pendingChanges.get(noteId);
+                    // An update to a note the list hasn't seen yet is still an insert for the list
+                    if (change == CHANGE_UPDATED && previous != null && previous == CHANGE_INSERTED) {
+                        continue;
+                    }
+                    // Any other pending change fetches the row anyway
+                    if (change == CHANGE_REFRESHED && previous != null) {
+                        continue;
+                    }
+                    pendingChanges.put(noteId, change);
+                }
+                if (resumed) {
+                    applyPendingChanges();
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies queued note changes to the list. Deletes are applied directly,
+     * all in one adapter update; inserted and updated rows are fetched in one
+     * query by id, rows changed in place only if the list shows them. Applying the same change twice is harmless, so nothing
+     * needs to be coordinated with page loads that are in flight.
+     */
+    private void applyPendingChanges() {
+        if (pendingChanges.isEmpty() || adapter == null) {
+            return;
+        }
+        if (!currentQuery.isEmpty()) {
+            // Search results are ranked; re-running the query is the only faithful update
+            pendingChanges.clear();
+            runSearch(currentQuery);
+            return;
+        }
+
+        Set<Long> deletedIds = new HashSet<>();
+        List<Long> changedIds = new ArrayList<>();
+        for (Map.Entry<Long, Integer> change : pendingChanges.entrySet()) {
+            if (change.getValue() == CHANGE_DELETED) {
+                deletedIds.add(change.getKey());
+            } else if (change.getValue() != CHANGE_REFRESHED || adapter.positionOf(change.getKey()) != -1) {
+                changedIds.add(change.getKey());
+            }
+        }
+        pendingChanges.clear();
+        // Deletes cost no query however many there are; only fetching rows is worth capping
+        if (changedIds.size() > PAGE_SIZE) {
+            loadNotes();
+            return;
+        }
+        adapter.removeAll(deletedIds);
+
+        if (!changedIds.isEmpty()) {
+            long[] ids = new long[changedIds.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = changedIds.get(i);
             }
+            loadChangedNotes(requestGeneration, ids);
+        }
+    }
+
+    private void loadChangedNotes(final int generation, final long[] noteIds) {
+        dbScope.read(new Callable<Map<Long, NoteSummary>>() {
+            @Override
+            public Map<Long, NoteSummary> call() {
+                return databaseHelper.getNoteSummaries(noteIds);
+            }
+        }, new DbDispatcher.Callback<Map<Long, NoteSummary>>() {
+            @Override
+            public void onSuccess(Map<Long, NoteSummary> summaries) {
+                if (generation != requestGeneration) {
+                    return;
+                }
+                for (long noteId : noteIds) {
+                    NoteSummary summary = summaries.get(noteId);
+                    if (summary == null) {
+                        // Deleted again before we got to it
+                        removeFromList(noteId);
+                    } else {
+                        upsertIntoList(summary);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error loading changed notes", e);
+            }
+        });
+    }
+
+    private void removeFromList(long noteId) {
+        int position = adapter.positionOf(noteId);
+        if (position != -1) {
+            adapter.remove(adapter.getItem(position));
+        }
+    }
+
+    /**
+     * Puts the note's row where the current sort order wants it, replacing
+     * any row it already has, if that falls in the loaded range.
+     */
+    private void upsertIntoList(NoteSummary summary) {
+        Comparator<NoteSummary> order = NoteSummary.listOrder(sortOrder);
+        adapter.setNotifyOnChange(false);
+        int position = adapter.positionOf(summary.getId());
+        if (position != -1) {
+            // An edit can move the note, e.g. to the top of "recently edited"
+            adapter.remove(adapter.getItem(position));
+        }
+        // Past the last loaded row, paging will bring it in
+        if (!hasMorePages || lastLoaded == null || order.compare(summary, lastLoaded) <= 0) {
+            int insertAt = 0;
+            while (insertAt < adapter.getCount() && order.compare(adapter.getItem(insertAt), summary) < 0) {
+                insertAt++;
+            }
+            adapter.insert(summary, insertAt);
+        }
+        adapter.notifyDataSetChanged();
+    }
+
+    /** The list order the user last picked. */
+    static int savedSortOrder(Context context) {
+        return context.getSharedPreferences(PREFS_NOTE_LIST, MODE_PRIVATE)
+                .getInt(KEY_SORT_ORDER, DatabaseHelper.SORT_NEWEST);
+    }
+
+    /** Switches the list order and starts over from its first page; an index serves every order. */
+    private void setSortOrder(int sort) {
+        if (sort == sortOrder) {
+            return;
+        }
+        sortOrder = sort;
+        getSharedPreferences(PREFS_NOTE_LIST, MODE_PRIVATE).edit().putInt(KEY_SORT_ORDER, sort).apply();
+        if (currentQuery.isEmpty()) {
+            noteListView.setSelection(0);
+            loadNotes();
         }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        // Reload notes when returning from NoteDetailActivity
-        if (userId != -1) {
-            loadNotes();
+        resumed = true;
+        // Only what changed while we were away is fetched; nothing changed means no queries
+        applyPendingChanges();
+    }
+
+    @Override
+    protected void onPause() {
+        resumed = false;
+        if (DbTrace.ENABLED) {
+            // adb logcat -s DbTrace
+            DbTrace.logSummary();
         }
+        super.onPause();
     }
-    
+
     @Override
-    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
-        super.onActivityResult(requestCode, resultCode, data);
-        // Refresh notes when returning from NoteDetailActivity
-        if (requestCode == 1) {
-            loadNotes();
+    protected void onDestroy() {
+        searchHandler.removeCallbacksAndMessages(null);
+        if (dbScope != null) {
+            dbScope.cancel();
+        }
+        if (sessionManager != null) {
+            sessionManager.removeListener(sessionListener);
         }
+        if (databaseHelper != null) {
+            databaseHelper.getChangeBus().unregister(changeListener);
+        }
+        super.onDestroy();
     }
     
     private void showToast(final String message) {
@@ -155,47 +598,108 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.OnNot
         });
     }
 
-    private void showDeleteDialog(final NoteAdapter adapter, final int position) {
-        final Note noteToDelete = adapter.getItem(position);
-        
-        AlertDialog.Builder builder = new AlertDialog.Builder(this);
-        builder.setTitle("Delete Note");
-        builder.setMessage("Are you sure you want to delete this note?");
-        builder.setPositiveButton("Delete", new DialogInterface.OnClickListener() {
+    /**
+     * Moves the notes to the trash right away and offers to undo it. Nothing
+     * to confirm: the trash keeps them for a month.
+     */
+    private void deleteNotes(final long[] noteIds) {
+        if (noteIds.length == 0) {
+            return;
+        }
+        // One transaction for the lot; the list drops the rows when the change bus reports them
+        dbScope.write(new Callable<Integer>() {
             @Override
-            public void onClick(DialogInterface dialogInterface, int i) {
-                new AsyncTask<Void, Void, Boolean>() {
-                    @Override
-                    protected Boolean doInBackground(Void... voids) {
-                        try {
-                            databaseHelper.deleteNoteById(noteToDelete.getId());
-                            return true;
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error deleting note", e);
-                            return false;
-                        }
-                    }
+            public Integer call() {
+                return databaseHelper.deleteNotes(userId, noteIds);
+            }
+        }, new DbDispatcher.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer deleted) {
+                if (deleted < 0) {
+                    showToast("Error deleting notes");
+                } else if (deleted > 0) {
+                    showUndoDelete(noteIds, deleted);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error deleting notes", e);
+                showToast("Error deleting notes");
+            }
+        });
+    }
 
+    private void showUndoDelete(final long[] noteIds, int count) {
+        Snackbar.make(noteListView, getResources().getQuantityString(R.plurals.notes_trashed, count, count),
+                Snackbar.LENGTH_LONG)
+                .setAction(R.string.undo, new View.OnClickListener() {
                     @Override
-                    protected void onPostExecute(Boolean success) {
-                        if (success) {
-                            adapter.remove(noteToDelete);
-                            adapter.notifyDataSetChanged();
-                            showToast("Note deleted");
-                        } else {
-                            showToast("Error deleting note");
-                        }
+                    public void onClick(View view) {
+                        restoreNotes(noteIds);
                     }
-                }.execute();
+                })
+                .show();
+    }
+
+    private void restoreNotes(final long[] noteIds) {
+        // The list puts the rows back when the change bus reports them
+        dbScope.write(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return databaseHelper.restoreNotes(userId, noteIds);
+            }
+        }, new DbDispatcher.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer restored) {
+                if (restored < 0) {
+                    showToast("Error restoring notes");
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error restoring notes", e);
+                showToast("Error restoring notes");
             }
         });
-        builder.setNegativeButton("Cancel", null);
-        builder.show();
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (resultCode == RESULT_OK && data != null
+                && data.hasExtra(NoteDetailActivity.EXTRA_TRASHED_NOTE_ID)) {
+            // Deleted from the detail screen, which is gone now; undo is offered here
+            showUndoDelete(new long[]{data.getLongExtra(NoteDetailActivity.EXTRA_TRASHED_NOTE_ID, -1)}, 1);
+        }
     }
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
+
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                scheduleSearch(query, 0);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                scheduleSearch(newText, SEARCH_DEBOUNCE_MS);
+                return true;
+            }
+        });
+
+        for (int i = 0; i < SORT_ORDERS.length; i++) {
+            if (SORT_ORDERS[i] == sortOrder) {
+                menu.findItem(SORT_MENU_ITEMS[i]).setChecked(true);
+            }
+        }
         return true;
     }
 
@@ -205,12 +709,27 @@ public class MainActivity extends AppCompatActivity implements NoteAdapter.OnNot
             sessionManager.logoutUser();
             return true;
         }
+        for (int i = 0; i < SORT_MENU_ITEMS.length; i++) {
+            if (item.getItemId() == SORT_MENU_ITEMS[i]) {
+                item.setChecked(true);
+                setSortOrder(SORT_ORDERS[i]);
+                return true;
+            }
+        }
+        if (item.getItemId() == R.id.action_trash) {
+            startActivity(new Intent(this, TrashActivity.class));
+            return true;
+        }
+        if (item.getItemId() == R.id.action_perf_overlay) {
+            // Only visible in debug builds, which is where the activity exists
+            startActivity(new Intent().setClassName(this, PERF_OVERLAY_ACTIVITY));
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
     
-    @Override
-    public void onNoteClick(Note note) {
-        // Handle note click (open NoteDetailActivity for editing)
+    private void openNote(NoteSummary note) {
+        // Open NoteDetailActivity for editing
         Intent intent = new Intent(MainActivity.this, NoteDetailActivity.class);
         intent.putExtra("noteId", note.getId());
         startActivityForResult(intent, 1);
@@ -1,38 +1,60 @@
 package com.example.notes;
 
-import android.app.AlertDialog;
 import android.content.Context;
-import android.content.DialogInterface;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.ImageButton;
 import android.widget.TextView;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
-public class NoteAdapter extends ArrayAdapter<Note> {
+public class NoteAdapter extends ArrayAdapter<NoteSummary> {
 
-    private Context context;
-    private List<Note> notes;
-    private OnNoteClickListener onNoteClickListener;
+    private List<NoteSummary> notes;
+    private OnDeleteClickListener onDeleteClickListener;
+    // Rows are being multi-selected, so the per-row delete button is hidden
+    private boolean selecting;
 
-    public NoteAdapter(Context context, List<Note> notes, OnNoteClickListener onNoteClickListener) {
+    /**
+     * Row clicks and long clicks are left to the ListView, which opens notes
+     * and runs multi-select; see MainActivity.
+     */
+    public NoteAdapter(Context context, List<NoteSummary> notes, OnDeleteClickListener onDeleteClickListener) {
         super(context, 0, notes);
-        this.context = context;
         this.notes = notes;
-        this.onNoteClickListener = onNoteClickListener;
+        this.onDeleteClickListener = onDeleteClickListener;
+    }
+
+    // Note ids, so the ListView can track checked rows by id across reloads and paging
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    public void setSelecting(boolean selecting) {
+        if (this.selecting != selecting) {
+            this.selecting = selecting;
+            notifyDataSetChanged();
+        }
     }
 
     @NonNull
     @Override
-    public View getView(final int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-        final Note note = getItem(position);
+    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
+        long started = DbTrace.start();
+        final NoteSummary note = getItem(position);
         ViewHolder viewHolder;
 
         if (convertView == null) {
@@ -44,86 +66,63 @@ public class NoteAdapter extends ArrayAdapter<Note> {
         }
 
         viewHolder.noteTitle.setText(note.getHeading());
-
-        // Set click listener for editing a note
-        viewHolder.noteTitle.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View view) {
-                if (onNoteClickListener != null) {
-                    onNoteClickListener.onNoteClick(note);
-                }
-            }
-        });
+        String preview = note.getPreview();
+        viewHolder.notePreview.setText(preview);
+        viewHolder.notePreview.setVisibility(preview == null || preview.isEmpty() ? View.GONE : View.VISIBLE);
 
         // Set click listener for delete button
+        viewHolder.deleteButton.setVisibility(selecting ? View.GONE : View.VISIBLE);
         viewHolder.deleteButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                showDeleteDialog(position);
-            }
-        });
-
-        // Set long click listener for deleting a note
-        convertView.setOnLongClickListener(new View.OnLongClickListener() {
-            @Override
-            public boolean onLongClick(View view) {
-                showDeleteDialog(position);
-                return true;
+                if (onDeleteClickListener != null) {
+                    onDeleteClickListener.onDeleteClick(note);
+                }
             }
         });
 
+        DbTrace.end("NoteAdapter.getView", started, 1);
         return convertView;
     }
 
-    // Show delete confirmation dialog
-    private void showDeleteDialog(final int position) {
-        new AlertDialog.Builder(context)
-            .setTitle("Delete Note")
-            .setMessage("Are you sure you want to delete this note?")
-            .setPositiveButton(android.R.string.yes, new DialogInterface.OnClickListener() {
-                public void onClick(DialogInterface dialog, int which) {
-                    // Get the note to delete
-                    final Note noteToDelete = getItem(position);
-                    
-                    // Remove from the list
-                    notes.remove(position);
-                    notifyDataSetChanged();
-                    
-                    // Delete from database in background
-                    new Thread(new Runnable() {
-                        @Override
-                        public void run() {
-                            DatabaseHelper db = new DatabaseHelper(context);
-                            db.deleteNoteById(noteToDelete.getId());
-                            
-                            // Show toast on UI thread
-                            ((android.app.Activity)context).runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    Toast.makeText(context, "Note deleted", Toast.LENGTH_SHORT).show();
-                                }
-                            });
-                        }
-                    }).start();
-                }
-            })
-            .setNegativeButton(android.R.string.no, null)
-            .setIcon(android.R.drawable.ic_dialog_alert)
-            .show();
+    /** @return the position of the note with this id, or -1 if it isn't in the list */
+    public int positionOf(long noteId) {
+        for (int i = 0; i < getCount(); i++) {
+            if (getItem(i).getId() == noteId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Removes the notes with these ids in one pass, with a single change notification. */
+    public void removeAll(Set<Long> noteIds) {
+        if (noteIds.isEmpty()) {
+            return;
+        }
+        Iterator<NoteSummary> iterator = notes.iterator();
+        while (iterator.hasNext()) {
+            if (noteIds.contains(iterator.next().getId())) {
+                iterator.remove();
+            }
+        }
+        notifyDataSetChanged();
     }
 
     // ViewHolder pattern for better performance
     private static class ViewHolder {
         TextView noteTitle;
+        TextView notePreview;
         ImageButton deleteButton;
 
         ViewHolder(View view) {
             noteTitle = view.findViewById(R.id.noteTitle);
+            notePreview = view.findViewById(R.id.notePreview);
             deleteButton = view.findViewById(R.id.deleteButton);
         }
     }
 
-    public interface OnNoteClickListener {
-        void onNoteClick(Note note);
+    public interface OnDeleteClickListener {
+        void onDeleteClick(NoteSummary note);
     }
 }
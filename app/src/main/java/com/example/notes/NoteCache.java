@@ -0,0 +1,78 @@
+package com.example.notes;
+
+import android.util.LruCache;
+
+/**
+ * Size-bounded LRU cache of full notes keyed by id, shared by everything that
+ * goes through {@link DatabaseHelper}. Entries are weighed by the characters
+ * they hold, so a few huge notes can't pin the whole budget.
+ *
+ * Writes invalidate by id. A read that raced with a write must not put the
+ * stale row back, so loads take a {@link #stamp()} before querying and only
+ * cache the result if no invalidation happened in between.
+ */
+public class NoteCache {
+
+    // Fixed per-entry overhead, in characters, on top of heading and details
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private final LruCache<Long, Note> cache;
+    private long invalidations;
+
+    public NoteCache(int maxChars) {
+        cache = new LruCache<Long, Note>(maxChars) {
+            @Override
+            protected int sizeOf(Long key, Note note) {
+                return ENTRY_OVERHEAD + length(note.getHeading()) + length(note.getDetails());
+            }
+        };
+    }
+
+    /** @return a copy of the cached note, or {@code null} on a miss */
+    public Note get(long noteId) {
+        Note note = cache.get(noteId);
+        return note != null ? copy(note) : null;
+    }
+
+    /** Current invalidation count; pass it to {@link #putIfUnchanged} after loading. */
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    /** Caches a note loaded from the database unless a write invalidated entries since {@code stamp}. */
+    public synchronized void putIfUnchanged(Note note, long stamp) {
+        if (stamp == invalidations) {
+            cache.put(note.getId(), copy(note));
+        }
+    }
+
+    public synchronized void invalidate(long noteId) {
+        invalidations++;
+        cache.remove(noteId);
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private static Note copy(Note note) {
+        Note copy = new Note();
+        copy.setId(note.getId());
+        copy.setHeading(note.getHeading());
+        copy.setDetails(note.getDetails());
+        copy.setUserId(note.getUserId());
+        return copy;
+    }
+}
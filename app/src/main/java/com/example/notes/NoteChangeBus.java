@@ -0,0 +1,78 @@
+package com.example.notes;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Publishes fine-grained note changes made through {@link DatabaseHelper}.
+ * Events are delivered synchronously on the thread that made the write, after
+ * it has been committed; listeners that touch views must hop to the main
+ * thread themselves.
+ */
+public class NoteChangeBus {
+
+    public interface Listener {
+        void onNoteInserted(long noteId);
+
+        void onNoteUpdated(long noteId);
+
+        void onNoteDeleted(long noteId);
+
+        /** Many notes deleted together, e.g. by {@link DatabaseHelper#deleteNotes}. */
+        void onNotesDeleted(long[] noteIds);
+
+        /** Notes taken back out of the trash; they are live again. */
+        void onNotesRestored(long[] noteIds);
+
+        /**
+         * Many notes changed together without moving in any list order, e.g.
+         * previews filled in by a backfill after an upgrade.
+         */
+        void onNotesUpdated(long[] noteIds);
+    }
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public void register(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void unregister(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    void publishInserted(long noteId) {
+        for (Listener listener : listeners) {
+            listener.onNoteInserted(noteId);
+        }
+    }
+
+    void publishUpdated(long noteId) {
+        for (Listener listener : listeners) {
+            listener.onNoteUpdated(noteId);
+        }
+    }
+
+    void publishDeleted(long noteId) {
+        for (Listener listener : listeners) {
+            listener.onNoteDeleted(noteId);
+        }
+    }
+
+    void publishDeleted(long[] noteIds) {
+        for (Listener listener : listeners) {
+            listener.onNotesDeleted(noteIds);
+        }
+    }
+
+    void publishRestored(long[] noteIds) {
+        for (Listener listener : listeners) {
+            listener.onNotesRestored(noteIds);
+        }
+    }
+
+    void publishUpdated(long[] noteIds) {
+        for (Listener listener : listeners) {
+            listener.onNotesUpdated(noteIds);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.notes;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses stored note text with java.util.zip.
+ *
+ * Plain text is stored as TEXT as before. A compressed value is a BLOB laid
+ * out as one codec byte, the length of the UTF-8 text as a big-endian int,
+ * then the deflate stream. Readers tell the two apart by the column type, so
+ * rows written before compression existed need no migration.
+ *
+ * Only chunk table rows are compressed: the part of a body after its first
+ * {@link NoteSql#CHUNK_CHARS} characters. Shorter bodies stay plain.
+ *
+ * Plain Java like {@link NoteSql}, so the JVM benchmarks measure the same code.
+ */
+final class NoteCodec {
+
+    // First byte of every compressed value; new codecs get new numbers
+    static final byte CODEC_DEFLATE = 1;
+
+    // About 2.5x faster than the default level for ~20% larger output; this runs
+    // on every autosave of a long note
+    static final int LEVEL = Deflater.BEST_SPEED;
+
+    private static final int HEADER_BYTES = 1 + 4;
+
+    /**
+     * @return the compressed value, or null if compressing wouldn't make the
+     *         text smaller and it should be stored plain
+     */
+    static byte[] compress(String text) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(LEVEL);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 4 + HEADER_BYTES + 16);
+            out.write(CODEC_DEFLATE);
+            out.write(ByteBuffer.allocate(4).putInt(utf8.length).array(), 0, 4);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+                if (out.size() >= utf8.length) {
+                    return null;
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Restores text written by {@link #compress}. */
+    static String decompress(byte[] value) {
+        if (value.length < HEADER_BYTES || value[0] != CODEC_DEFLATE) {
+            throw new IllegalArgumentException("Unknown note codec " + (value.length == 0 ? "(empty)" : value[0]));
+        }
+        int length = ByteBuffer.wrap(value, 1, 4).getInt();
+        byte[] utf8 = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(value, HEADER_BYTES, value.length - HEADER_BYTES);
+            int read = 0;
+            while (read < length) {
+                int n = inflater.inflate(utf8, read, length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                read += n;
+            }
+            // The stream may still hold its checksum once the output is full
+            if (read == length && !inflater.finished() && inflater.inflate(new byte[1]) != 0) {
+                read++;
+            }
+            if (read != length || !inflater.finished()) {
+                throw new IllegalArgumentException("Corrupt compressed note: " + read + " of " + length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed note", e);
+        } finally {
+            inflater.end();
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private NoteCodec() {
+    }
+}
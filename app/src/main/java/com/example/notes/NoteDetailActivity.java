@@ -2,32 +2,62 @@ package com.example.notes;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
-import android.app.AlertDialog;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.util.concurrent.Callable;
+
 public class NoteDetailActivity extends AppCompatActivity {
 
+    private static final String TAG = "NoteDetailActivity";
+
+    // Set on the result when the note was deleted, so the list can offer to undo
+    static final String EXTRA_TRASHED_NOTE_ID = "trashedNoteId";
+
+    // Writes are coalesced until the user stops typing for this long
+    private static final long AUTOSAVE_QUIET_PERIOD_MS = 750;
+
     private EditText noteHeadingEditText;
     private EditText noteDetailsEditText;
     private Button saveNoteButton;
 
     private long noteId;
     private SessionManager sessionManager;
+    private DatabaseHelper databaseHelper;
+    private DbDispatcher.Scope dbScope;
+    private NoteWriteQueue writeQueue;
+
+    // Set while a long body is streamed into the editor, so that isn't taken for typing
+    private boolean loadingBody;
+    // Layout of the body as stored; only kept for chunked notes, which save edits chunk by chunk
+    private ChunkLayout bodyLayout;
+    private String savedHeading;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable saveBodyEdit = new Runnable() {
+        @Override
+        public void run() {
+            saveBodyEdit();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         
         // Session manager
-        sessionManager = new SessionManager(getApplicationContext());
+        sessionManager = SessionManager.getInstance(this);
         
         // Check if user is not logged in, redirect to LoginActivity
         sessionManager.checkLogin();
@@ -47,11 +77,78 @@ public class NoteDetailActivity extends AppCompatActivity {
         // Get noteId from the intent (if available)
         noteId = getIntent().getLongExtra("noteId", -1);
 
+        final long userId = sessionManager.getUserId();
+        databaseHelper = DatabaseHelper.getInstance(this);
+        DbDispatcher dispatcher = DbDispatcher.getInstance();
+        dbScope = dispatcher.newScope();
+        // Autosaves share the writer lane, so they are ordered with every other write
+        writeQueue = new NoteWriteQueue(new NoteWriteQueue.Store() {
+            @Override
+            public long insertNote(String heading, String details) {
+                return databaseHelper.insertNote(heading, details, userId);
+            }
+
+            @Override
+            public boolean updateNote(long id, String heading, String details) {
+                return databaseHelper.updateNote(id, heading, details);
+            }
+        }, dispatcher.getWriteExecutor(), AUTOSAVE_QUIET_PERIOD_MS, noteId);
+        writeQueue.setListener(new NoteWriteQueue.Listener() {
+            @Override
+            public void onSaved(long savedNoteId) {
+            }
+
+            @Override
+            public void onSaveFailed() {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(getApplicationContext(), "Error saving note", Toast.LENGTH_SHORT).show();
+                    }
+                });
+            }
+        });
+
         if (noteId != -1) {
             // Load existing note details for editing
             loadNoteDetails(noteId);
         }
 
+        // Autosave as the user types. Loading marks the stored text as saved
+        // before filling it in, so that doesn't count as an edit.
+        TextWatcher autosaveWatcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                queueAutosave();
+            }
+        };
+        noteHeadingEditText.addTextChangedListener(autosaveWatcher);
+        noteDetailsEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                if (bodyLayout != null && !loadingBody) {
+                    bodyLayout.onTextChanged(start, before, count);
+                }
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                queueAutosave();
+            }
+        });
+
         // Set click listener for saving a note
         saveNoteButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -61,16 +158,148 @@ public class NoteDetailActivity extends AppCompatActivity {
         });
     }
 
-    private void loadNoteDetails(long noteId) {
-        DatabaseHelper databaseHelper = new DatabaseHelper(this);
-        Note note = databaseHelper.getNoteById(noteId);
+    /**
+     * Streams the note into the editor chunk by chunk, so a body of any size
+     * loads without one giant string or cursor row. Chunks are posted to the
+     * main thread as they are read and appended in order; the callback runs
+     * after the last of them.
+     */
+    private void loadNoteDetails(final long noteId) {
+        // Keep the user from typing into text that is about to be replaced
+        setEditingEnabled(false);
+        loadingBody = true;
+        final ChunkLayout layout = new ChunkLayout(NoteSql.CHUNK_CHARS);
+        noteDetailsEditText.setText("");
+        dbScope.read(new Callable<Note>() {
+            @Override
+            public Note call() {
+                return databaseHelper.readNoteBody(noteId, new DatabaseHelper.ChunkReader() {
+                    @Override
+                    public void onChunk(final long seq, final String text) {
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (!isDestroyed()) {
+                                    layout.append(seq, text.length());
+                                    noteDetailsEditText.append(text);
+                                }
+                            }
+                        });
+                    }
+                });
+            }
+        }, new DbDispatcher.Callback<Note>() {
+            @Override
+            public void onSuccess(Note note) {
+                if (note != null) {
+                    savedHeading = note.getHeading();
+                    if (layout.chunkCount() > 1) {
+                        bodyLayout = layout;
+                    } else {
+                        writeQueue.markSaved(note.getHeading(), noteDetailsEditText.getText().toString());
+                    }
+                    noteHeadingEditText.setText(note.getHeading());
+                }
+                loadingBody = false;
+                setEditingEnabled(true);
+            }
 
-        if (note != null) {
-            noteHeadingEditText.setText(note.getHeading());
-            noteDetailsEditText.setText(note.getDetails());
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error loading note", e);
+                Toast.makeText(NoteDetailActivity.this, "Error loading note", Toast.LENGTH_SHORT).show();
+                loadingBody = false;
+                setEditingEnabled(true);
+            }
+        });
+    }
+
+    private void setEditingEnabled(boolean enabled) {
+        noteHeadingEditText.setEnabled(enabled);
+        noteDetailsEditText.setEnabled(enabled);
+        saveNoteButton.setEnabled(enabled);
+    }
+
+    /**
+     * Hands the current text to the write queue. A note without a heading is
+     * not saved, matching the Save button's validation.
+     */
+    private void queueAutosave() {
+        if (loadingBody) {
+            return;
+        }
+        if (bodyLayout != null) {
+            // Chunked bodies are never copied whole; the edit is taken when the quiet period ends
+            mainHandler.removeCallbacks(saveBodyEdit);
+            mainHandler.postDelayed(saveBodyEdit, AUTOSAVE_QUIET_PERIOD_MS);
+            return;
+        }
+        String heading = noteHeadingEditText.getText().toString().trim();
+        String details = noteDetailsEditText.getText().toString().trim();
+        if (!TextUtils.isEmpty(heading)) {
+            writeQueue.submit(heading, details);
+        }
+    }
+
+    /**
+     * Writes what changed in a chunked body since the last save. Only the
+     * touched chunks are copied out of the editor, on the main thread since
+     * that is where the text lives; the write goes to the writer lane.
+     */
+    private void saveBodyEdit() {
+        mainHandler.removeCallbacks(saveBodyEdit);
+        final String heading = noteHeadingEditText.getText().toString().trim();
+        if (bodyLayout == null || TextUtils.isEmpty(heading)) {
+            return;
+        }
+        final ChunkLayout.Edit edit = bodyLayout.takeEdit(noteDetailsEditText.getText());
+        final String changedHeading = heading.equals(savedHeading) ? null : heading;
+        if (edit.isEmpty() && changedHeading == null) {
+            return;
+        }
+        savedHeading = heading;
+        dbScope.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return databaseHelper.updateNoteBody(noteId, changedHeading, edit);
+            }
+        }, new DbDispatcher.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean saved) {
+                if (!saved) {
+                    onError(null);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // The layout already counts the edit as saved; write everything next time
+                bodyLayout.markAllDirty();
+                savedHeading = null;
+                Toast.makeText(getApplicationContext(), "Error saving note", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Don't leave edits sitting in the quiet period when the user leaves
+        if (bodyLayout != null) {
+            saveBodyEdit();
+        } else {
+            writeQueue.flush();
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        if (dbScope != null) {
+            dbScope.cancel();
+        }
+        super.onDestroy();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         if (noteId != -1) {
@@ -99,26 +328,41 @@ public class NoteDetailActivity extends AppCompatActivity {
     
     private void deleteNote() {
         if (noteId != -1) {
-            new AlertDialog.Builder(this)
-                .setTitle("Delete Note")
-                .setMessage("Are you sure you want to delete this note?")
-                .setPositiveButton(android.R.string.yes, (dialog, which) -> {
-                    DatabaseHelper databaseHelper = new DatabaseHelper(this);
-                    databaseHelper.deleteNoteById(noteId);
-                    Toast.makeText(this, "Note deleted", Toast.LENGTH_SHORT).show();
+            writeQueue.discard();
+            mainHandler.removeCallbacks(saveBodyEdit);
+            bodyLayout = null;
+            // No confirmation: the note goes to the trash and MainActivity offers to undo,
+            // so this screen stays up until the trash is known to have worked
+            dbScope.write(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return databaseHelper.deleteNoteById(noteId);
+                }
+            }, new DbDispatcher.Callback<Integer>() {
+                @Override
+                public void onSuccess(Integer trashed) {
+                    if (trashed > 0) {
+                        setResult(RESULT_OK, new Intent().putExtra(EXTRA_TRASHED_NOTE_ID, noteId));
+                    } else if (trashed < 0) {
+                        Toast.makeText(NoteDetailActivity.this, "Error deleting note", Toast.LENGTH_SHORT).show();
+                    }
                     finish();
-                })
-                .setNegativeButton(android.R.string.no, null)
-                .setIcon(android.R.drawable.ic_dialog_alert)
-                .show();
-        } else {
-            finish();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    Log.e(TAG, "Error deleting note", e);
+                    Toast.makeText(NoteDetailActivity.this, "Error deleting note", Toast.LENGTH_SHORT).show();
+                    finish();
+                }
+            });
+            return;
         }
+        finish();
     }
     
     private void saveNote() {
         String heading = noteHeadingEditText.getText().toString().trim();
-        String details = noteDetailsEditText.getText().toString().trim();
 
         // Validate input
         if (TextUtils.isEmpty(heading)) {
@@ -127,26 +371,14 @@ public class NoteDetailActivity extends AppCompatActivity {
             return;
         }
 
-        DatabaseHelper databaseHelper = new DatabaseHelper(this);
-        long userId = sessionManager.getUserId();
-
-        if (noteId == -1) {
-            // New note
-            long newNoteId = databaseHelper.insertNote(heading, details, userId);
-            if (newNoteId != -1) {
-                Toast.makeText(this, "Note saved successfully", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, "Error saving note", Toast.LENGTH_SHORT).show();
-            }
+        // The write itself happens in the background; onPause flushes it
+        if (bodyLayout != null) {
+            saveBodyEdit();
         } else {
-            // Existing note
-            boolean updated = databaseHelper.updateNote(noteId, heading, details);
-            if (updated) {
-                Toast.makeText(this, "Note updated successfully", Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, "Error updating note", Toast.LENGTH_SHORT).show();
-            }
+            writeQueue.submit(heading, noteDetailsEditText.getText().toString().trim());
         }
+        Toast.makeText(this, noteId == -1 ? "Note saved successfully" : "Note updated successfully",
+                Toast.LENGTH_SHORT).show();
 
         // Navigate back to the main page
         finish();
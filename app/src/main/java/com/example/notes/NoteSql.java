@@ -0,0 +1,516 @@
+package com.example.notes;
+
+/**
+ * The notes schema and every statement DatabaseHelper runs against it.
+ *
+ * Plain Java on purpose, with no Android types. The JVM benchmark module
+ * compiles this file as-is and runs the same SQL through a JDBC SQLite
+ * driver.
+ */
+final class NoteSql {
+
+    // Table names
+    static final String TABLE_NOTES = "notes";
+    static final String TABLE_USERS = "users";
+    static final String TABLE_NOTES_FTS = "notes_fts";
+    // FTS4's own table with one row per indexed note, keyed by docid
+    static final String TABLE_NOTES_FTS_DOCSIZE = TABLE_NOTES_FTS + "_docsize";
+    static final String TABLE_NOTE_CHUNKS = "note_chunks";
+    static final String TABLE_SYNC_LOG = "sync_log";
+    static final String TABLE_SYNC_STATE = "sync_state";
+    
+    // Common column names
+    static final String COLUMN_ID = "_id";
+    
+    // Notes table columns
+    static final String COLUMN_HEADING = "heading";
+    static final String COLUMN_DETAILS = "details";
+    static final String COLUMN_USER_ID = "user_id";
+    static final String COLUMN_PREVIEW = "preview";
+    static final String COLUMN_CHUNK_COUNT = "chunk_count";
+    // When the note was moved to the trash, in epoch milliseconds; NULL while it is live
+    static final String COLUMN_DELETED_AT = "deleted_at";
+    // Epoch milliseconds, set on insert and on every save; 0 for notes from before version 8
+    static final String COLUMN_CREATED_AT = "created_at";
+    static final String COLUMN_UPDATED_AT = "updated_at";
+    // Names the note across all of a user's devices; local ids differ from device to device
+    static final String COLUMN_SYNC_ID = "sync_id";
+
+    // Note chunk table columns
+    static final String COLUMN_NOTE_ID = "note_id";
+    static final String COLUMN_SEQ = "seq";
+    static final String COLUMN_BODY = "body";
+
+    // Bodies longer than this are cut into chunks of at most this many characters.
+    // Even at three bytes per character a chunk stays far below the 2 MB CursorWindow.
+    static final int CHUNK_CHARS = 64 * 1024;
+    
+    // Sync table columns
+    static final String COLUMN_CHANGED_AT = "changed_at";
+    static final String COLUMN_REMOTE_CURSOR = "remote_cursor";
+
+    // Users table columns
+    static final String COLUMN_USERNAME = "username";
+    static final String COLUMN_PASSWORD = "password";
+
+    // Table create statements
+    static final String CREATE_TABLE_NOTES = 
+            "CREATE TABLE " + TABLE_NOTES + "("
+            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_HEADING + " TEXT,"
+            + COLUMN_DETAILS + " TEXT,"
+            + COLUMN_USER_ID + " INTEGER,"
+            + COLUMN_PREVIEW + " TEXT,"
+            + COLUMN_CHUNK_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+            + COLUMN_DELETED_AT + " INTEGER,"
+            + COLUMN_CREATED_AT + " INTEGER NOT NULL DEFAULT 0,"
+            + COLUMN_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0,"
+            + COLUMN_SYNC_ID + " TEXT,"
+            + "FOREIGN KEY(" + COLUMN_USER_ID + ") REFERENCES " + TABLE_USERS + "(" + COLUMN_ID + ")"
+            + ")";
+
+    static final String CREATE_TABLE_USERS =
+            "CREATE TABLE " + TABLE_USERS + "("
+            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_USERNAME + " TEXT UNIQUE,"
+            + COLUMN_PASSWORD + " TEXT"
+            + ")";
+
+    // Serves every per-user list query: equality on user_id, already ordered by _id.
+    // Partial, so trashed notes never enter it and a full trash can't slow the list down.
+    // Queries must repeat the WHERE clause for SQLite to pick it.
+    static final String CREATE_INDEX_NOTES_LIVE =
+            "CREATE INDEX IF NOT EXISTS idx_notes_live ON " + TABLE_NOTES
+            + "(" + COLUMN_USER_ID + ", " + COLUMN_ID + ")"
+            + " WHERE " + COLUMN_DELETED_AT + " IS NULL";
+
+    // "Recently edited": walked backwards. _id breaks ties, e.g. among notes from before timestamps.
+    static final String CREATE_INDEX_NOTES_UPDATED =
+            "CREATE INDEX IF NOT EXISTS idx_notes_updated ON " + TABLE_NOTES
+            + "(" + COLUMN_USER_ID + ", " + COLUMN_UPDATED_AT + ", " + COLUMN_ID + ")"
+            + " WHERE " + COLUMN_DELETED_AT + " IS NULL";
+
+    // "Title A-Z" sorts by this expression. Queries must spell it exactly the same way
+    // for SQLite to use idx_notes_title; ifnull keeps untitled notes in the keyset.
+    static final String TITLE_KEY = "ifnull(" + COLUMN_HEADING + ", '') COLLATE NOCASE";
+
+    static final String CREATE_INDEX_NOTES_TITLE =
+            "CREATE INDEX IF NOT EXISTS idx_notes_title ON " + TABLE_NOTES
+            + "(" + COLUMN_USER_ID + ", " + TITLE_KEY + ", " + COLUMN_ID + ")"
+            + " WHERE " + COLUMN_DELETED_AT + " IS NULL";
+
+    // The trash screen, most recently deleted first
+    static final String CREATE_INDEX_NOTES_TRASH =
+            "CREATE INDEX IF NOT EXISTS idx_notes_trash ON " + TABLE_NOTES
+            + "(" + COLUMN_USER_ID + ", " + COLUMN_DELETED_AT + ")"
+            + " WHERE " + COLUMN_DELETED_AT + " IS NOT NULL";
+
+    // The purge job, oldest deletion first across all users
+    static final String CREATE_INDEX_NOTES_PURGE =
+            "CREATE INDEX IF NOT EXISTS idx_notes_purge ON " + TABLE_NOTES
+            + "(" + COLUMN_DELETED_AT + ")"
+            + " WHERE " + COLUMN_DELETED_AT + " IS NOT NULL";
+
+    // Finds the local copy of a note a remote change refers to. Notes from before
+    // version 9 have no sync id until their backfill reaches them.
+    static final String CREATE_INDEX_NOTES_SYNC =
+            "CREATE UNIQUE INDEX IF NOT EXISTS idx_notes_sync ON " + TABLE_NOTES
+            + "(" + COLUMN_USER_ID + ", " + COLUMN_SYNC_ID + ")";
+
+    // Notes changed on this device and not yet acknowledged by the remote, one row per
+    // note. Logging a note again replaces its row with a new, higher seq, so a note
+    // edited many times between syncs is uploaded once. The sync id is copied in so a
+    // note purged before it was uploaded can still be sent as deleted.
+    static final String CREATE_TABLE_SYNC_LOG =
+            "CREATE TABLE " + TABLE_SYNC_LOG + "("
+            + COLUMN_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_NOTE_ID + " INTEGER NOT NULL UNIQUE,"
+            + COLUMN_USER_ID + " INTEGER NOT NULL,"
+            + COLUMN_SYNC_ID + " TEXT NOT NULL,"
+            + COLUMN_CHANGED_AT + " INTEGER NOT NULL"
+            + ")";
+
+    static final String CREATE_INDEX_SYNC_LOG =
+            "CREATE INDEX IF NOT EXISTS idx_sync_log_user ON " + TABLE_SYNC_LOG
+            + "(" + COLUMN_USER_ID + ", " + COLUMN_SEQ + ")";
+
+    // Finds a queued change by the note's sync id, for notes purged here before it was uploaded
+    static final String CREATE_INDEX_SYNC_LOG_SYNC_ID =
+            "CREATE INDEX IF NOT EXISTS idx_sync_log_sync ON " + TABLE_SYNC_LOG
+            + "(" + COLUMN_USER_ID + ", " + COLUMN_SYNC_ID + ")";
+
+    // How far each user has downloaded the remote's change feed. The cursor is opaque.
+    static final String CREATE_TABLE_SYNC_STATE =
+            "CREATE TABLE " + TABLE_SYNC_STATE + "("
+            + COLUMN_USER_ID + " INTEGER PRIMARY KEY,"
+            + COLUMN_REMOTE_CURSOR + " TEXT"
+            + ")";
+
+    // The rest of a long body after the first chunk, which stays inline in notes.details.
+    // Chunks are ordered by seq; see ChunkLayout for how seqs are assigned. A body is
+    // TEXT, or a NoteCodec BLOB if the chunk was long enough to be stored compressed.
+    static final String CREATE_TABLE_NOTE_CHUNKS =
+            "CREATE TABLE " + TABLE_NOTE_CHUNKS + "("
+            + COLUMN_NOTE_ID + " INTEGER NOT NULL,"
+            + COLUMN_SEQ + " INTEGER NOT NULL,"
+            + COLUMN_BODY + " TEXT NOT NULL,"
+            + "PRIMARY KEY (" + COLUMN_NOTE_ID + ", " + COLUMN_SEQ + ")"
+            + ")";
+
+    static final String CREATE_NOTE_CHUNKS_TRIGGER =
+            "CREATE TRIGGER note_chunks_ad AFTER DELETE ON " + TABLE_NOTES + " BEGIN"
+            + " DELETE FROM " + TABLE_NOTE_CHUNKS + " WHERE " + COLUMN_NOTE_ID + " = old." + COLUMN_ID + ";"
+            + " END";
+
+    // External-content FTS4 index over heading and details. The text itself stays
+    // in the notes table; the prefix option keeps short as-you-type prefixes cheap.
+    static final String CREATE_TABLE_NOTES_FTS =
+            "CREATE VIRTUAL TABLE " + TABLE_NOTES_FTS + " USING fts4("
+            + "content=\"" + TABLE_NOTES + "\", "
+            + COLUMN_HEADING + ", "
+            + COLUMN_DETAILS + ", "
+            + "tokenize=unicode61, "
+            + "prefix=\"2,3\""
+            + ")";
+
+    // Only removes a note from the index if it is in there. After an upgrade, notes wait for
+    // the search index backfill, and removing one before it is indexed corrupts the index.
+    private static final String WHEN_INDEXED = " WHEN EXISTS (SELECT 1 FROM " + TABLE_NOTES_FTS_DOCSIZE
+            + " WHERE docid = old." + COLUMN_ID + ")";
+
+    // Triggers that keep the FTS index in sync with the notes table
+    static final String[] CREATE_NOTES_FTS_TRIGGERS = {
+            "CREATE TRIGGER notes_fts_bu BEFORE UPDATE OF " + COLUMN_HEADING + ", " + COLUMN_DETAILS
+                    + " ON " + TABLE_NOTES + WHEN_INDEXED + " BEGIN"
+                    + " DELETE FROM " + TABLE_NOTES_FTS + " WHERE docid = old." + COLUMN_ID + ";"
+                    + " END",
+            "CREATE TRIGGER notes_fts_bd BEFORE DELETE ON " + TABLE_NOTES + WHEN_INDEXED + " BEGIN"
+                    + " DELETE FROM " + TABLE_NOTES_FTS + " WHERE docid = old." + COLUMN_ID + ";"
+                    + " END",
+            "CREATE TRIGGER notes_fts_au AFTER UPDATE OF " + COLUMN_HEADING + ", " + COLUMN_DETAILS
+                    + " ON " + TABLE_NOTES + " BEGIN"
+                    + " INSERT INTO " + TABLE_NOTES_FTS + "(docid, " + COLUMN_HEADING + ", " + COLUMN_DETAILS + ")"
+                    + " VALUES (new." + COLUMN_ID + ", new." + COLUMN_HEADING + ", new." + COLUMN_DETAILS + ");"
+                    + " END",
+            "CREATE TRIGGER notes_fts_ai AFTER INSERT ON " + TABLE_NOTES + " BEGIN"
+                    + " INSERT INTO " + TABLE_NOTES_FTS + "(docid, " + COLUMN_HEADING + ", " + COLUMN_DETAILS + ")"
+                    + " VALUES (new." + COLUMN_ID + ", new." + COLUMN_HEADING + ", new." + COLUMN_DETAILS + ");"
+                    + " END"
+    };
+
+    /** Every statement that creates the current schema, in order. */
+    static final String[] CREATE_SCHEMA = concat(
+            new String[]{CREATE_TABLE_USERS, CREATE_TABLE_NOTES,
+                    CREATE_INDEX_NOTES_LIVE, CREATE_INDEX_NOTES_UPDATED, CREATE_INDEX_NOTES_TITLE,
+                    CREATE_INDEX_NOTES_TRASH, CREATE_INDEX_NOTES_PURGE, CREATE_INDEX_NOTES_SYNC,
+                    CREATE_TABLE_NOTE_CHUNKS, CREATE_NOTE_CHUNKS_TRIGGER,
+                    CREATE_TABLE_SYNC_LOG, CREATE_INDEX_SYNC_LOG, CREATE_INDEX_SYNC_LOG_SYNC_ID,
+                    CREATE_TABLE_SYNC_STATE,
+                    CREATE_TABLE_NOTES_FTS},
+            CREATE_NOTES_FTS_TRIGGERS);
+
+    // Queries issued by DatabaseHelper. QueryPlanTest checks that none of them falls
+    // back to a full scan or a temp B-tree sort, and the JVM benchmarks run them as-is.
+    static final String SQL_USER_BY_NAME =
+            "SELECT " + COLUMN_ID + ", " + COLUMN_USERNAME + ", " + COLUMN_PASSWORD
+            + " FROM " + TABLE_USERS
+            + " WHERE " + COLUMN_USERNAME + " = ?";
+
+    static final String SQL_NOTE_BY_ID =
+            "SELECT " + COLUMN_ID + ", " + COLUMN_HEADING + ", " + COLUMN_DETAILS + ", " + COLUMN_CHUNK_COUNT
+            + " FROM " + TABLE_NOTES
+            + " WHERE " + COLUMN_ID + " = ?";
+
+    static final String SQL_ALL_NOTES =
+            "SELECT " + COLUMN_ID + ", " + COLUMN_HEADING + ", " + COLUMN_DETAILS + ", " + COLUMN_CHUNK_COUNT
+            + " FROM " + TABLE_NOTES
+            + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_DELETED_AT + " IS NULL"
+            + " ORDER BY " + COLUMN_ID + " DESC";
+
+    static final String SQL_EXPORT_NOTES =
+            "SELECT " + COLUMN_HEADING + ", " + COLUMN_DETAILS + ", " + COLUMN_ID + ", " + COLUMN_CHUNK_COUNT
+            + " FROM " + TABLE_NOTES
+            + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_DELETED_AT + " IS NULL"
+            + " ORDER BY " + COLUMN_ID;
+
+    // Orders of the note list. Each one is an index range scan over live notes,
+    // so switching order or paging deep costs the same as the first page.
+    // Creation order is _id order: AUTOINCREMENT ids only go up, the wall clock may not.
+    static final int SORT_NEWEST = 0;
+    static final int SORT_RECENTLY_EDITED = 1;
+    static final int SORT_OLDEST = 2;
+    static final int SORT_TITLE = 3;
+
+    private static final String PAGE_COLUMNS =
+            "SELECT " + COLUMN_ID + ", " + COLUMN_HEADING + ", " + COLUMN_PREVIEW + ", " + COLUMN_UPDATED_AT
+            + " FROM " + TABLE_NOTES
+            + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_DELETED_AT + " IS NULL";
+
+    // Keyset pagination: each page continues strictly below the last id already shown
+    static final String SQL_NOTES_PAGE =
+            PAGE_COLUMNS + " AND " + COLUMN_ID + " < ?"
+            + " ORDER BY " + COLUMN_ID + " DESC"
+            + " LIMIT ?";
+
+    static final String SQL_NOTES_PAGE_OLDEST =
+            PAGE_COLUMNS + " AND " + COLUMN_ID + " > ?"
+            + " ORDER BY " + COLUMN_ID
+            + " LIMIT ?";
+
+    // Two-column keysets take the last row's key twice, then its id. The first
+    // comparison bounds the index range; the OR only filters ties at its edge.
+    static final String SQL_NOTES_PAGE_EDITED =
+            PAGE_COLUMNS + " AND " + COLUMN_UPDATED_AT + " <= ?"
+            + " AND (" + COLUMN_UPDATED_AT + " < ? OR " + COLUMN_ID + " < ?)"
+            + " ORDER BY " + COLUMN_UPDATED_AT + " DESC, " + COLUMN_ID + " DESC"
+            + " LIMIT ?";
+
+    static final String SQL_NOTES_PAGE_TITLE =
+            PAGE_COLUMNS + " AND " + TITLE_KEY + " >= ?"
+            + " AND (" + TITLE_KEY + " > ? OR " + COLUMN_ID + " > ?)"
+            + " ORDER BY " + TITLE_KEY + ", " + COLUMN_ID
+            + " LIMIT ?";
+
+    static final String SQL_TRASHED_NOTES =
+            "SELECT " + COLUMN_ID + ", " + COLUMN_HEADING + ", " + COLUMN_PREVIEW
+            + " FROM " + TABLE_NOTES
+            + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_DELETED_AT + " IS NOT NULL"
+            + " ORDER BY " + COLUMN_DELETED_AT + " DESC"
+            + " LIMIT ?";
+
+    // Trashed notes past their retention, oldest first; the purge job deletes them by id
+    static final String SQL_EXPIRED_TRASH =
+            "SELECT " + COLUMN_ID + " FROM " + TABLE_NOTES
+            + " WHERE " + COLUMN_DELETED_AT + " IS NOT NULL AND " + COLUMN_DELETED_AT + " < ?"
+            + " ORDER BY " + COLUMN_DELETED_AT
+            + " LIMIT ?";
+
+    // Ranks candidates by matchinfo only; the note rows are fetched afterwards for the winners.
+    // CROSS JOIN pins the FTS table as the outer loop so the MATCH drives the query.
+    static final String SQL_SEARCH_NOTES =
+            "SELECT " + TABLE_NOTES_FTS + ".docid, matchinfo(" + TABLE_NOTES_FTS + ", 'pcx')"
+            + " FROM " + TABLE_NOTES_FTS
+            + " CROSS JOIN " + TABLE_NOTES + " ON " + TABLE_NOTES + "." + COLUMN_ID + " = " + TABLE_NOTES_FTS + ".docid"
+            + " WHERE " + TABLE_NOTES_FTS + " MATCH ?"
+            + " AND " + TABLE_NOTES + "." + COLUMN_USER_ID + " = ?"
+            + " AND " + TABLE_NOTES + "." + COLUMN_DELETED_AT + " IS NULL";
+
+    static final String SQL_INSERT_NOTE =
+            "INSERT INTO " + TABLE_NOTES + " ("
+            + COLUMN_HEADING + ", " + COLUMN_DETAILS + ", " + COLUMN_PREVIEW + ", " + COLUMN_USER_ID + ", "
+            + COLUMN_CREATED_AT + ", " + COLUMN_UPDATED_AT + ", " + COLUMN_SYNC_ID
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // Writes by id, equivalent to what DatabaseHelper's update and delete calls generate
+    static final String SQL_UPDATE_NOTE =
+            "UPDATE " + TABLE_NOTES + " SET "
+            + COLUMN_HEADING + " = ?, " + COLUMN_DETAILS + " = ?, " + COLUMN_PREVIEW + " = ?, "
+            + COLUMN_UPDATED_AT + " = ?"
+            + " WHERE " + COLUMN_ID + " = ?";
+
+    // Deleting a note moves it to the trash; the row goes when the trash is purged
+    static final String SQL_TRASH_NOTE =
+            "UPDATE " + TABLE_NOTES + " SET " + COLUMN_DELETED_AT + " = ?"
+            + " WHERE " + COLUMN_ID + " = ? AND " + COLUMN_DELETED_AT + " IS NULL";
+
+    // Equivalent to addUser's insert; the benchmarks seed users with it
+    static final String SQL_INSERT_USER =
+            "INSERT INTO " + TABLE_USERS + " (" + COLUMN_USERNAME + ", " + COLUMN_PASSWORD + ") VALUES (?, ?)";
+
+    // Chunks after the inline head, in body order; one row per chunk keeps every row small
+    static final String SQL_NOTE_CHUNKS =
+            "SELECT " + COLUMN_SEQ + ", " + COLUMN_BODY
+            + " FROM " + TABLE_NOTE_CHUNKS
+            + " WHERE " + COLUMN_NOTE_ID + " = ?"
+            + " ORDER BY " + COLUMN_SEQ;
+
+    static final String SQL_PUT_NOTE_CHUNK =
+            "INSERT OR REPLACE INTO " + TABLE_NOTE_CHUNKS
+            + " (" + COLUMN_NOTE_ID + ", " + COLUMN_SEQ + ", " + COLUMN_BODY + ") VALUES (?, ?, ?)";
+
+    static final String SQL_DELETE_NOTE_CHUNK =
+            "DELETE FROM " + TABLE_NOTE_CHUNKS + " WHERE " + COLUMN_NOTE_ID + " = ? AND " + COLUMN_SEQ + " = ?";
+
+    static final String SQL_DELETE_NOTE_CHUNKS =
+            "DELETE FROM " + TABLE_NOTE_CHUNKS + " WHERE " + COLUMN_NOTE_ID + " = ?";
+
+    static final String SQL_UPDATE_CHUNK_COUNT =
+            "UPDATE " + TABLE_NOTES + " SET " + COLUMN_CHUNK_COUNT + " ="
+            + " (SELECT count(*) FROM " + TABLE_NOTE_CHUNKS + " WHERE " + COLUMN_NOTE_ID + " = ?)"
+            + " WHERE " + COLUMN_ID + " = ?";
+
+    // Queues the note for the next upload, or moves it to the back of the queue.
+    // Takes the change time, then the note id; run it in the write's transaction.
+    static final String SQL_LOG_CHANGE =
+            "INSERT OR REPLACE INTO " + TABLE_SYNC_LOG + " ("
+            + COLUMN_NOTE_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_SYNC_ID + ", " + COLUMN_CHANGED_AT + ")"
+            + " SELECT " + COLUMN_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_SYNC_ID + ", ?"
+            + " FROM " + TABLE_NOTES
+            + " WHERE " + COLUMN_ID + " = ? AND " + COLUMN_SYNC_ID + " IS NOT NULL";
+
+    // The oldest queued changes of a user with what to upload for each. A note that is
+    // in the trash or already purged goes up as deleted, so its body isn't needed.
+    static final String SQL_PENDING_CHANGES =
+            "SELECT l." + COLUMN_SEQ + ", l." + COLUMN_SYNC_ID + ", l." + COLUMN_CHANGED_AT + ","
+            + " n." + COLUMN_ID + ", n." + COLUMN_DELETED_AT + ", n." + COLUMN_HEADING + ", n." + COLUMN_DETAILS + ","
+            + " n." + COLUMN_CHUNK_COUNT + ", n." + COLUMN_CREATED_AT
+            + " FROM " + TABLE_SYNC_LOG + " l"
+            + " LEFT JOIN " + TABLE_NOTES + " n ON n." + COLUMN_ID + " = l." + COLUMN_NOTE_ID
+            + " WHERE l." + COLUMN_USER_ID + " = ?"
+            + " ORDER BY l." + COLUMN_SEQ
+            + " LIMIT ?";
+
+    // Drops everything the remote has acknowledged, up to and including the given seq.
+    // Notes logged again since then have a higher seq and stay queued.
+    static final String SQL_ACKNOWLEDGE_CHANGES =
+            "DELETE FROM " + TABLE_SYNC_LOG
+            + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_SEQ + " <= ?";
+
+    static final String SQL_NOTE_BY_SYNC_ID =
+            "SELECT " + COLUMN_ID + ", " + COLUMN_DELETED_AT
+            + " FROM " + TABLE_NOTES
+            + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_SYNC_ID + " = ?";
+
+    static final String SQL_PENDING_CHANGE_AT =
+            "SELECT " + COLUMN_CHANGED_AT + " FROM " + TABLE_SYNC_LOG + " WHERE " + COLUMN_NOTE_ID + " = ?";
+
+    static final String SQL_DROP_PENDING_CHANGE =
+            "DELETE FROM " + TABLE_SYNC_LOG + " WHERE " + COLUMN_NOTE_ID + " = ?";
+
+    // The same two by user and sync id. Only a purged note still has a queued change once
+    // SQL_NOTE_BY_SYNC_ID finds no row: the deletion logged when it went to the trash.
+    static final String SQL_PENDING_CHANGE_AT_BY_SYNC_ID =
+            "SELECT " + COLUMN_CHANGED_AT + " FROM " + TABLE_SYNC_LOG
+            + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_SYNC_ID + " = ?";
+
+    static final String SQL_DROP_PENDING_CHANGE_BY_SYNC_ID =
+            "DELETE FROM " + TABLE_SYNC_LOG
+            + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_SYNC_ID + " = ?";
+
+    static final String SQL_SYNC_CURSOR =
+            "SELECT " + COLUMN_REMOTE_CURSOR + " FROM " + TABLE_SYNC_STATE + " WHERE " + COLUMN_USER_ID + " = ?";
+
+    static final String SQL_PUT_SYNC_CURSOR =
+            "INSERT OR REPLACE INTO " + TABLE_SYNC_STATE
+            + " (" + COLUMN_USER_ID + ", " + COLUMN_REMOTE_CURSOR + ") VALUES (?, ?)";
+
+    static String notesPageSql(int sort) {
+        switch (sort) {
+            case SORT_RECENTLY_EDITED:
+                return SQL_NOTES_PAGE_EDITED;
+            case SORT_OLDEST:
+                return SQL_NOTES_PAGE_OLDEST;
+            case SORT_TITLE:
+                return SQL_NOTES_PAGE_TITLE;
+            default:
+                return SQL_NOTES_PAGE;
+        }
+    }
+
+    /**
+     * Arguments for {@link #notesPageSql}: the page after {@code after}, or the
+     * first page if it is null.
+     */
+    static String[] notesPageArgs(int sort, long userId, NoteSummary after, int pageSize) {
+        String user = String.valueOf(userId);
+        String limit = String.valueOf(pageSize);
+        switch (sort) {
+            case SORT_RECENTLY_EDITED: {
+                String updatedAt = String.valueOf(after == null ? Long.MAX_VALUE : after.getUpdatedAt());
+                String id = String.valueOf(after == null ? Long.MAX_VALUE : after.getId());
+                return new String[]{user, updatedAt, updatedAt, id, limit};
+            }
+            case SORT_TITLE: {
+                String title = after == null || after.getHeading() == null ? "" : after.getHeading();
+                String id = String.valueOf(after == null ? -1 : after.getId());
+                return new String[]{user, title, title, id, limit};
+            }
+            case SORT_OLDEST:
+                return new String[]{user, String.valueOf(after == null ? -1 : after.getId()), limit};
+            default:
+                return new String[]{user, String.valueOf(after == null ? Long.MAX_VALUE : after.getId()), limit};
+        }
+    }
+
+    // Search while the FTS index is still being backfilled: every word in heading or details,
+    // newest first. Takes the user id, two placeholders per word, then the limit.
+    static String searchNotesLikeSql(int wordCount) {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMN_ID + ", " + COLUMN_HEADING + ", "
+                + COLUMN_PREVIEW + ", " + COLUMN_UPDATED_AT
+                + " FROM " + TABLE_NOTES
+                + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_DELETED_AT + " IS NULL");
+        for (int i = 0; i < wordCount; i++) {
+            sql.append(" AND (" + COLUMN_HEADING + " LIKE ? OR " + COLUMN_DETAILS + " LIKE ?)");
+        }
+        return sql.append(" ORDER BY " + COLUMN_ID + " DESC LIMIT ?").toString();
+    }
+
+    // Loads live list rows by id, e.g. search winners; takes one placeholder per id
+    static String summariesByIdSql(int idCount) {
+        return "SELECT " + COLUMN_ID + ", " + COLUMN_HEADING + ", " + COLUMN_PREVIEW + ", " + COLUMN_UPDATED_AT
+                + " FROM " + TABLE_NOTES
+                + " WHERE " + COLUMN_ID + " IN (" + placeholders(idCount) + ")"
+                + " AND " + COLUMN_DELETED_AT + " IS NULL";
+    }
+
+    // Bulk changes to one user's notes take the user id, then one placeholder per note id.
+    // The select runs first in the same transaction to learn which ids the change applies to.
+    static String ownedNoteIdsSql(int idCount, boolean trashed) {
+        return "SELECT " + COLUMN_ID + " FROM " + TABLE_NOTES
+                + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_ID + " IN (" + placeholders(idCount) + ")"
+                + " AND " + COLUMN_DELETED_AT + (trashed ? " IS NOT NULL" : " IS NULL");
+    }
+
+    // Takes the deletion time as an extra first argument
+    static String trashNotesSql(int idCount) {
+        return "UPDATE " + TABLE_NOTES + " SET " + COLUMN_DELETED_AT + " = ?"
+                + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_ID + " IN (" + placeholders(idCount) + ")"
+                + " AND " + COLUMN_DELETED_AT + " IS NULL";
+    }
+
+    static String restoreNotesSql(int idCount) {
+        return "UPDATE " + TABLE_NOTES + " SET " + COLUMN_DELETED_AT + " = NULL"
+                + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_ID + " IN (" + placeholders(idCount) + ")"
+                + " AND " + COLUMN_DELETED_AT + " IS NOT NULL";
+    }
+
+    // Only ever removes notes that are already in the trash
+    static String purgeNotesSql(int idCount) {
+        return "DELETE FROM " + TABLE_NOTES
+                + " WHERE " + COLUMN_USER_ID + " = ? AND " + COLUMN_ID + " IN (" + placeholders(idCount) + ")"
+                + " AND " + COLUMN_DELETED_AT + " IS NOT NULL";
+    }
+
+    // The bulk form of SQL_LOG_CHANGE: the change time, then one placeholder per note id
+    static String logChangesSql(int idCount) {
+        return "INSERT OR REPLACE INTO " + TABLE_SYNC_LOG + " ("
+                + COLUMN_NOTE_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_SYNC_ID + ", " + COLUMN_CHANGED_AT + ")"
+                + " SELECT " + COLUMN_ID + ", " + COLUMN_USER_ID + ", " + COLUMN_SYNC_ID + ", ?"
+                + " FROM " + TABLE_NOTES
+                + " WHERE " + COLUMN_ID + " IN (" + placeholders(idCount) + ")"
+                + " AND " + COLUMN_SYNC_ID + " IS NOT NULL";
+    }
+
+    // The purge job's delete, by ids SQL_EXPIRED_TRASH returned in the same transaction
+    static String purgeExpiredSql(int idCount) {
+        return "DELETE FROM " + TABLE_NOTES + " WHERE " + COLUMN_ID + " IN (" + placeholders(idCount) + ")";
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.toString();
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        String[] all = new String[first.length + second.length];
+        System.arraycopy(first, 0, all, 0, first.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        return all;
+    }
+
+    private NoteSql() {
+    }
+}
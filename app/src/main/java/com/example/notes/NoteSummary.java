@@ -0,0 +1,150 @@
+package com.example.notes;
+
+import java.util.Comparator;
+
+// NoteSummary.java
+/**
+ * What the note list needs to draw a row: the id, the heading and a short
+ * preview of the body. The full body is only loaded when a note is opened.
+ */
+public class NoteSummary {
+    // Maximum number of characters kept in the stored preview
+    public static final int PREVIEW_LENGTH = 120;
+
+    private long id;
+    private String heading;
+    private String preview;
+    private long updatedAt;
+
+    public NoteSummary(long id, String heading, String preview) {
+        this(id, heading, preview, 0);
+    }
+
+    public NoteSummary(long id, String heading, String preview, long updatedAt) {
+        this.id = id;
+        this.heading = heading;
+        this.preview = preview;
+        this.updatedAt = updatedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getHeading() {
+        return heading;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    /** When the note was last saved, in epoch milliseconds; 0 if not loaded or not known. */
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Orders summaries the way {@link NoteSql#notesPageSql} returns them for
+     * {@code sort}, so rows that change on screen can be put where the next
+     * load would put them.
+     */
+    static Comparator<NoteSummary> listOrder(int sort) {
+        switch (sort) {
+            case NoteSql.SORT_RECENTLY_EDITED:
+                return RECENTLY_EDITED;
+            case NoteSql.SORT_OLDEST:
+                return OLDEST;
+            case NoteSql.SORT_TITLE:
+                return TITLE;
+            default:
+                return NEWEST;
+        }
+    }
+
+    private static final Comparator<NoteSummary> NEWEST = new Comparator<NoteSummary>() {
+        @Override
+        public int compare(NoteSummary a, NoteSummary b) {
+            return Long.compare(b.id, a.id);
+        }
+    };
+
+    private static final Comparator<NoteSummary> OLDEST = new Comparator<NoteSummary>() {
+        @Override
+        public int compare(NoteSummary a, NoteSummary b) {
+            return Long.compare(a.id, b.id);
+        }
+    };
+
+    private static final Comparator<NoteSummary> RECENTLY_EDITED = new Comparator<NoteSummary>() {
+        @Override
+        public int compare(NoteSummary a, NoteSummary b) {
+            int byTime = Long.compare(b.updatedAt, a.updatedAt);
+            return byTime != 0 ? byTime : Long.compare(b.id, a.id);
+        }
+    };
+
+    private static final Comparator<NoteSummary> TITLE = new Comparator<NoteSummary>() {
+        @Override
+        public int compare(NoteSummary a, NoteSummary b) {
+            int byTitle = compareNoCase(a.heading == null ? "" : a.heading, b.heading == null ? "" : b.heading);
+            return byTitle != 0 ? byTitle : Long.compare(a.id, b.id);
+        }
+    };
+
+    /**
+     * SQLite's NOCASE collation: only ASCII letters fold, and the rest compares
+     * by code point, which is the UTF-8 byte order SQLite compares in.
+     */
+    static int compareNoCase(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+            if (x != y) {
+                x = x >= 'A' && x <= 'Z' ? x + ('a' - 'A') : x;
+                y = y >= 'A' && y <= 'Z' ? y + ('a' - 'A') : y;
+                if (x != y) {
+                    return x < y ? -1 : 1;
+                }
+            }
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * Builds the stored preview for a note body: whitespace runs collapse to a
+     * single space and the result is cut to {@link #PREVIEW_LENGTH} characters
+     * without splitting a surrogate pair.
+     */
+    public static String makePreview(String details) {
+        if (details == null) {
+            return null;
+        }
+        StringBuilder preview = new StringBuilder(Math.min(details.length(), PREVIEW_LENGTH));
+        boolean pendingSpace = false;
+        for (int i = 0; i < details.length() && preview.length() < PREVIEW_LENGTH; i++) {
+            char c = details.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = preview.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                preview.append(' ');
+                pendingSpace = false;
+                if (preview.length() == PREVIEW_LENGTH) {
+                    break;
+                }
+            }
+            preview.append(c);
+        }
+        int length = preview.length();
+        if (length > 0 && Character.isHighSurrogate(preview.charAt(length - 1))) {
+            preview.setLength(length - 1);
+        }
+        return preview.toString().trim();
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.notes;
+
+import android.database.Cursor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves a user's notes in and out of the database as NDJSON: one JSON object
+ * per line, e.g. {@code {"heading":"Groceries","details":"Milk"}}.
+ *
+ * Both directions stream. Export walks the cursor row by row, and long
+ * bodies chunk by chunk; import commits every {@link #IMPORT_BATCH_SIZE}
+ * notes in its own transaction. Memory use does not grow with the size of
+ * the collection. Run these off the main thread.
+ */
+public class NoteTransfer {
+
+    static final int IMPORT_BATCH_SIZE = 500;
+
+    private static final String KEY_HEADING = "heading";
+    private static final String KEY_DETAILS = "details";
+
+    private final DatabaseHelper databaseHelper;
+
+    public NoteTransfer(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+    }
+
+    /**
+     * Writes every note of the user to {@code out}, oldest first. The stream is
+     * flushed but not closed.
+     *
+     * @return the number of notes written
+     */
+    public int exportNotes(long userId, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        int exported = 0;
+        try (Cursor cursor = databaseHelper.queryNotesForExport(userId)) {
+            while (cursor.moveToNext()) {
+                writer.write("{\"" + KEY_HEADING + "\":");
+                writeJsonString(writer, cursor.getString(0));
+                writer.write(",\"" + KEY_DETAILS + "\":");
+                if (cursor.getInt(3) > 0) {
+                    writeChunkedJsonString(writer, cursor.getString(1), cursor.getLong(2));
+                } else {
+                    writeJsonString(writer, cursor.getString(1));
+                }
+                writer.write("}\n");
+                exported++;
+            }
+        }
+        writer.flush();
+        return exported;
+    }
+
+    /**
+     * Reads NDJSON notes from {@code in} and adds them to the user's notes.
+     * Blank lines are skipped. Batches already committed stay in the database
+     * if a later line turns out to be malformed. The stream is not closed.
+     *
+     * @return the number of notes imported
+     * @throws IOException if reading fails, a line is not a JSON object or a batch cannot be written
+     */
+    public int importNotes(long userId, InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<Note> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        int imported = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            batch.add(parseNote(line, lineNumber));
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                imported += insertBatch(userId, batch);
+            }
+        }
+        if (!batch.isEmpty()) {
+            imported += insertBatch(userId, batch);
+        }
+        return imported;
+    }
+
+    private int insertBatch(long userId, List<Note> batch) throws IOException {
+        int inserted = databaseHelper.bulkInsertNotes(userId, batch);
+        if (inserted == -1) {
+            throw new IOException("Failed to write imported notes");
+        }
+        batch.clear();
+        return inserted;
+    }
+
+    private static Note parseNote(String line, int lineNumber) throws IOException {
+        try {
+            JSONObject json = new JSONObject(line);
+            Note note = new Note();
+            note.setHeading(json.isNull(KEY_HEADING) ? null : json.getString(KEY_HEADING));
+            note.setDetails(json.isNull(KEY_DETAILS) ? null : json.getString(KEY_DETAILS));
+            return note;
+        } catch (JSONException e) {
+            throw new IOException("Malformed note on line " + lineNumber, e);
+        }
+    }
+
+    /**
+     * Writes a chunked body as one JSON string without assembling it. Escaping
+     * works character by character, so quoting each chunk separately and
+     * dropping the inner quotes gives the same result as quoting the whole.
+     */
+    private void writeChunkedJsonString(final Writer writer, String head, long noteId) throws IOException {
+        writer.write('"');
+        writeUnquoted(writer, head);
+        try {
+            databaseHelper.readChunks(noteId, new DatabaseHelper.ChunkReader() {
+                @Override
+                public void onChunk(long seq, String text) {
+                    try {
+                        writeUnquoted(writer, text);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.write('"');
+    }
+
+    private static void writeUnquoted(Writer writer, String value) throws IOException {
+        String quoted = JSONObject.quote(value);
+        writer.write(quoted, 1, quoted.length() - 2);
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else {
+            writer.write(JSONObject.quote(value));
+        }
+    }
+}
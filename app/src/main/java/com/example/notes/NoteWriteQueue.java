@@ -0,0 +1,164 @@
+package com.example.notes;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces edits to one note into as few database writes as possible.
+ *
+ * Every {@link #submit} replaces the pending snapshot and restarts the quiet
+ * period; only when no edit has arrived for that long is the latest snapshot
+ * written, as an insert the first time and as an update afterwards. All
+ * writes happen on the given single-threaded executor, so callers never block
+ * on disk and writes for the note never run out of order.
+ */
+public class NoteWriteQueue {
+
+    /** Where snapshots end up. Called on the executor thread. */
+    public interface Store {
+        /** @return the new note id, or -1 on failure */
+        long insertNote(String heading, String details);
+
+        boolean updateNote(long noteId, String heading, String details);
+    }
+
+    /** Outcome of each write. Called on the executor thread. */
+    public interface Listener {
+        void onSaved(long noteId);
+
+        void onSaveFailed();
+    }
+
+    private final Store store;
+    private final ScheduledExecutorService executor;
+    private final long quietPeriodMillis;
+    private Listener listener;
+
+    // Guarded by this
+    private long noteId;
+    private String pendingHeading;
+    private String pendingDetails;
+    private boolean hasPending;
+    private String savedHeading;
+    private String savedDetails;
+    private Future<?> scheduledWrite;
+
+    /**
+     * @param noteId id of the note being edited, or -1 for a note that doesn't exist yet
+     */
+    public NoteWriteQueue(Store store, ScheduledExecutorService executor, long quietPeriodMillis, long noteId) {
+        this.store = store;
+        this.executor = executor;
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.noteId = noteId;
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized long getNoteId() {
+        return noteId;
+    }
+
+    /** Records content that is already in the database, so re-submitting it writes nothing. */
+    public synchronized void markSaved(String heading, String details) {
+        savedHeading = heading;
+        savedDetails = details;
+    }
+
+    /** Queues the latest content and restarts the quiet period. */
+    public synchronized void submit(String heading, String details) {
+        pendingHeading = heading;
+        pendingDetails = details;
+        hasPending = true;
+        cancelScheduledWrite();
+        scheduledWrite = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                writePending();
+            }
+        }, quietPeriodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the pending snapshot as soon as possible instead of waiting for
+     * the quiet period, e.g. when the screen is paused.
+     *
+     * @return a future that completes once the write has run
+     */
+    public synchronized Future<?> flush() {
+        cancelScheduledWrite();
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                writePending();
+            }
+        });
+    }
+
+    /** Drops any edit that hasn't been written yet. */
+    public synchronized void discard() {
+        cancelScheduledWrite();
+        hasPending = false;
+        pendingHeading = null;
+        pendingDetails = null;
+    }
+
+    private void cancelScheduledWrite() {
+        if (scheduledWrite != null) {
+            scheduledWrite.cancel(false);
+            scheduledWrite = null;
+        }
+    }
+
+    private void writePending() {
+        String heading;
+        String details;
+        long id;
+        Listener currentListener;
+        synchronized (this) {
+            if (!hasPending) {
+                return;
+            }
+            heading = pendingHeading;
+            details = pendingDetails;
+            hasPending = false;
+            pendingHeading = null;
+            pendingDetails = null;
+            if (equals(heading, savedHeading) && equals(details, savedDetails)) {
+                return;
+            }
+            id = noteId;
+            currentListener = listener;
+        }
+
+        boolean saved;
+        if (id == -1) {
+            id = store.insertNote(heading, details);
+            saved = id != -1;
+        } else {
+            saved = store.updateNote(id, heading, details);
+        }
+
+        synchronized (this) {
+            if (saved) {
+                noteId = id;
+                savedHeading = heading;
+                savedDetails = details;
+            }
+        }
+        if (currentListener != null) {
+            if (saved) {
+                currentListener.onSaved(id);
+            } else {
+                currentListener.onSaveFailed();
+            }
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashes.
+ *
+ * Hashes are stored as {@code pbkdf2-sha256$<iterations>$<salt>$<hash>} with
+ * Base64 salt and hash, so every hash carries the cost it was made with. The
+ * cost for new hashes is calibrated once per install so that one hash takes
+ * about {@link #TARGET_MILLIS} on this device. Passwords stored before
+ * hashing was introduced, or with a lower cost, still verify, and
+ * {@link #needsRehash} says when to replace them.
+ *
+ * Hashing is deliberately slow; never call it on the main thread.
+ */
+public class PasswordHasher {
+
+    private static final String TAG = "PasswordHasher";
+
+    static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    static final String PREFIX = "pbkdf2-sha256";
+
+    // Login latency budget for one hash on this device
+    static final long TARGET_MILLIS = 250;
+    // Never go below this, however slow the device; raise it to force rehashing on login
+    static final int MIN_ITERATIONS = 100_000;
+    static final int MAX_ITERATIONS = 2_000_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private static final String PREF_NAME = "password_hashing";
+    private static final String KEY_ITERATIONS = "pbkdf2_iterations";
+
+    private static PasswordHasher deviceInstance;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public PasswordHasher(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Returns the hasher for this install, calibrating and remembering its
+     * cost on first use. The first call can take a second; call it off the
+     * main thread.
+     */
+    public static synchronized PasswordHasher forDevice(Context context) {
+        if (deviceInstance == null) {
+            SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+            int iterations = prefs.getInt(KEY_ITERATIONS, 0);
+            if (iterations < MIN_ITERATIONS) {
+                iterations = calibrate(TARGET_MILLIS);
+                prefs.edit().putInt(KEY_ITERATIONS, iterations).apply();
+                if (DbTrace.ENABLED) {
+                    Log.d(TAG, "Calibrated to " + iterations + " iterations");
+                }
+            }
+            deviceInstance = new PasswordHasher(iterations);
+        }
+        return deviceInstance;
+    }
+
+    /**
+     * Picks the iteration count that takes about {@code targetMillis} to hash
+     * on this device, within {@link #MIN_ITERATIONS} and {@link #MAX_ITERATIONS}.
+     */
+    static int calibrate(long targetMillis) {
+        byte[] salt = new byte[SALT_BYTES];
+        // The first run pays for provider lookup and JIT; only time the second
+        derive("calibration", salt, CALIBRATION_ITERATIONS);
+        long start = System.nanoTime();
+        derive("calibration", salt, CALIBRATION_ITERATIONS);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        long iterations = CALIBRATION_ITERATIONS * (targetMillis * 1_000_000L) / elapsed;
+        iterations = Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+        // Round to a tidy number so the stored value reads as a setting, not a measurement
+        return (int) (iterations / 1000 * 1000);
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /** Hashes the password with a fresh salt at this hasher's cost. */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = derive(password, salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Checks a password against a stored value. Anything that isn't a hash in
+     * our format is treated as a legacy plain-text password.
+     */
+    public static boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        ParsedHash parsed = ParsedHash.parse(stored);
+        if (parsed == null) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        return MessageDigest.isEqual(parsed.hash, derive(password, parsed.salt, parsed.iterations));
+    }
+
+    /** True if the stored value is plain text or was hashed at a lower cost than this hasher's. */
+    public boolean needsRehash(String stored) {
+        ParsedHash parsed = stored == null ? null : ParsedHash.parse(stored);
+        return parsed == null || parsed.iterations < iterations;
+    }
+
+    static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            // Part of every supported Android version since API 26
+            throw new IllegalStateException(ALGORITHM + " unavailable", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static class ParsedHash {
+        final int iterations;
+        final byte[] salt;
+        final byte[] hash;
+
+        ParsedHash(int iterations, byte[] salt, byte[] hash) {
+            this.iterations = iterations;
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        static ParsedHash parse(String stored) {
+            String[] parts = stored.split("\\$");
+            if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+                return null;
+            }
+            try {
+                int iterations = Integer.parseInt(parts[1]);
+                if (iterations <= 0) {
+                    return null;
+                }
+                Base64.Decoder decoder = Base64.getDecoder();
+                return new ParsedHash(iterations, decoder.decode(parts[2]), decoder.decode(parts[3]));
+            } catch (IllegalArgumentException e) {
+                // Covers NumberFormatException and malformed Base64
+                return null;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.notes;
 import android.content.Intent;
 import android.os.Bundle;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ProgressBar;
@@ -16,10 +17,13 @@ import com.google.android.material.textfield.TextInputLayout;
 
 public class RegisterActivity extends AppCompatActivity {
 
+    private static final String TAG = "RegisterActivity";
+
     private TextInputEditText etUsername, etPassword, etConfirmPassword;
     private TextInputLayout usernameLayout, passwordLayout, confirmPasswordLayout;
     private ProgressBar progressBar;
-    private DatabaseHelper databaseHelper;
+    private AuthService authService;
+    private DbDispatcher.Scope dbScope;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -37,8 +41,9 @@ public class RegisterActivity extends AppCompatActivity {
         Button btnRegister = findViewById(R.id.btnRegister);
         TextView tvLogin = findViewById(R.id.tvLogin);
 
-        // Initialize database helper
-        databaseHelper = new DatabaseHelper(this);
+        // Initialize auth service
+        authService = AuthService.getInstance(this);
+        dbScope = DbDispatcher.getInstance().newScope();
 
         // Set click listener for register button
         btnRegister.setOnClickListener(new View.OnClickListener() {
@@ -99,11 +104,8 @@ public class RegisterActivity extends AppCompatActivity {
             usernameLayout.setError(getString(R.string.error_field_required));
             focusView = usernameLayout;
             cancel = true;
-        } else if (databaseHelper.isUsernameTaken(username)) {
-            usernameLayout.setError(getString(R.string.error_username_taken));
-            focusView = usernameLayout;
-            cancel = true;
         }
+        // Whether the username is taken is only known once the insert runs
 
         if (cancel) {
             // There was an error; don't attempt registration and focus the first
@@ -123,63 +125,50 @@ public class RegisterActivity extends AppCompatActivity {
     }
 
     private void performRegistration(final String username, final String password) {
-        // This is where you would perform the actual registration
-        // For now, we'll simulate network access.
-        new android.os.Handler().postDelayed(
-                new Runnable() {
-                    @Override
-                    public void run() {
-                        // Create new user with plain text password
-                        User newUser = new User(username, password);
-                        long userId = databaseHelper.addUser(newUser);
-                        
-                        if (userId == -1) {
-                            runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    showProgress(false);
-                                    Toast.makeText(RegisterActivity.this, 
-                                            "Username already exists. Please choose a different one.", 
-                                            Toast.LENGTH_SHORT).show();
-                                }
-                            });
-                            return;
-                        }
-                        
-                        runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                showProgress(false);
-                                
-                                if (userId != -1) {
-                                    // Registration successful
-                                    Toast.makeText(RegisterActivity.this, 
-                                            "Registration successful!", 
-                                            Toast.LENGTH_SHORT).show();
-                                    
-                                    // Automatically log in the user
-                                    User user = databaseHelper.getUser(username);
-                                    if (user != null) {
-                                        // Save user session
-                                        SessionManager sessionManager = new SessionManager(RegisterActivity.this);
-                                        sessionManager.createLoginSession(user.getId(), user.getUsername());
-                                        
-                                        // Launch main activity
-                                        Intent intent = new Intent(RegisterActivity.this, MainActivity.class);
-                                        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                                        startActivity(intent);
-                                        finish();
-                                    }
-                                } else {
-                                    // Registration failed
-                                    Toast.makeText(RegisterActivity.this, 
-                                            "Registration failed. Please try again.", 
-                                            Toast.LENGTH_SHORT).show();
-                                }
-                            }
-                        });
-                    }
-                }, 1500);
+        final long startedAt = AuthService.beginFlow();
+        authService.register(dbScope, username, password, new DbDispatcher.Callback<User>() {
+            @Override
+            public void onSuccess(User user) {
+                showProgress(false);
+
+                if (user == null) {
+                    usernameLayout.setError(getString(R.string.error_username_taken));
+                    usernameLayout.requestFocus();
+                    return;
+                }
+
+                // Registration successful
+                Toast.makeText(RegisterActivity.this,
+                        "Registration successful!",
+                        Toast.LENGTH_SHORT).show();
+
+                // Automatically log in the user
+                SessionManager.getInstance(RegisterActivity.this)
+                        .createLoginSession(user.getId(), user.getUsername());
+
+                // Launch main activity
+                Intent intent = new Intent(RegisterActivity.this, MainActivity.class);
+                intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                AuthService.attachFlow(intent, AuthService.FLOW_REGISTER, startedAt);
+                startActivity(intent);
+                finish();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Registration error", e);
+                showProgress(false);
+                Toast.makeText(RegisterActivity.this,
+                        "Registration failed. Please try again.",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        dbScope.cancel();
+        super.onDestroy();
     }
 
     private void showProgress(boolean show) {
@@ -0,0 +1,167 @@
+package com.example.notes;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link SyncRemote} over the sync server's REST API. Everything lives under
+ * the account's base URL, e.g. {@code https://sync.example.com/v1/accounts/alice/}:
+ *
+ * <ul>
+ * <li>{@code POST changes} with {@code {"device":"…","changes":[…]}} stores
+ * changes; any 2xx response means they were stored.</li>
+ * <li>{@code GET changes?since=…&limit=…&device=…} answers
+ * {@code {"changes":[…],"cursor":"…","hasMore":false}}. {@code since} is left
+ * out for the first page.</li>
+ * </ul>
+ *
+ * A change is {@code {"id":"…","heading":"…","details":"…","deleted":false,
+ * "createdAt":0,"changedAt":0,"device":"…"}}; deleted notes carry no heading
+ * or details. Calls block, so make them off the main thread.
+ */
+public class RestSyncRemote implements SyncRemote {
+
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private static final String KEY_CHANGES = "changes";
+    private static final String KEY_CURSOR = "cursor";
+    private static final String KEY_HAS_MORE = "hasMore";
+    private static final String KEY_DEVICE = "device";
+    private static final String KEY_ID = "id";
+    private static final String KEY_HEADING = "heading";
+    private static final String KEY_DETAILS = "details";
+    private static final String KEY_DELETED = "deleted";
+    private static final String KEY_CREATED_AT = "createdAt";
+    private static final String KEY_CHANGED_AT = "changedAt";
+
+    private final URL changesUrl;
+
+    /** @param baseUrl the account's base URL, ending in a slash */
+    public RestSyncRemote(String baseUrl) throws IOException {
+        this.changesUrl = new URL(new URL(baseUrl), KEY_CHANGES);
+    }
+
+    @Override
+    public void push(String deviceId, List<SyncChange> changes) throws IOException {
+        HttpURLConnection connection = open(changesUrl);
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(0);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            // Written as it goes rather than built as one JSONObject; bodies can be long
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    connection.getOutputStream(), StandardCharsets.UTF_8))) {
+                writer.write("{\"" + KEY_DEVICE + "\":" + JSONObject.quote(deviceId) + ",\"" + KEY_CHANGES + "\":[");
+                for (int i = 0; i < changes.size(); i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writeChange(writer, changes.get(i), deviceId);
+                }
+                writer.write("]}");
+            }
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new IOException("Sync upload failed with HTTP " + status);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    @Override
+    public Page pull(String cursor, String deviceId, int limit) throws IOException {
+        StringBuilder query = new StringBuilder(KEY_CHANGES).append("?limit=").append(limit)
+                .append("&device=").append(URLEncoder.encode(deviceId, "UTF-8"));
+        if (cursor != null) {
+            query.append("&since=").append(URLEncoder.encode(cursor, "UTF-8"));
+        }
+        HttpURLConnection connection = open(new URL(changesUrl, query.toString()));
+        String body;
+        try {
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new IOException("Sync download failed with HTTP " + status);
+            }
+            body = readFully(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+
+        try {
+            JSONObject json = new JSONObject(body);
+            JSONArray array = json.getJSONArray(KEY_CHANGES);
+            List<SyncChange> changes = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                changes.add(parseChange(array.getJSONObject(i)));
+            }
+            return new Page(changes, json.getString(KEY_CURSOR), json.optBoolean(KEY_HAS_MORE, false));
+        } catch (JSONException e) {
+            throw new IOException("Malformed sync page", e);
+        }
+    }
+
+    private static HttpURLConnection open(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestProperty("Accept", "application/json");
+        return connection;
+    }
+
+    private static void writeChange(Writer writer, SyncChange change, String deviceId) throws IOException {
+        writer.write("{\"" + KEY_ID + "\":" + JSONObject.quote(change.getSyncId()));
+        writer.write(",\"" + KEY_DELETED + "\":" + change.isDeleted());
+        writer.write(",\"" + KEY_CREATED_AT + "\":" + change.getCreatedAt());
+        writer.write(",\"" + KEY_CHANGED_AT + "\":" + change.getChangedAt());
+        writer.write(",\"" + KEY_DEVICE + "\":" + JSONObject.quote(deviceId));
+        if (!change.isDeleted()) {
+            writer.write(",\"" + KEY_HEADING + "\":");
+            writer.write(change.getHeading() == null ? "null" : JSONObject.quote(change.getHeading()));
+            writer.write(",\"" + KEY_DETAILS + "\":");
+            writer.write(change.getDetails() == null ? "null" : JSONObject.quote(change.getDetails()));
+        }
+        writer.write('}');
+    }
+
+    private static SyncChange parseChange(JSONObject json) throws JSONException {
+        boolean deleted = json.optBoolean(KEY_DELETED, false);
+        return new SyncChange(
+                json.getString(KEY_ID),
+                deleted || json.isNull(KEY_HEADING) ? null : json.getString(KEY_HEADING),
+                deleted || json.isNull(KEY_DETAILS) ? null : json.getString(KEY_DETAILS),
+                deleted,
+                json.optLong(KEY_CREATED_AT, 0),
+                json.getLong(KEY_CHANGED_AT),
+                json.isNull(KEY_DEVICE) ? null : json.getString(KEY_DEVICE),
+                -1);
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
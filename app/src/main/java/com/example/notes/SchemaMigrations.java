@@ -0,0 +1,404 @@
+package com.example.notes;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ordered, data-preserving schema migrations for {@link DatabaseHelper}.
+ *
+ * Each step moves the schema up one version and runs in its own transaction.
+ * Steps only change the schema and must stay quick. A step that needs to
+ * touch every row queues a named {@link Backfill} instead. The backfill then
+ * runs in small batches after the database is open, each batch in its own
+ * transaction, and its progress is stored in {@link #TABLE_PENDING_BACKFILLS}.
+ * An interrupted backfill therefore resumes where it stopped.
+ *
+ * Steps describe the schema as it was at their version. Once released, a
+ * step must not be edited; add a new step instead.
+ */
+final class SchemaMigrations {
+
+    private static final String TAG = "SchemaMigrations";
+
+    // Oldest version with a known schema; anything older is recreated from scratch
+    static final int OLDEST_MIGRATABLE_VERSION = 2;
+
+    static final String TABLE_PENDING_BACKFILLS = "pending_backfills";
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_LAST_ID = "last_id";
+
+    static final String BACKFILL_SEARCH_INDEX = "search_index";
+    static final String BACKFILL_NOTE_PREVIEWS = "note_previews";
+    static final String BACKFILL_SYNC_IDS = "sync_ids";
+
+    /** Moves the schema from {@code toVersion - 1} to {@code toVersion}. */
+    abstract static class Migration {
+        final int toVersion;
+
+        Migration(int toVersion) {
+            this.toVersion = toVersion;
+        }
+
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    /** Row-by-row work too large to run inside an upgrade. */
+    interface Backfill {
+        /**
+         * Processes up to {@code batchSize} notes with an id above {@code afterId}.
+         *
+         * @param shownChanged collects the notes whose list rows changed, for publishing
+         * @return the last id processed, or -1 if there was nothing left
+         */
+        long runBatch(SQLiteDatabase db, long afterId, int batchSize, List<Long> shownChanged);
+    }
+
+    private static final Migration[] MIGRATIONS = {
+            new Migration(3) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    // New and edited notes are indexed by the triggers from here on; existing
+                    // ones by a backfill. Search scans the notes table until that finishes.
+                    DatabaseHelper.createSearchIndex(db);
+                    enqueueBackfill(db, BACKFILL_SEARCH_INDEX);
+                }
+            },
+            new Migration(4) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + DatabaseHelper.TABLE_NOTES
+                            + " ADD COLUMN " + DatabaseHelper.COLUMN_PREVIEW + " TEXT");
+                    enqueueBackfill(db, BACKFILL_NOTE_PREVIEWS);
+                }
+            },
+            new Migration(5) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_notes_user_id ON " + DatabaseHelper.TABLE_NOTES
+                            + "(" + DatabaseHelper.COLUMN_USER_ID + ", " + DatabaseHelper.COLUMN_ID + ")");
+                }
+            },
+            new Migration(6) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    // Existing bodies stay inline with no chunks, which is still a valid layout
+                    db.execSQL("ALTER TABLE " + NoteSql.TABLE_NOTES + " ADD COLUMN "
+                            + NoteSql.COLUMN_CHUNK_COUNT + " INTEGER NOT NULL DEFAULT 0");
+                    db.execSQL("CREATE TABLE " + NoteSql.TABLE_NOTE_CHUNKS + "("
+                            + NoteSql.COLUMN_NOTE_ID + " INTEGER NOT NULL,"
+                            + NoteSql.COLUMN_SEQ + " INTEGER NOT NULL,"
+                            + NoteSql.COLUMN_BODY + " TEXT NOT NULL,"
+                            + "PRIMARY KEY (" + NoteSql.COLUMN_NOTE_ID + ", " + NoteSql.COLUMN_SEQ + ")"
+                            + ")");
+                    db.execSQL("CREATE TRIGGER note_chunks_ad AFTER DELETE ON " + NoteSql.TABLE_NOTES + " BEGIN"
+                            + " DELETE FROM " + NoteSql.TABLE_NOTE_CHUNKS
+                            + " WHERE " + NoteSql.COLUMN_NOTE_ID + " = old." + NoteSql.COLUMN_ID + ";"
+                            + " END");
+                }
+            },
+            new Migration(7) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    // Every existing note is live, which is what a NULL deleted_at means
+                    db.execSQL("ALTER TABLE " + NoteSql.TABLE_NOTES + " ADD COLUMN "
+                            + NoteSql.COLUMN_DELETED_AT + " INTEGER");
+                    // The list queries now go through the partial index over live notes
+                    db.execSQL("DROP INDEX IF EXISTS idx_notes_user_id");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_notes_live ON " + NoteSql.TABLE_NOTES
+                            + "(" + NoteSql.COLUMN_USER_ID + ", " + NoteSql.COLUMN_ID + ")"
+                            + " WHERE " + NoteSql.COLUMN_DELETED_AT + " IS NULL");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_notes_trash ON " + NoteSql.TABLE_NOTES
+                            + "(" + NoteSql.COLUMN_USER_ID + ", " + NoteSql.COLUMN_DELETED_AT + ")"
+                            + " WHERE " + NoteSql.COLUMN_DELETED_AT + " IS NOT NULL");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_notes_purge ON " + NoteSql.TABLE_NOTES
+                            + "(" + NoteSql.COLUMN_DELETED_AT + ")"
+                            + " WHERE " + NoteSql.COLUMN_DELETED_AT + " IS NOT NULL");
+                }
+            },
+            new Migration(8) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    // A constant default needs no row rewrite. There is no record of when existing
+                    // notes were written, so they keep 0 and sort by id among themselves.
+                    db.execSQL("ALTER TABLE " + NoteSql.TABLE_NOTES + " ADD COLUMN "
+                            + NoteSql.COLUMN_CREATED_AT + " INTEGER NOT NULL DEFAULT 0");
+                    db.execSQL("ALTER TABLE " + NoteSql.TABLE_NOTES + " ADD COLUMN "
+                            + NoteSql.COLUMN_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_notes_updated ON " + NoteSql.TABLE_NOTES
+                            + "(" + NoteSql.COLUMN_USER_ID + ", " + NoteSql.COLUMN_UPDATED_AT + ", "
+                            + NoteSql.COLUMN_ID + ")"
+                            + " WHERE " + NoteSql.COLUMN_DELETED_AT + " IS NULL");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_notes_title ON " + NoteSql.TABLE_NOTES
+                            + "(" + NoteSql.COLUMN_USER_ID + ", ifnull(" + NoteSql.COLUMN_HEADING
+                            + ", '') COLLATE NOCASE, " + NoteSql.COLUMN_ID + ")"
+                            + " WHERE " + NoteSql.COLUMN_DELETED_AT + " IS NULL");
+                }
+            },
+            new Migration(9) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    // Existing notes get their sync ids, and a place in the upload queue, from a backfill
+                    db.execSQL("ALTER TABLE " + NoteSql.TABLE_NOTES + " ADD COLUMN "
+                            + NoteSql.COLUMN_SYNC_ID + " TEXT");
+                    db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS idx_notes_sync ON " + NoteSql.TABLE_NOTES
+                            + "(" + NoteSql.COLUMN_USER_ID + ", " + NoteSql.COLUMN_SYNC_ID + ")");
+                    db.execSQL("CREATE TABLE " + NoteSql.TABLE_SYNC_LOG + "("
+                            + NoteSql.COLUMN_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + NoteSql.COLUMN_NOTE_ID + " INTEGER NOT NULL UNIQUE,"
+                            + NoteSql.COLUMN_USER_ID + " INTEGER NOT NULL,"
+                            + NoteSql.COLUMN_SYNC_ID + " TEXT NOT NULL,"
+                            + NoteSql.COLUMN_CHANGED_AT + " INTEGER NOT NULL"
+                            + ")");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_sync_log_user ON " + NoteSql.TABLE_SYNC_LOG
+                            + "(" + NoteSql.COLUMN_USER_ID + ", " + NoteSql.COLUMN_SEQ + ")");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_sync_log_sync ON " + NoteSql.TABLE_SYNC_LOG
+                            + "(" + NoteSql.COLUMN_USER_ID + ", " + NoteSql.COLUMN_SYNC_ID + ")");
+                    db.execSQL("CREATE TABLE " + NoteSql.TABLE_SYNC_STATE + "("
+                            + NoteSql.COLUMN_USER_ID + " INTEGER PRIMARY KEY,"
+                            + NoteSql.COLUMN_REMOTE_CURSOR + " TEXT"
+                            + ")");
+                    enqueueBackfill(db, BACKFILL_SYNC_IDS);
+                }
+            },
+    };
+
+    // Indexes the notes that existed before version 3, skipping any the triggers indexed since
+    private static final Backfill SEARCH_INDEX = new Backfill() {
+        @Override
+        public long runBatch(SQLiteDatabase db, long afterId, int batchSize, List<Long> shownChanged) {
+            String unindexed = " FROM " + NoteSql.TABLE_NOTES
+                    + " WHERE " + NoteSql.COLUMN_ID + " > ?"
+                    + " AND NOT EXISTS (SELECT 1 FROM " + NoteSql.TABLE_NOTES_FTS_DOCSIZE
+                    + " WHERE docid = " + NoteSql.TABLE_NOTES + "." + NoteSql.COLUMN_ID + ")";
+            String[] afterIdArg = {String.valueOf(afterId)};
+            long lastId = DatabaseUtils.longForQuery(db, "SELECT ifnull(max(" + NoteSql.COLUMN_ID + "), -1)"
+                    + " FROM (SELECT " + NoteSql.COLUMN_ID + unindexed
+                    + " ORDER BY " + NoteSql.COLUMN_ID + " LIMIT " + batchSize + ")", afterIdArg);
+            if (lastId == -1) {
+                return -1;
+            }
+            // The text goes from the notes table to the index without a round trip through Java
+            db.execSQL("INSERT INTO " + NoteSql.TABLE_NOTES_FTS
+                    + "(docid, " + NoteSql.COLUMN_HEADING + ", " + NoteSql.COLUMN_DETAILS + ")"
+                    + " SELECT " + NoteSql.COLUMN_ID + ", " + NoteSql.COLUMN_HEADING + ", " + NoteSql.COLUMN_DETAILS
+                    + unindexed + " AND " + NoteSql.COLUMN_ID + " <= ?", new Object[]{afterId, lastId});
+            return lastId;
+        }
+    };
+
+    // Fills the preview column added in version 4 using the same code as new writes
+    private static final Backfill NOTE_PREVIEWS = new Backfill() {
+        @Override
+        public long runBatch(SQLiteDatabase db, long afterId, int batchSize, List<Long> shownChanged) {
+            SQLiteStatement update = db.compileStatement("UPDATE " + DatabaseHelper.TABLE_NOTES
+                    + " SET " + DatabaseHelper.COLUMN_PREVIEW + " = ?"
+                    + " WHERE " + DatabaseHelper.COLUMN_ID + " = ?"
+                    + " AND " + DatabaseHelper.COLUMN_PREVIEW + " IS NULL");
+            long lastId = -1;
+            try (Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.COLUMN_ID + ", " + DatabaseHelper.COLUMN_DETAILS
+                            + " FROM " + DatabaseHelper.TABLE_NOTES
+                            + " WHERE " + DatabaseHelper.COLUMN_ID + " > ?"
+                            + " AND " + DatabaseHelper.COLUMN_PREVIEW + " IS NULL"
+                            + " ORDER BY " + DatabaseHelper.COLUMN_ID
+                            + " LIMIT " + batchSize,
+                    new String[]{String.valueOf(afterId)})) {
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    String preview = NoteSummary.makePreview(cursor.getString(1));
+                    if (preview == null) {
+                        continue;
+                    }
+                    update.bindString(1, preview);
+                    update.bindLong(2, lastId);
+                    if (update.executeUpdateDelete() > 0) {
+                        shownChanged.add(lastId);
+                    }
+                }
+            } finally {
+                update.close();
+            }
+            return lastId;
+        }
+    };
+
+    // Names every note from before version 9 for sync and queues it for its first upload.
+    // Until a note is reached here, writes to it skip the log; this logs its latest state anyway.
+    private static final Backfill SYNC_IDS = new Backfill() {
+        @Override
+        public long runBatch(SQLiteDatabase db, long afterId, int batchSize, List<Long> shownChanged) {
+            SQLiteStatement assign = db.compileStatement("UPDATE " + NoteSql.TABLE_NOTES
+                    + " SET " + NoteSql.COLUMN_SYNC_ID + " = ?"
+                    + " WHERE " + NoteSql.COLUMN_ID + " = ?"
+                    + " AND " + NoteSql.COLUMN_SYNC_ID + " IS NULL");
+            SQLiteStatement log = db.compileStatement(NoteSql.SQL_LOG_CHANGE);
+            long lastId = -1;
+            try (Cursor cursor = db.rawQuery("SELECT " + NoteSql.COLUMN_ID + ", "
+                            + "max(" + NoteSql.COLUMN_UPDATED_AT + ", ifnull(" + NoteSql.COLUMN_DELETED_AT + ", 0))"
+                            + " FROM " + NoteSql.TABLE_NOTES
+                            + " WHERE " + NoteSql.COLUMN_ID + " > ?"
+                            + " AND " + NoteSql.COLUMN_SYNC_ID + " IS NULL"
+                            + " ORDER BY " + NoteSql.COLUMN_ID
+                            + " LIMIT " + batchSize,
+                    new String[]{String.valueOf(afterId)})) {
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    assign.bindString(1, UUID.randomUUID().toString());
+                    assign.bindLong(2, lastId);
+                    assign.executeUpdateDelete();
+                    log.bindLong(1, cursor.getLong(1));
+                    log.bindLong(2, lastId);
+                    log.executeInsert();
+                }
+            } finally {
+                assign.close();
+                log.close();
+            }
+            return lastId;
+        }
+    };
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * Runs every step after {@code oldVersion} up to and including
+     * {@code newVersion}, each in its own nested transaction.
+     *
+     * @throws IllegalStateException if a step is missing
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Migration step = findStep(version);
+            if (step == null) {
+                throw new IllegalStateException("No migration to version " + version);
+            }
+            long start = System.nanoTime();
+            db.beginTransaction();
+            try {
+                step.migrate(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (DbTrace.ENABLED) {
+                Log.d(TAG, "Migrated to version " + version + " in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            }
+        }
+    }
+
+    private static Migration findStep(int toVersion) {
+        for (Migration step : MIGRATIONS) {
+            if (step.toVersion == toVersion) {
+                return step;
+            }
+        }
+        return null;
+    }
+
+    /** Creates the oldest schema migrations start from. Also used by the migration tests. */
+    static void createVersion2Schema(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + DatabaseHelper.TABLE_USERS + "("
+                + DatabaseHelper.COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + DatabaseHelper.COLUMN_USERNAME + " TEXT UNIQUE,"
+                + DatabaseHelper.COLUMN_PASSWORD + " TEXT"
+                + ")");
+        db.execSQL("CREATE TABLE " + DatabaseHelper.TABLE_NOTES + "("
+                + DatabaseHelper.COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + DatabaseHelper.COLUMN_HEADING + " TEXT,"
+                + DatabaseHelper.COLUMN_DETAILS + " TEXT,"
+                + DatabaseHelper.COLUMN_USER_ID + " INTEGER,"
+                + "FOREIGN KEY(" + DatabaseHelper.COLUMN_USER_ID + ") REFERENCES "
+                + DatabaseHelper.TABLE_USERS + "(" + DatabaseHelper.COLUMN_ID + ")"
+                + ")");
+    }
+
+    private static void enqueueBackfill(SQLiteDatabase db, String name) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_PENDING_BACKFILLS + "("
+                + COLUMN_NAME + " TEXT PRIMARY KEY,"
+                + COLUMN_LAST_ID + " INTEGER NOT NULL DEFAULT -1"
+                + ")");
+        db.execSQL("INSERT OR REPLACE INTO " + TABLE_PENDING_BACKFILLS + "(" + COLUMN_NAME + ") VALUES (?)",
+                new Object[]{name});
+    }
+
+    /**
+     * Runs one batch of the oldest pending backfill in its own transaction and
+     * records how far it got.
+     *
+     * @param shownChanged collects the notes whose list rows the batch changed;
+     *                     publish them once this returns and the batch is committed
+     * @return true if backfill work remains
+     */
+    static boolean runBackfillBatch(SQLiteDatabase db, int batchSize, List<Long> shownChanged) {
+        if (!hasBackfillTable(db)) {
+            return false;
+        }
+        db.beginTransaction();
+        try {
+            String name;
+            long afterId;
+            try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_NAME + ", " + COLUMN_LAST_ID
+                    + " FROM " + TABLE_PENDING_BACKFILLS + " ORDER BY rowid LIMIT 1", null)) {
+                if (!cursor.moveToFirst()) {
+                    db.setTransactionSuccessful();
+                    return false;
+                }
+                name = cursor.getString(0);
+                afterId = cursor.getLong(1);
+            }
+
+            Backfill backfill = findBackfill(name);
+            long lastId = backfill == null ? -1 : backfill.runBatch(db, afterId, batchSize, shownChanged);
+            if (lastId == -1) {
+                db.execSQL("DELETE FROM " + TABLE_PENDING_BACKFILLS + " WHERE " + COLUMN_NAME + " = ?",
+                        new Object[]{name});
+                if (DbTrace.ENABLED) {
+                    Log.d(TAG, "Backfill " + name + " finished");
+                }
+            } else {
+                db.execSQL("UPDATE " + TABLE_PENDING_BACKFILLS + " SET " + COLUMN_LAST_ID + " = ?"
+                        + " WHERE " + COLUMN_NAME + " = ?", new Object[]{lastId, name});
+            }
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Whether the named backfill was queued by an upgrade and has not finished yet. */
+    static boolean isBackfillPending(SQLiteDatabase db, String name) {
+        if (!hasBackfillTable(db)) {
+            return false;
+        }
+        return DatabaseUtils.longForQuery(db, "SELECT count(*) FROM " + TABLE_PENDING_BACKFILLS
+                + " WHERE " + COLUMN_NAME + " = ?", new String[]{name}) > 0;
+    }
+
+    // The table only exists once an upgrade has queued something
+    private static boolean hasBackfillTable(SQLiteDatabase db) {
+        return DatabaseUtils.longForQuery(db, "SELECT count(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[]{TABLE_PENDING_BACKFILLS}) > 0;
+    }
+
+    private static Backfill findBackfill(String name) {
+        if (BACKFILL_SEARCH_INDEX.equals(name)) {
+            return SEARCH_INDEX;
+        }
+        if (BACKFILL_NOTE_PREVIEWS.equals(name)) {
+            return NOTE_PREVIEWS;
+        }
+        if (BACKFILL_SYNC_IDS.equals(name)) {
+            return SYNC_IDS;
+        }
+        Log.w(TAG, "Dropping unknown backfill " + name);
+        return null;
+    }
+}
@@ -3,23 +3,56 @@ package com.example.notes;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.content.SharedPreferences.Editor;
 
 import java.util.HashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * App-wide login state.
+ *
+ * The state lives in memory as an immutable {@link Session} snapshot that is
+ * read from SharedPreferences once per process. Reads such as
+ * {@link #isLoggedIn()} and {@link #getUserId()} are a field access: no I/O
+ * and no allocation. Changes replace the snapshot, reach SharedPreferences
+ * through an asynchronous {@code apply()}, and are announced to registered
+ * listeners.
+ */
 public class SessionManager {
-    // Shared Preferences
-    private final SharedPreferences pref;
-    
-    // Editor for Shared preferences
-    private final Editor editor;
-    
-    // Context
-    private final Context _context;
-    
-    // Shared pref mode
-    private final int PRIVATE_MODE = 0;
-    
+
+    /** Told about every login and logout, on the thread that made the change. */
+    public interface Listener {
+        void onSessionChanged(Session session);
+    }
+
+    /** An immutable view of the login state. */
+    public static final class Session {
+        static final Session LOGGED_OUT = new Session(false, -1, null);
+
+        private final boolean loggedIn;
+        private final long userId;
+        private final String username;
+
+        Session(boolean loggedIn, long userId, String username) {
+            this.loggedIn = loggedIn;
+            this.userId = userId;
+            this.username = username;
+        }
+
+        public boolean isLoggedIn() {
+            return loggedIn;
+        }
+
+        /** @return the user ID, or -1 if not logged in */
+        public long getUserId() {
+            return userId;
+        }
+
+        /** @return the username, or null if not logged in */
+        public String getUsername() {
+            return username;
+        }
+    }
+
     // Sharedpref file name
     private static final String PREF_NAME = "AndroidHivePref";
     
@@ -32,27 +65,59 @@ public class SessionManager {
     
     // Email address (make variable public to access from outside)
     public static final String KEY_EMAIL = "email";
-    
-    // Constructor
-    public SessionManager(Context context) {
+
+    private static SessionManager instance;
+
+    // Application context
+    private final Context _context;
+
+    // Shared Preferences
+    private final SharedPreferences pref;
+
+    private volatile Session session;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public static synchronized SessionManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new SessionManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    // Constructor; reads the stored session once
+    SessionManager(Context context) {
         this._context = context;
-        pref = _context.getSharedPreferences(PREF_NAME, PRIVATE_MODE);
-        editor = pref.edit();
+        pref = _context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        session = pref.getBoolean(IS_LOGIN, false)
+                ? new Session(true, pref.getLong(KEY_ID, -1), pref.getString(KEY_NAME, null))
+                : Session.LOGGED_OUT;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** The current login state. */
+    public Session getSession() {
+        return session;
     }
     
     /**
      * Create login session
      * */
     public void createLoginSession(long id, String name) {
-        // Storing login value as TRUE
-        editor.putBoolean(IS_LOGIN, true);
-        
-        // Storing id and name in pref
-        editor.putLong(KEY_ID, id);
-        editor.putString(KEY_NAME, name);
-        
-        // commit changes
-        editor.apply();
+        update(new Session(true, id, name));
+
+        // Storing login value as TRUE, id and name in pref; written in the background
+        pref.edit()
+                .putBoolean(IS_LOGIN, true)
+                .putLong(KEY_ID, id)
+                .putString(KEY_NAME, name)
+                .apply();
     }   
     
     /**
@@ -77,27 +142,37 @@ public class SessionManager {
     }
     
     /**
-     * Get stored session data
+     * Get stored session data. Allocates a map on every call; prefer
+     * {@link #getSession()}.
      * */
     public HashMap<String, String> getUserDetails() {
+        Session current = session;
         HashMap<String, String> user = new HashMap<>();
         // user id
-        user.put(KEY_ID, String.valueOf(pref.getLong(KEY_ID, 0)));
+        user.put(KEY_ID, String.valueOf(current.getUserId()));
         
         // user name
-        user.put(KEY_NAME, pref.getString(KEY_NAME, null));
+        user.put(KEY_NAME, current.getUsername());
         
         // return user
         return user;
     }
+
+    /**
+     * Clear session details without leaving the current screen
+     * */
+    public void logout() {
+        update(Session.LOGGED_OUT);
+
+        // Clearing all data from Shared Preferences
+        pref.edit().clear().apply();
+    }
     
     /**
      * Clear session details and redirect to login screen
      * */
     public void logoutUser() {
-        // Clearing all data from Shared Preferences
-        editor.clear();
-        editor.apply();
+        logout();
         
         // After logout redirect user to Login Activity
         Intent i = new Intent(_context, LoginActivity.class);
@@ -113,7 +188,7 @@ public class SessionManager {
      * @return username or null if not logged in
      */
     public String getUsername() {
-        return pref.getString(KEY_NAME, null);
+        return session.getUsername();
     }
     
     /**
@@ -121,7 +196,7 @@ public class SessionManager {
      * @return user ID or -1 if not logged in
      */
     public long getUserId() {
-        return pref.getLong(KEY_ID, -1);
+        return session.getUserId();
     }
     
     /**
@@ -129,6 +204,13 @@ public class SessionManager {
      * @return boolean - true if user is logged in, false otherwise
      */
     public boolean isLoggedIn() {
-        return pref.getBoolean(IS_LOGIN, false);
+        return session.isLoggedIn();
+    }
+
+    private void update(Session newSession) {
+        session = newSession;
+        for (Listener listener : listeners) {
+            listener.onSessionChanged(newSession);
+        }
     }
 }
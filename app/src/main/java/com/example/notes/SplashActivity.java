@@ -1,35 +1,148 @@
 package com.example.notes;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
+import android.util.Log;
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+
 public class SplashActivity extends AppCompatActivity {
-    private static final int SPLASH_DELAY = 1000; // 1 second
+
+    private static final String TAG = "SplashActivity";
+
+    private DbDispatcher.Scope dbScope;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        StartupTrace.begin();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_splash);
 
-        new Handler().postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                // Check if user is already logged in
-                SessionManager session = new SessionManager(SplashActivity.this);
-                
-                if (session.isLoggedIn()) {
-                    // User is logged in, redirect to MainActivity
-                    Intent intent = new Intent(SplashActivity.this, MainActivity.class);
-                    startActivity(intent);
-                } else {
-                    // User is not logged in, redirect to LoginActivity
-                    Intent intent = new Intent(SplashActivity.this, LoginActivity.class);
-                    startActivity(intent);
+        final DatabaseHelper databaseHelper = DatabaseHelper.getInstance(this);
+        DbDispatcher dispatcher = DbDispatcher.getInstance();
+        dbScope = dispatcher.newScope();
+
+        // Check if user is already logged in
+        SessionManager.Session session = SessionManager.getInstance(this).getSession();
+        if (session.isLoggedIn()) {
+            // Open the database and load the first page while the splash is drawn;
+            // the splash stays up exactly as long as that takes
+            prefetchFirstPage(databaseHelper, session.getUserId());
+        } else {
+            // Nothing to show yet, but opening the database now saves the login screen the wait
+            dispatcher.read(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    databaseHelper.getReadableDatabase();
+                    StartupTrace.mark(StartupTrace.DB_OPEN);
+                    return null;
+                }
+            }, null);
+            route(LoginActivity.class);
+        }
+
+        // Opening the database here runs any upgrade off the main thread
+        runBackfills(databaseHelper, dispatcher);
+        // Expired trash goes in bounded batches so other writes interleave
+        purgeExpiredTrash(databaseHelper, dispatcher);
+    }
+
+    private void prefetchFirstPage(final DatabaseHelper databaseHelper, final long userId) {
+        final Context appContext = getApplicationContext();
+        dbScope.read(new Callable<List<NoteSummary>>() {
+            @Override
+            public List<NoteSummary> call() {
+                databaseHelper.getReadableDatabase();
+                StartupTrace.mark(StartupTrace.DB_OPEN);
+                // Read here rather than on the main thread; it is the preferences file's first load
+                int sortOrder = MainActivity.savedSortOrder(appContext);
+                FirstPagePrefetch.watch(databaseHelper.getChangeBus());
+                List<NoteSummary> firstPage = databaseHelper.getNotesPage(userId, sortOrder, null,
+                        MainActivity.PAGE_SIZE);
+                StartupTrace.mark(StartupTrace.FIRST_PAGE_LOADED);
+                FirstPagePrefetch.put(userId, sortOrder, firstPage);
+                return firstPage;
+            }
+        }, new DbDispatcher.Callback<List<NoteSummary>>() {
+            @Override
+            public void onSuccess(List<NoteSummary> firstPage) {
+                route(MainActivity.class);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // MainActivity loads the page itself and reports the error if it persists
+                Log.e(TAG, "Error prefetching notes", e);
+                route(MainActivity.class);
+            }
+        });
+    }
+
+    private void route(Class<?> activity) {
+        StartupTrace.mark(StartupTrace.SPLASH_ROUTED);
+        if (activity != MainActivity.class) {
+            // Time spent typing credentials isn't startup time
+            StartupTrace.finish();
+        }
+        startActivity(new Intent(this, activity));
+        finish();
+    }
+
+    @Override
+    protected void onDestroy() {
+        dbScope.cancel();
+        super.onDestroy();
+    }
+
+    /**
+     * Works through post-upgrade backfills one batch per write, so other
+     * writes can interleave with them instead of waiting for the whole thing.
+     */
+    private static void runBackfills(final DatabaseHelper databaseHelper, final DbDispatcher dispatcher) {
+        dispatcher.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return databaseHelper.runBackfillBatch();
+            }
+        }, new DbDispatcher.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean moreWork) {
+                if (moreWork) {
+                    runBackfills(databaseHelper, dispatcher);
                 }
-                finish();
             }
-        }, SPLASH_DELAY);
+
+            @Override
+            public void onError(Exception e) {
+                // Progress is saved per batch; the next launch resumes from there
+                Log.e(TAG, "Backfill failed", e);
+            }
+        });
+    }
+
+    /** Empties expired trash one {@link DatabaseHelper#PURGE_BATCH_SIZE} batch per write. */
+    private static void purgeExpiredTrash(final DatabaseHelper databaseHelper, final DbDispatcher dispatcher) {
+        dispatcher.write(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return databaseHelper.purgeExpiredTrash();
+            }
+        }, new DbDispatcher.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean moreWork) {
+                if (moreWork) {
+                    purgeExpiredTrash(databaseHelper, dispatcher);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // Whatever is left is still expired on the next launch
+                Log.e(TAG, "Trash purge failed", e);
+            }
+        });
     }
 }
@@ -0,0 +1,75 @@
+package com.example.notes;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cold-start milestones, measured from the moment SplashActivity is created.
+ *
+ * Each milestone is recorded once, with the time since the splash, and in
+ * debug builds logged under the {@code StartupTrace} tag together with the
+ * time since the process started. On Android 10 and later it also appears
+ * in system traces as a {@code startup:<name>} counter, which steps to the
+ * milliseconds since the splash at the moment the milestone is reached.
+ * Recording stops at {@link #FIRST_PAGE_DRAWN}, so later reloads don't
+ * overwrite the numbers.
+ */
+final class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    static final String DB_OPEN = "db_open";
+    static final String FIRST_PAGE_LOADED = "first_page_loaded";
+    static final String SPLASH_ROUTED = "splash_routed";
+    static final String PREFETCH_USED = "prefetch_used";
+    static final String FIRST_PAGE_DRAWN = "first_page_drawn";
+
+    private static long startedAt = -1;
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+
+    private StartupTrace() {
+    }
+
+    static synchronized void begin() {
+        startedAt = SystemClock.elapsedRealtime();
+        marks.clear();
+    }
+
+    static synchronized boolean isRunning() {
+        return startedAt != -1;
+    }
+
+    /** Records a milestone the first time it is reached. Safe from any thread. */
+    static synchronized void mark(String name) {
+        if (startedAt == -1 || marks.containsKey(name)) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        marks.put(name, now - startedAt);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // A section would have nothing to wrap; a counter step marks the instant
+            Trace.setCounter("startup:" + name, now - startedAt);
+        }
+        if (DbTrace.ENABLED) {
+            Log.i(TAG, name + " +" + (now - startedAt) + " ms (" + (now - Process.getStartElapsedRealtime())
+                    + " ms since process start)");
+        }
+    }
+
+    /** Stops recording; the marks stay readable until the next {@link #begin()}. */
+    static synchronized void finish() {
+        startedAt = -1;
+    }
+
+    /** @return milliseconds from the splash to the milestone, or -1 if it wasn't reached */
+    static synchronized long elapsed(String name) {
+        Long elapsed = marks.get(name);
+        return elapsed == null ? -1 : elapsed;
+    }
+}
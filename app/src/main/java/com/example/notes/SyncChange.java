@@ -0,0 +1,82 @@
+package com.example.notes;
+
+/**
+ * One note's latest state as exchanged with a {@link SyncRemote}: either its
+ * heading and body, or the fact that it was deleted. Notes are named by their
+ * sync id, which is the same on every device.
+ */
+public class SyncChange {
+
+    private final String syncId;
+    private final String heading;
+    private final String details;
+    private final boolean deleted;
+    private final long createdAt;
+    private final long changedAt;
+    private final String deviceId;
+    private final long seq;
+
+    /**
+     * @param deviceId the device that made the change, or null for one made here
+     * @param seq      the change's place in this device's upload queue, or -1 for a remote change
+     */
+    public SyncChange(String syncId, String heading, String details, boolean deleted,
+                      long createdAt, long changedAt, String deviceId, long seq) {
+        this.syncId = syncId;
+        this.heading = heading;
+        this.details = details;
+        this.deleted = deleted;
+        this.createdAt = createdAt;
+        this.changedAt = changedAt;
+        this.deviceId = deviceId;
+        this.seq = seq;
+    }
+
+    public String getSyncId() {
+        return syncId;
+    }
+
+    /** Null if the note was deleted. */
+    public String getHeading() {
+        return heading;
+    }
+
+    /** The whole body; null if the note was deleted. */
+    public String getDetails() {
+        return details;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /** When the change was made on its device, in epoch milliseconds. */
+    public long getChangedAt() {
+        return changedAt;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    long getSeq() {
+        return seq;
+    }
+
+    /**
+     * Whether this change beats another change to the same note made at
+     * {@code otherChangedAt} on {@code otherDeviceId}. The later change wins;
+     * a tie goes to the greater device id. Every device therefore settles a
+     * conflict the same way, whichever order the changes arrive in.
+     */
+    boolean supersedes(long otherChangedAt, String otherDeviceId) {
+        if (changedAt != otherChangedAt) {
+            return changedAt > otherChangedAt;
+        }
+        return deviceId != null && (otherDeviceId == null || deviceId.compareTo(otherDeviceId) > 0);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.notes;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Brings a user's notes and a {@link SyncRemote} up to date with each other
+ * by exchanging only what changed.
+ *
+ * A sync first downloads the remote's feed from the user's stored cursor, a
+ * page at a time, and applies each page in its own transaction together with
+ * the new cursor. It then uploads the change log that the write paths in
+ * {@link DatabaseHelper} fill, {@link #PUSH_BATCH_SIZE} notes per request,
+ * and drops each batch from the log once the remote has stored it. A note
+ * edited many times between syncs is sent once, with its latest state.
+ * Conflicts are settled by {@link SyncChange#supersedes}.
+ *
+ * An interrupted sync loses nothing: the next one resumes from the last
+ * applied page and re-sends what was not acknowledged. Calls block on the
+ * network, so run them off the main thread.
+ */
+public class SyncEngine {
+
+    private static final String TAG = "SyncEngine";
+
+    static final int PUSH_BATCH_SIZE = 100;
+    static final int PULL_PAGE_SIZE = 200;
+
+    private static final String PREFS_SYNC = "sync";
+    private static final String KEY_DEVICE_ID = "device_id";
+
+    /** What one {@link #sync} exchanged. */
+    public static final class Result {
+        int pushed;
+        int pulled;
+        int applied;
+
+        /** Changes uploaded. */
+        public int getPushed() {
+            return pushed;
+        }
+
+        /** Changes downloaded, including ones that lost a conflict or came from this device. */
+        public int getPulled() {
+            return pulled;
+        }
+
+        /** Downloaded changes that were applied to the local notes. */
+        public int getApplied() {
+            return applied;
+        }
+    }
+
+    private final DatabaseHelper databaseHelper;
+    private final SyncRemote remote;
+    private final String deviceId;
+
+    /** @param deviceId names this device to the remote; see {@link #deviceId(Context)} */
+    public SyncEngine(DatabaseHelper databaseHelper, SyncRemote remote, String deviceId) {
+        this.databaseHelper = databaseHelper;
+        this.remote = remote;
+        this.deviceId = deviceId;
+    }
+
+    /** This installation's device id, created on first use. */
+    public static synchronized String deviceId(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_SYNC, Context.MODE_PRIVATE);
+        String id = prefs.getString(KEY_DEVICE_ID, null);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            prefs.edit().putString(KEY_DEVICE_ID, id).apply();
+        }
+        return id;
+    }
+
+    /**
+     * Downloads, then uploads, everything that changed for the user since the
+     * last sync.
+     *
+     * @throws IOException if the remote could not be reached or a page could
+     *                     not be applied; whatever completed before that is kept
+     */
+    public Result sync(long userId) throws IOException {
+        Result result = new Result();
+        long started = System.nanoTime();
+        pull(userId, result);
+        push(userId, result);
+        if (DbTrace.ENABLED) {
+            Log.d(TAG, "Synced user " + userId + " in " + (System.nanoTime() - started) / 1_000_000 + " ms: "
+                    + result.pulled + " down, " + result.applied + " applied, " + result.pushed + " up");
+        }
+        return result;
+    }
+
+    private void pull(long userId, Result result) throws IOException {
+        String cursor = databaseHelper.getSyncCursor(userId);
+        while (true) {
+            SyncRemote.Page page = remote.pull(cursor, deviceId, PULL_PAGE_SIZE);
+            int applied = databaseHelper.applyRemoteChanges(userId, deviceId, page.changes, page.cursor);
+            if (applied == -1) {
+                throw new IOException("Failed to apply downloaded changes");
+            }
+            result.pulled += page.changes.size();
+            result.applied += applied;
+            if (!page.hasMore) {
+                return;
+            }
+            if (page.cursor == null || page.cursor.equals(cursor)) {
+                throw new IOException("Sync cursor did not advance");
+            }
+            cursor = page.cursor;
+        }
+    }
+
+    private void push(long userId, Result result) throws IOException {
+        List<SyncChange> batch = databaseHelper.getPendingChanges(userId, PUSH_BATCH_SIZE);
+        while (!batch.isEmpty()) {
+            remote.push(deviceId, batch);
+            databaseHelper.acknowledgeChanges(userId, batch.get(batch.size() - 1).getSeq());
+            result.pushed += batch.size();
+            batch = databaseHelper.getPendingChanges(userId, PUSH_BATCH_SIZE);
+        }
+    }
+}
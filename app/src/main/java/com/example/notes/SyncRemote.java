@@ -0,0 +1,50 @@
+package com.example.notes;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where {@link SyncEngine} sends this device's changes and gets everyone
+ * else's, for one account. {@link RestSyncRemote} talks to the sync server.
+ *
+ * The remote keeps a feed of changes in the order it accepted them. For each
+ * note it only needs to keep the change that wins under
+ * {@link SyncChange#supersedes}, so the feed a device downloads grows with
+ * the number of notes changed since its cursor, not with the history.
+ */
+public interface SyncRemote {
+
+    /** A slice of the remote's change feed. */
+    final class Page {
+        final List<SyncChange> changes;
+        final String cursor;
+        final boolean hasMore;
+
+        /**
+         * @param cursor  where the next page starts; pass it to the next {@link #pull}
+         * @param hasMore whether changes after this page were already there
+         */
+        public Page(List<SyncChange> changes, String cursor, boolean hasMore) {
+            this.changes = changes;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+        }
+    }
+
+    /**
+     * Uploads changes made on {@code deviceId}. Once this returns they are
+     * stored and will be in the feed for other devices.
+     *
+     * @throws IOException if the remote may not have stored them
+     */
+    void push(String deviceId, List<SyncChange> changes) throws IOException;
+
+    /**
+     * Downloads the feed after {@code cursor}, oldest first. The remote may
+     * leave out changes made by {@code deviceId}.
+     *
+     * @param cursor a cursor from an earlier page, or null to start from the beginning
+     * @param limit  maximum number of changes in the page
+     */
+    Page pull(String cursor, String deviceId, int limit) throws IOException;
+}
@@ -0,0 +1,289 @@
+package com.example.notes;
+
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.ActionMode;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Notes the user deleted, newest first. They can be restored or deleted for
+ * good here; whatever is left is purged after
+ * {@link DatabaseHelper#TRASH_RETENTION_MILLIS}.
+ */
+public class TrashActivity extends AppCompatActivity {
+
+    private static final String TAG = "TrashActivity";
+    // The trash only holds a month of deletes, so one bounded load covers it
+    private static final int TRASH_LIMIT = 1000;
+
+    private ListView trashListView;
+    private TrashAdapter adapter;
+    private DatabaseHelper databaseHelper;
+    private DbDispatcher.Scope dbScope;
+    private long userId;
+
+    private final AbsListView.MultiChoiceModeListener selectionListener = new AbsListView.MultiChoiceModeListener() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.trash_selection_menu, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public void onItemCheckedStateChanged(ActionMode mode, int position, long id, boolean checked) {
+            mode.setTitle(getString(R.string.selected_count, trashListView.getCheckedItemCount()));
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            long[] noteIds = trashListView.getCheckedItemIds();
+            if (item.getItemId() == R.id.action_restore_selected) {
+                mode.finish();
+                restoreNotes(noteIds);
+                return true;
+            }
+            if (item.getItemId() == R.id.action_purge_selected) {
+                mode.finish();
+                confirmPurge(noteIds);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_trash);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(R.string.trash);
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+
+        userId = SessionManager.getInstance(this).getUserId();
+        if (userId == -1) {
+            finish();
+            return;
+        }
+        databaseHelper = DatabaseHelper.getInstance(this);
+        dbScope = DbDispatcher.getInstance().newScope();
+
+        adapter = new TrashAdapter(this, new ArrayList<NoteSummary>());
+        trashListView = findViewById(R.id.trashListView);
+        trashListView.setAdapter(adapter);
+        trashListView.setEmptyView(findViewById(R.id.emptyTrashText));
+        trashListView.setChoiceMode(ListView.CHOICE_MODE_MULTIPLE_MODAL);
+        trashListView.setMultiChoiceModeListener(selectionListener);
+        // Trashed notes aren't opened; a tap starts selecting them instead
+        trashListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
+                trashListView.setItemChecked(position, true);
+            }
+        });
+
+        loadTrash();
+    }
+
+    private void loadTrash() {
+        dbScope.read(new Callable<List<NoteSummary>>() {
+            @Override
+            public List<NoteSummary> call() {
+                return databaseHelper.getTrashedNotes(userId, TRASH_LIMIT);
+            }
+        }, new DbDispatcher.Callback<List<NoteSummary>>() {
+            @Override
+            public void onSuccess(List<NoteSummary> notes) {
+                adapter.setNotifyOnChange(false);
+                adapter.clear();
+                adapter.addAll(notes);
+                adapter.notifyDataSetChanged();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error loading trash", e);
+                showToast("Error loading trash");
+            }
+        });
+    }
+
+    private void restoreNotes(final long[] noteIds) {
+        dbScope.write(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return databaseHelper.restoreNotes(userId, noteIds);
+            }
+        }, new DbDispatcher.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer restored) {
+                if (restored < 0) {
+                    showToast("Error restoring notes");
+                    return;
+                }
+                adapter.removeAll(noteIds);
+                showToast(getResources().getQuantityString(R.plurals.notes_restored, restored, restored));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error restoring notes", e);
+                showToast("Error restoring notes");
+            }
+        });
+    }
+
+    /** Deleting from the trash can't be undone, so unlike a normal delete it asks first. */
+    private void confirmPurge(final long[] noteIds) {
+        if (noteIds.length == 0) {
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.delete_forever)
+                .setMessage(getResources().getQuantityString(R.plurals.delete_forever_confirm,
+                        noteIds.length, noteIds.length))
+                .setPositiveButton(R.string.delete, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        purgeNotes(noteIds);
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    private void purgeNotes(final long[] noteIds) {
+        dbScope.write(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return databaseHelper.purgeNotes(userId, noteIds);
+            }
+        }, new DbDispatcher.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer purged) {
+                if (purged < 0) {
+                    showToast("Error deleting notes");
+                    return;
+                }
+                adapter.removeAll(noteIds);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error deleting notes", e);
+                showToast("Error deleting notes");
+            }
+        });
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.trash_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_empty_trash) {
+            long[] noteIds = new long[adapter.getCount()];
+            for (int i = 0; i < noteIds.length; i++) {
+                noteIds[i] = adapter.getItemId(i);
+            }
+            confirmPurge(noteIds);
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (dbScope != null) {
+            dbScope.cancel();
+        }
+        super.onDestroy();
+    }
+
+    private void showToast(String message) {
+        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+    }
+
+    /** Two-line rows of heading and preview that light up while selected. */
+    private static class TrashAdapter extends ArrayAdapter<NoteSummary> {
+
+        private final List<NoteSummary> notes;
+
+        TrashAdapter(TrashActivity activity, List<NoteSummary> notes) {
+            super(activity, android.R.layout.simple_list_item_activated_2, android.R.id.text1, notes);
+            this.notes = notes;
+        }
+
+        // Note ids, so the ListView reports checked rows by id
+        @Override
+        public long getItemId(int position) {
+            return getItem(position).getId();
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return true;
+        }
+
+        @NonNull
+        @Override
+        public View getView(int position, View convertView, @NonNull ViewGroup parent) {
+            View view = super.getView(position, convertView, parent);
+            NoteSummary note = getItem(position);
+            ((TextView) view.findViewById(android.R.id.text1)).setText(note.getHeading());
+            ((TextView) view.findViewById(android.R.id.text2)).setText(note.getPreview());
+            return view;
+        }
+
+        void removeAll(long[] noteIds) {
+            Set<Long> ids = new HashSet<>();
+            for (long noteId : noteIds) {
+                ids.add(noteId);
+            }
+            Iterator<NoteSummary> iterator = notes.iterator();
+            while (iterator.hasNext()) {
+                if (ids.contains(iterator.next().getId())) {
+                    iterator.remove();
+                }
+            }
+            notifyDataSetChanged();
+        }
+    }
+}
@@ -39,8 +39,8 @@ public class User {
         this.password = password;
     }
     
+    /** Checks a password against the stored hash (or a legacy plain-text password). Slow by design. */
     public boolean checkPassword(String password) {
-        // Simple string comparison for plain text passwords
-        return this.password != null && this.password.equals(password);
+        return PasswordHasher.verify(password, this.password);
     }
 }
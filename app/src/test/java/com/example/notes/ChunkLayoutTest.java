@@ -0,0 +1,173 @@
+package com.example.notes;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkLayoutTest {
+
+    private static final int MAX_CHUNK = 10;
+
+    private final StringBuilder text = new StringBuilder();
+    // Stands in for the inline head plus the chunk table, keyed by seq
+    private final TreeMap<Long, String> stored = new TreeMap<>();
+    private ChunkLayout layout;
+
+    @Before
+    public void setUp() {
+        text.append("abcdefghijklmnopqrstuvwxyz");
+        apply(ChunkLayout.split(text, MAX_CHUNK));
+        layout = new ChunkLayout(MAX_CHUNK);
+        for (Map.Entry<Long, String> chunk : stored.entrySet()) {
+            layout.append(chunk.getKey(), chunk.getValue().length());
+        }
+    }
+
+    @Test
+    public void splitKeepsChunksWithinLimit() {
+        assertEquals(3, stored.size());
+        assertEquals("abcdefghij", stored.get(ChunkLayout.HEAD_SEQ));
+        for (String chunk : stored.values()) {
+            assertTrue(chunk.length() <= MAX_CHUNK);
+        }
+        assertEquals(text.toString(), storedBody());
+    }
+
+    @Test
+    public void noChangesWriteNothing() {
+        assertTrue(layout.takeEdit(text).isEmpty());
+    }
+
+    @Test
+    public void editWritesOnlyTheChunkItTouches() {
+        replace(12, 1, "M");
+
+        ChunkLayout.Edit edit = layout.takeEdit(text);
+        assertEquals(1, edit.writtenSeqs().size());
+        assertEquals(ChunkLayout.SEQ_STEP, (long) edit.writtenSeqs().get(0));
+        assertNull(edit.headText());
+        apply(edit);
+        assertEquals(text.toString(), storedBody());
+    }
+
+    @Test
+    public void editAcrossABoundaryTouchesBothChunks() {
+        replace(8, 4, "");
+
+        ChunkLayout.Edit edit = layout.takeEdit(text);
+        assertEquals(2, edit.writtenSeqs().size());
+        assertEquals("abcdefgh", edit.headText());
+        apply(edit);
+        assertEquals(text.toString(), storedBody());
+    }
+
+    @Test
+    public void growingChunkIsSplitBetweenItsNeighbours() {
+        replace(3, 0, "0123456789012345");
+
+        ChunkLayout.Edit edit = layout.takeEdit(text);
+        assertTrue(edit.writtenSeqs().size() >= 3);
+        assertTrue(edit.removedSeqs().isEmpty());
+        apply(edit);
+        assertEquals(text.toString(), storedBody());
+        for (String chunk : stored.values()) {
+            assertTrue(chunk.length() <= MAX_CHUNK);
+        }
+    }
+
+    @Test
+    public void emptiedChunkIsRemoved() {
+        replace(10, 10, "");
+
+        ChunkLayout.Edit edit = layout.takeEdit(text);
+        assertEquals(1, edit.removedSeqs().size());
+        apply(edit);
+        assertEquals(2, stored.size());
+        assertEquals(text.toString(), storedBody());
+    }
+
+    @Test
+    public void appendingAtTheEndGrowsTheLastChunk() {
+        replace(text.length(), 0, "!");
+
+        ChunkLayout.Edit edit = layout.takeEdit(text);
+        assertEquals(1, edit.writtenSeqs().size());
+        apply(edit);
+        assertEquals(text.toString(), storedBody());
+    }
+
+    @Test
+    public void markAllDirtyRewritesEverything() {
+        layout.markAllDirty();
+
+        ChunkLayout.Edit edit = layout.takeEdit(text);
+        assertTrue(edit.replacesAll());
+        assertEquals(3, edit.writtenSeqs().size());
+    }
+
+    @Test
+    public void splitNeverSeparatesSurrogatePairs() {
+        String emoji = "😀";
+        StringBuilder body = new StringBuilder("123456789");
+        body.append(emoji).append("abc");
+
+        ChunkLayout.Edit edit = ChunkLayout.split(body, MAX_CHUNK);
+        for (String chunk : edit.writtenTexts()) {
+            assertTrue(chunk.isEmpty() || !Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+        }
+    }
+
+    @Test
+    public void randomEditsAlwaysRoundTrip() {
+        Random random = new Random(7);
+        for (int round = 0; round < 500; round++) {
+            int start = random.nextInt(text.length() + 1);
+            int before = random.nextInt(Math.min(25, text.length() - start) + 1);
+            StringBuilder inserted = new StringBuilder();
+            int count = random.nextInt(30);
+            for (int i = 0; i < count; i++) {
+                inserted.append((char) ('a' + random.nextInt(26)));
+            }
+            replace(start, before, inserted.toString());
+            if (random.nextInt(3) == 0) {
+                apply(layout.takeEdit(text));
+                assertEquals("round " + round, text.toString(), storedBody());
+            }
+        }
+        apply(layout.takeEdit(text));
+        assertEquals(text.toString(), storedBody());
+        assertEquals(text.length(), layout.length());
+    }
+
+    private void replace(int start, int before, String inserted) {
+        text.replace(start, start + before, inserted);
+        layout.onTextChanged(start, before, inserted.length());
+    }
+
+    private void apply(ChunkLayout.Edit edit) {
+        if (edit.replacesAll()) {
+            stored.clear();
+        }
+        for (long seq : edit.removedSeqs()) {
+            stored.remove(seq);
+        }
+        for (int i = 0; i < edit.writtenSeqs().size(); i++) {
+            stored.put(edit.writtenSeqs().get(i), edit.writtenTexts().get(i));
+        }
+    }
+
+    private String storedBody() {
+        StringBuilder body = new StringBuilder();
+        for (String chunk : stored.values()) {
+            body.append(chunk);
+        }
+        return body.toString();
+    }
+}
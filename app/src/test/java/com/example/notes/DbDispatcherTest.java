@@ -0,0 +1,232 @@
+package com.example.notes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link DbDispatcher}. Callbacks run directly on the
+ * worker thread here instead of being posted to the main thread.
+ */
+public class DbDispatcherTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private DbDispatcher dispatcher;
+    private CountDownLatch releaseWriter;
+
+    @Before
+    public void setUp() {
+        dispatcher = new DbDispatcher(2, DIRECT);
+        releaseWriter = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        releaseWriter.countDown();
+        dispatcher.shutdownNow();
+    }
+
+    @Test
+    public void writesRunInSubmissionOrder() throws Exception {
+        final List<Integer> order = new CopyOnWriteArrayList<>();
+        Future<?> last = null;
+        for (int i = 0; i < 50; i++) {
+            final int index = i;
+            last = dispatcher.write(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    order.add(index);
+                    return null;
+                }
+            }, null);
+        }
+        last.get(1, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(Integer.valueOf(i), order.get(i));
+        }
+    }
+
+    @Test
+    public void readsKeepRunningWhileAWriteIsInProgress() throws Exception {
+        Future<Void> write = blockWriter();
+
+        final CountDownLatch readsDone = new CountDownLatch(10);
+        for (int i = 0; i < 10; i++) {
+            dispatcher.read(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return 1;
+                }
+            }, new CountingCallback<Integer>(readsDone));
+        }
+
+        assertTrue("Reads waited for the write", readsDone.await(1, TimeUnit.SECONDS));
+        assertFalse(write.isDone());
+    }
+
+    @Test
+    public void reportsQueueDepth() throws Exception {
+        blockWriter();
+        for (int i = 0; i < 3; i++) {
+            dispatcher.write(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    return null;
+                }
+            }, null);
+        }
+
+        assertEquals(3, dispatcher.getWriteQueueDepth());
+        assertTrue(dispatcher.getPeakWriteQueueDepth() >= 3);
+        assertEquals(0, dispatcher.getReadQueueDepth());
+
+        releaseWriter.countDown();
+        dispatcher.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                return null;
+            }
+        }, null).get(1, TimeUnit.SECONDS);
+        assertEquals(0, dispatcher.getWriteQueueDepth());
+    }
+
+    @Test
+    public void cancelledScopeDropsPendingReadsButStillWrites() throws Exception {
+        // Occupy the writer and both reader lanes so the scoped work stays queued
+        blockWriter();
+        final CountDownLatch releaseReaders = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            dispatcher.read(new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    releaseReaders.await();
+                    return null;
+                }
+            }, null);
+        }
+
+        DbDispatcher.Scope scope = dispatcher.newScope();
+        final AtomicBoolean readRan = new AtomicBoolean();
+        final AtomicBoolean callbackRan = new AtomicBoolean();
+        final AtomicBoolean writeRan = new AtomicBoolean();
+        Future<Void> read = scope.read(new Callable<Void>() {
+            @Override
+            public Void call() {
+                readRan.set(true);
+                return null;
+            }
+        }, new FlagCallback<Void>(callbackRan));
+        Future<Void> write = scope.write(new Callable<Void>() {
+            @Override
+            public Void call() {
+                writeRan.set(true);
+                return null;
+            }
+        }, new FlagCallback<Void>(callbackRan));
+
+        scope.cancel();
+        releaseWriter.countDown();
+        releaseReaders.countDown();
+        write.get(1, TimeUnit.SECONDS);
+
+        assertTrue(read.isCancelled());
+        assertFalse(readRan.get());
+        assertTrue(writeRan.get());
+        assertFalse("Callback delivered after cancel", callbackRan.get());
+    }
+
+    @Test
+    public void failuresGoToOnError() throws Exception {
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        dispatcher.read(new Callable<Void>() {
+            @Override
+            public Void call() {
+                throw new IllegalStateException("boom");
+            }
+        }, new DbDispatcher.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                error.set(e);
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(error.get() instanceof IllegalStateException);
+    }
+
+    /** Parks a write on the writer lane until {@link #releaseWriter} is counted down. */
+    private Future<Void> blockWriter() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        Future<Void> write = dispatcher.write(new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+                started.countDown();
+                releaseWriter.await();
+                return null;
+            }
+        }, null);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        return write;
+    }
+
+    private static class CountingCallback<T> implements DbDispatcher.Callback<T> {
+        private final CountDownLatch latch;
+
+        CountingCallback(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void onSuccess(T result) {
+            latch.countDown();
+        }
+
+        @Override
+        public void onError(Exception e) {
+        }
+    }
+
+    private static class FlagCallback<T> implements DbDispatcher.Callback<T> {
+        private final AtomicBoolean flag;
+
+        FlagCallback(AtomicBoolean flag) {
+            this.flag = flag;
+        }
+
+        @Override
+        public void onSuccess(T result) {
+            flag.set(true);
+        }
+
+        @Override
+        public void onError(Exception e) {
+            flag.set(true);
+        }
+    }
+}
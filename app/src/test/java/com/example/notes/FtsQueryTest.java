@@ -0,0 +1,63 @@
+package com.example.notes;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FtsQuery}.
+ */
+public class FtsQueryTest {
+
+    @Test
+    public void everyWordBecomesAPrefixTerm() {
+        assertEquals("shop* list*", FtsQuery.toMatchExpression("Shop list"));
+    }
+
+    @Test
+    public void punctuationAndOperatorsAreStripped() {
+        assertEquals("a* or* b*", FtsQuery.toMatchExpression("\"a\" OR -b*"));
+        assertEquals("café*", FtsQuery.toMatchExpression("  Café!  "));
+    }
+
+    @Test
+    public void blankQueryHasNoExpression() {
+        assertNull(FtsQuery.toMatchExpression(null));
+        assertNull(FtsQuery.toMatchExpression(""));
+        assertNull(FtsQuery.toMatchExpression(" ,.; "));
+    }
+
+    @Test
+    public void everyWordBecomesALikePattern() {
+        assertArrayEquals(new String[]{"%shop%", "%list%"}, FtsQuery.toLikePatterns("Shop, list%_"));
+        assertEquals(0, FtsQuery.toLikePatterns(" ,.; ").length);
+    }
+
+    @Test
+    public void headingHitsOutrankDetailHits() {
+        // One phrase, two columns: {hitsThisRow, hitsAllRows, docsWithHits} per column
+        byte[] inHeading = matchInfo(1, 2, 1, 4, 4, 0, 4, 4);
+        byte[] inDetails = matchInfo(1, 2, 0, 4, 4, 1, 4, 4);
+        assertTrue(FtsQuery.score(inHeading) > FtsQuery.score(inDetails));
+    }
+
+    @Test
+    public void matchesOrderByScoreThenNewestId() {
+        FtsQuery.Match weak = new FtsQuery.Match(10, 0.5);
+        FtsQuery.Match strong = new FtsQuery.Match(1, 1.5);
+        FtsQuery.Match weakButNewer = new FtsQuery.Match(11, 0.5);
+        assertTrue(strong.compareTo(weak) > 0);
+        assertTrue(weakButNewer.compareTo(weak) > 0);
+    }
+
+    private static byte[] matchInfo(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+}
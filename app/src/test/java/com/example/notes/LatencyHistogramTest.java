@@ -0,0 +1,82 @@
+package com.example.notes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(0, histogram.percentile(99));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 4; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(2, histogram.percentile(50));
+        assertEquals(4, histogram.percentile(100));
+    }
+
+    @Test
+    public void bucketsCoverEveryValueWithBoundedError() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            int bucket = LatencyHistogram.bucketFor(micros);
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertTrue(micros + " above its bucket", micros <= upper);
+            assertTrue(micros + " in too wide a bucket", upper <= micros + micros / LatencyHistogram.SUB_BUCKETS);
+            if (bucket > 0) {
+                assertTrue(micros + " below its bucket", micros > LatencyHistogram.upperBound(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros);
+        }
+        assertWithin(5_000, histogram.percentile(50));
+        assertWithin(9_500, histogram.percentile(95));
+        assertWithin(9_900, histogram.percentile(99));
+        assertEquals(10_000, histogram.max());
+    }
+
+    @Test
+    public void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000);
+        assertEquals(1_000, histogram.percentile(99));
+    }
+
+    @Test
+    public void hugeValuesLandInLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(1, histogram.count());
+        assertEquals(Long.MAX_VALUE, histogram.percentile(50));
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500);
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(50));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / LatencyHistogram.SUB_BUCKETS);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.notes;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NoteCodecTest {
+
+    @Test
+    public void repetitiveTextShrinksAndRoundTrips() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 16 * 1024; i++) {
+            text.append("12:00:0").append(i % 10).append(" INFO request ").append(i).append(" served\n");
+        }
+
+        byte[] compressed = NoteCodec.compress(text.toString());
+        assertNotNull(compressed);
+        assertEquals(NoteCodec.CODEC_DEFLATE, compressed[0]);
+        assertTrue(compressed.length < text.length() / 2);
+        assertEquals(text.toString(), NoteCodec.decompress(compressed));
+    }
+
+    @Test
+    public void nonAsciiTextRoundTrips() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 8 * 1024) {
+            text.append("Grüße aus Köln 😀 — 東京の会議メモ\n");
+        }
+        assertEquals(text.toString(), NoteCodec.decompress(NoteCodec.compress(text.toString())));
+    }
+
+    @Test
+    public void incompressibleTextIsLeftPlain() {
+        Random random = new Random(3);
+        byte[] noise = new byte[4096];
+        random.nextBytes(noise);
+        // Base64-like noise barely compresses; storing it plain is cheaper
+        String text = new String(Base64.getEncoder().encode(noise), StandardCharsets.US_ASCII)
+                .substring(0, 64);
+        assertNull(NoteCodec.compress(text));
+        assertNull(NoteCodec.compress(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownCodecIsRejected() {
+        NoteCodec.decompress(new byte[]{42, 0, 0, 0, 1, 0});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedValueIsRejected() {
+        byte[] compressed = NoteCodec.compress(new String(new char[8192]).replace('\0', 'x'));
+        byte[] truncated = new byte[compressed.length - 4];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        NoteCodec.decompress(truncated);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.notes;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NoteSummary#makePreview} and the list orders.
+ */
+public class NoteSummaryTest {
+
+    @Test
+    public void collapsesWhitespace() {
+        assertEquals("Buy milk and eggs", NoteSummary.makePreview("  Buy milk\n\n\tand   eggs \n"));
+    }
+
+    @Test
+    public void truncatesLongBodies() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("word ");
+        }
+        String preview = NoteSummary.makePreview(body.toString());
+        assertTrue(preview.length() <= NoteSummary.PREVIEW_LENGTH);
+        assertTrue(preview.startsWith("word word"));
+    }
+
+    @Test
+    public void neverSplitsASurrogatePair() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < NoteSummary.PREVIEW_LENGTH - 1; i++) {
+            body.append('a');
+        }
+        body.append("😀"); // emoji straddling the cut
+        String preview = NoteSummary.makePreview(body.toString());
+        assertFalse(Character.isHighSurrogate(preview.charAt(preview.length() - 1)));
+    }
+
+    @Test
+    public void nullBodyHasNoPreview() {
+        assertNull(NoteSummary.makePreview(null));
+    }
+
+    @Test
+    public void titleOrderFoldsAsciiCaseOnlyLikeSqlite() {
+        assertEquals(0, NoteSummary.compareNoCase("Groceries", "gROCERIES"));
+        assertTrue(NoteSummary.compareNoCase("apple", "Banana") < 0);
+        assertTrue(NoteSummary.compareNoCase("abc", "ABCD") < 0);
+        // NOCASE leaves non-ASCII letters alone, so "Ä" sorts after every ASCII letter
+        assertTrue(NoteSummary.compareNoCase("zebra", "Äpfel") < 0);
+        // UTF-8 order: a supplementary character sorts after U+FFFD, unlike UTF-16 char order
+        assertTrue(NoteSummary.compareNoCase("\uFFFD", "😀") < 0);
+    }
+
+    @Test
+    public void titleOrderPutsUntitledFirstAndBreaksTiesById() {
+        NoteSummary untitled = new NoteSummary(5, null, null);
+        NoteSummary plan = new NoteSummary(3, "Plan", null);
+        NoteSummary planAgain = new NoteSummary(4, "plan", null);
+        List<NoteSummary> notes = new ArrayList<>(Arrays.asList(planAgain, plan, untitled));
+
+        Collections.sort(notes, NoteSummary.listOrder(NoteSql.SORT_TITLE));
+
+        assertEquals(Arrays.asList(untitled, plan, planAgain), notes);
+    }
+
+    @Test
+    public void recentlyEditedOrderFallsBackToNewestId() {
+        NoteSummary edited = new NoteSummary(1, "a", null, 2000);
+        NoteSummary legacyOld = new NoteSummary(2, "b", null, 0);
+        NoteSummary legacyNew = new NoteSummary(3, "c", null, 0);
+        List<NoteSummary> notes = new ArrayList<>(Arrays.asList(legacyOld, legacyNew, edited));
+
+        Collections.sort(notes, NoteSummary.listOrder(NoteSql.SORT_RECENTLY_EDITED));
+
+        assertEquals(Arrays.asList(edited, legacyNew, legacyOld), notes);
+    }
+}
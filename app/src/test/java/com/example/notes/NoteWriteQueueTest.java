@@ -0,0 +1,119 @@
+package com.example.notes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link NoteWriteQueue}.
+ */
+public class NoteWriteQueueTest {
+
+    private static final long QUIET_PERIOD_MS = 100;
+
+    private ScheduledExecutorService executor;
+    private CountingStore store;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        store = new CountingStore();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void burstOfKeystrokesCoalescesIntoOneWrite() throws Exception {
+        NoteWriteQueue queue = new NoteWriteQueue(store, executor, QUIET_PERIOD_MS, -1);
+        StringBuilder typed = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            typed.append('x');
+            queue.submit("Heading", typed.toString());
+        }
+        queue.flush().get(1, TimeUnit.SECONDS);
+
+        assertEquals(1, store.inserts.get());
+        assertEquals(0, store.updates.get());
+        assertEquals(typed.toString(), store.lastDetails);
+        assertEquals(CountingStore.NEW_ID, queue.getNoteId());
+    }
+
+    @Test
+    public void writesAfterQuietPeriodWithoutFlush() throws Exception {
+        NoteWriteQueue queue = new NoteWriteQueue(store, executor, QUIET_PERIOD_MS, 7);
+        queue.submit("Heading", "a");
+        queue.submit("Heading", "ab");
+
+        Thread.sleep(QUIET_PERIOD_MS * 3);
+
+        assertEquals(1, store.updates.get());
+        assertEquals("ab", store.lastDetails);
+    }
+
+    @Test
+    public void laterBurstUpdatesTheInsertedNote() throws Exception {
+        NoteWriteQueue queue = new NoteWriteQueue(store, executor, QUIET_PERIOD_MS, -1);
+        queue.submit("Heading", "first");
+        queue.flush().get(1, TimeUnit.SECONDS);
+        queue.submit("Heading", "second");
+        queue.flush().get(1, TimeUnit.SECONDS);
+
+        assertEquals(1, store.inserts.get());
+        assertEquals(1, store.updates.get());
+        assertEquals(CountingStore.NEW_ID, store.lastUpdatedId);
+    }
+
+    @Test
+    public void unchangedContentIsNotWritten() throws Exception {
+        NoteWriteQueue queue = new NoteWriteQueue(store, executor, QUIET_PERIOD_MS, 7);
+        queue.markSaved("Heading", "same");
+        queue.submit("Heading", "same");
+        queue.flush().get(1, TimeUnit.SECONDS);
+
+        assertEquals(0, store.updates.get());
+    }
+
+    @Test
+    public void discardDropsPendingEdit() throws Exception {
+        NoteWriteQueue queue = new NoteWriteQueue(store, executor, QUIET_PERIOD_MS, 7);
+        queue.submit("Heading", "gone");
+        queue.discard();
+        queue.flush().get(1, TimeUnit.SECONDS);
+
+        assertEquals(0, store.updates.get());
+    }
+
+    private static class CountingStore implements NoteWriteQueue.Store {
+        static final long NEW_ID = 42;
+
+        final AtomicInteger inserts = new AtomicInteger();
+        final AtomicInteger updates = new AtomicInteger();
+        volatile String lastDetails;
+        volatile long lastUpdatedId;
+
+        @Override
+        public long insertNote(String heading, String details) {
+            inserts.incrementAndGet();
+            lastDetails = details;
+            return NEW_ID;
+        }
+
+        @Override
+        public boolean updateNote(long noteId, String heading, String details) {
+            updates.incrementAndGet();
+            lastDetails = details;
+            lastUpdatedId = noteId;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.notes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PasswordHasher}. A low cost keeps them fast;
+ * the format and checks don't depend on it.
+ */
+public class PasswordHasherTest {
+
+    private static final int TEST_ITERATIONS = 1_000;
+
+    private final PasswordHasher hasher = new PasswordHasher(TEST_ITERATIONS);
+
+    @Test
+    public void hashVerifiesOnlyTheRightPassword() {
+        String stored = hasher.hash("correct horse");
+
+        assertTrue(stored.startsWith(PasswordHasher.PREFIX + "$" + TEST_ITERATIONS + "$"));
+        assertFalse(stored.contains("correct horse"));
+        assertTrue(PasswordHasher.verify("correct horse", stored));
+        assertFalse(PasswordHasher.verify("correct horsE", stored));
+        assertFalse(PasswordHasher.verify("", stored));
+    }
+
+    @Test
+    public void samePasswordGetsDifferentSalts() {
+        assertNotEquals(hasher.hash("secret"), hasher.hash("secret"));
+    }
+
+    @Test
+    public void legacyPlainTextStillVerifiesAndNeedsRehash() {
+        assertTrue(PasswordHasher.verify("secret", "secret"));
+        assertFalse(PasswordHasher.verify("Secret", "secret"));
+        assertTrue(hasher.needsRehash("secret"));
+    }
+
+    @Test
+    public void rehashNeededOnlyWhenCostRises() {
+        String stored = hasher.hash("secret");
+
+        assertFalse(hasher.needsRehash(stored));
+        assertFalse(new PasswordHasher(TEST_ITERATIONS / 2).needsRehash(stored));
+        assertTrue(new PasswordHasher(TEST_ITERATIONS * 2).needsRehash(stored));
+        // A hash made at the old cost keeps verifying after the cost goes up
+        assertTrue(PasswordHasher.verify("secret", stored));
+    }
+
+    @Test
+    public void malformedHashesAreTreatedAsPlainText() {
+        String malformed = PasswordHasher.PREFIX + "$abc$!!$!!";
+
+        assertTrue(PasswordHasher.verify(malformed, malformed));
+        assertFalse(PasswordHasher.verify("secret", malformed));
+        assertTrue(hasher.needsRehash(malformed));
+    }
+
+    @Test
+    public void calibrationStaysWithinBounds() {
+        int iterations = PasswordHasher.calibrate(1);
+
+        assertTrue(iterations >= PasswordHasher.MIN_ITERATIONS);
+        assertTrue(iterations <= PasswordHasher.MAX_ITERATIONS);
+        assertEquals(0, iterations % 1000);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.notes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for how {@link SyncChange#supersedes} settles conflicts.
+ */
+public class SyncChangeTest {
+
+    @Test
+    public void laterChangeWins() {
+        assertTrue(change(2000, "device-a").supersedes(1000, "device-b"));
+        assertFalse(change(1000, "device-b").supersedes(2000, "device-a"));
+    }
+
+    @Test
+    public void tieGoesToGreaterDeviceId() {
+        assertTrue(change(1000, "device-b").supersedes(1000, "device-a"));
+        assertFalse(change(1000, "device-a").supersedes(1000, "device-b"));
+    }
+
+    @Test
+    public void everyDevicePicksTheSameWinner() {
+        long[] times = {1000, 1000, 1001};
+        String[] devices = {"device-a", "device-b", "device-a"};
+        for (int i = 0; i < times.length; i++) {
+            for (int j = 0; j < times.length; j++) {
+                if (i == j) {
+                    continue;
+                }
+                boolean iWins = change(times[i], devices[i]).supersedes(times[j], devices[j]);
+                boolean jWins = change(times[j], devices[j]).supersedes(times[i], devices[i]);
+                assertTrue("exactly one of " + i + " and " + j + " wins", iWins != jWins);
+            }
+        }
+    }
+
+    @Test
+    public void sameChangeDoesNotSupersedeItself() {
+        assertFalse(change(1000, "device-a").supersedes(1000, "device-a"));
+    }
+
+    private static SyncChange change(long changedAt, String deviceId) {
+        return new SyncChange("note", "Heading", "Details", false, 0, changedAt, deviceId, -1);
+    }
+}
@@ -0,0 +1,34 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Compile the app's SQL as-is so the benchmarks always measure the statements the app runs
+sourceSets {
+    named("jmh") {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/example/notes/NoteSql.java")
+            include("com/example/notes/NoteSummary.java")
+            include("com/example/notes/NoteCodec.java")
+            include("com/example/notes/*Benchmark.java")
+        }
+    }
+}
+
+dependencies {
+    jmh("org.xerial:sqlite-jdbc:3.45.1.0")
+}
+
+jmh {
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
@@ -0,0 +1,206 @@
+package com.example.notes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Weighs what {@link NoteCodec} saves on disk against what it costs per
+ * chunk read and write. Only chunks past a body's first
+ * {@link NoteSql#CHUNK_CHARS} characters are compressed, and the smaller
+ * sizes here stand for the last chunk of such a body.
+ *
+ * Each benchmark stores or loads one chunk row through the app's own
+ * statements, once as plain TEXT and once compressed, for chunk sizes up to
+ * {@link NoteSql#CHUNK_CHARS}. The compression ratio of every corpus and size
+ * is printed when the trial starts, next to the timings JMH reports.
+ *
+ * The corpora stand in for what users paste: "log" is server log output,
+ * which repeats a lot; "prose" is running text, which repeats much less.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NoteCompressionBenchmark {
+
+    private static final long NOTE_ID = 1;
+    private static final long SEQ = 1L << 20;
+
+    @Param({"log", "prose"})
+    public String corpus;
+
+    @Param({"1024", "4096", "16384", "65536"})
+    public int chunkChars;
+
+    private File file;
+    private Connection connection;
+    private PreparedStatement putChunk;
+    private PreparedStatement readChunks;
+    private String text;
+    private byte[] compressed;
+
+    @Setup(Level.Trial)
+    public void openDatabase() throws IOException, SQLException {
+        file = File.createTempFile("notes-compression", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            for (String sql : NoteSql.CREATE_SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        putChunk = connection.prepareStatement(NoteSql.SQL_PUT_NOTE_CHUNK);
+        readChunks = connection.prepareStatement(NoteSql.SQL_NOTE_CHUNKS);
+
+        text = "log".equals(corpus) ? logText(chunkChars, new SplittableRandom(42))
+                : proseText(chunkChars, new SplittableRandom(42));
+        compressed = NoteCodec.compress(text);
+        int utf8 = text.getBytes(StandardCharsets.UTF_8).length;
+        int stored = compressed == null ? utf8 : compressed.length;
+        System.out.printf("%n%s, %d chars: %d bytes as text, %d compressed (%.1f%%)%n",
+                corpus, chunkChars, utf8, stored, 100.0 * stored / utf8);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() throws SQLException {
+        connection.close();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+        file.delete();
+    }
+
+    @Benchmark
+    public int writePlain() throws SQLException {
+        return put(text, null);
+    }
+
+    @Benchmark
+    public int writeCompressed() throws SQLException {
+        // Compression happens on every save, so it belongs in the timing
+        byte[] value = NoteCodec.compress(text);
+        return put(value == null ? text : null, value);
+    }
+
+    @Benchmark
+    public void readPlain(ReadPlain state, Blackhole blackhole) throws SQLException {
+        read(blackhole);
+    }
+
+    @Benchmark
+    public void readCompressed(ReadCompressed state, Blackhole blackhole) throws SQLException {
+        read(blackhole);
+    }
+
+    /** Stores the chunk as TEXT before the read benchmarks that want it that way. */
+    @State(Scope.Thread)
+    public static class ReadPlain {
+        @Setup(Level.Iteration)
+        public void store(NoteCompressionBenchmark benchmark) throws SQLException {
+            benchmark.put(benchmark.text, null);
+        }
+    }
+
+    /** Stores the chunk compressed before the read benchmarks that want it that way. */
+    @State(Scope.Thread)
+    public static class ReadCompressed {
+        @Setup(Level.Iteration)
+        public void store(NoteCompressionBenchmark benchmark) throws SQLException {
+            benchmark.put(benchmark.compressed == null ? benchmark.text : null, benchmark.compressed);
+        }
+    }
+
+    int put(String plain, byte[] value) throws SQLException {
+        putChunk.setLong(1, NOTE_ID);
+        putChunk.setLong(2, SEQ);
+        if (value != null) {
+            putChunk.setBytes(3, value);
+        } else if (plain != null) {
+            putChunk.setString(3, plain);
+        } else {
+            putChunk.setNull(3, Types.VARCHAR);
+        }
+        return putChunk.executeUpdate();
+    }
+
+    private void read(Blackhole blackhole) throws SQLException {
+        readChunks.setLong(1, NOTE_ID);
+        try (ResultSet rows = readChunks.executeQuery()) {
+            while (rows.next()) {
+                Object body = rows.getObject(2);
+                // Same decision DatabaseHelper.readChunks makes from the column type
+                blackhole.consume(body instanceof byte[] ? NoteCodec.decompress((byte[]) body) : (String) body);
+            }
+        }
+    }
+
+    private static final String[] LEVELS = {"INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR"};
+    private static final String[] PATHS = {"/api/notes", "/api/notes/{id}", "/api/login", "/api/sync", "/health"};
+
+    static String logText(int chars, SplittableRandom random) {
+        StringBuilder text = new StringBuilder(chars + 200);
+        long millis = 1_700_000_000_000L;
+        while (text.length() < chars) {
+            millis += random.nextInt(2000);
+            text.append(millis / 1000).append('.').append(millis % 1000)
+                    .append(' ').append(LEVELS[random.nextInt(LEVELS.length)])
+                    .append(" [worker-").append(random.nextInt(16)).append("] ")
+                    .append(random.nextBoolean() ? "GET " : "POST ")
+                    .append(PATHS[random.nextInt(PATHS.length)])
+                    .append(" status=").append(random.nextInt(10) == 0 ? 500 : 200)
+                    .append(" request=").append(Long.toHexString(random.nextLong()))
+                    .append(" took ").append(random.nextInt(900) + 1).append(" ms\n");
+        }
+        text.setLength(chars);
+        return text.toString();
+    }
+
+    private static final String[] WORDS = (
+            "the a of to and in that is was for on with as it his be at by this had not are but from or have "
+            + "an they which one you were her all she there would their we him been has when who will more no "
+            + "if out so said what up its about into than them can only other new some could time these two may "
+            + "then do first any my now such like our over man me even most made after also did many before must "
+            + "through back years where much your way well down should because each just those people how too "
+            + "little state good very make world still own see men work long get here between both life being under "
+            + "never day same another know while last might us great old year off come since against go came right "
+            + "used take three meeting release draft review schedule budget customer feedback launch quarter").split(" ");
+
+    static String proseText(int chars, SplittableRandom random) {
+        StringBuilder text = new StringBuilder(chars + 20);
+        int sentence = 0;
+        while (text.length() < chars) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (sentence == 0) {
+                text.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                text.append(' ').append(word);
+            }
+            if (++sentence > 6 + random.nextInt(14)) {
+                text.append(random.nextInt(8) == 0 ? ".\n\n" : ". ");
+                sentence = 0;
+            }
+        }
+        text.setLength(chars);
+        return text.toString();
+    }
+}
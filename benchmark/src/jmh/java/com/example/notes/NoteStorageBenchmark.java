@@ -0,0 +1,270 @@
+package com.example.notes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the storage layer's statements from {@link NoteSql} against SQLite
+ * through JDBC, on a plain JVM.
+ *
+ * The numbers are not device numbers: the JVM, the driver's SQLite build and
+ * the disk all differ from a phone. They are for comparing schema and query
+ * changes against each other, and for seeing how each operation scales with
+ * the number of stored notes. The on-device benchmarks in androidTest remain
+ * the reference for absolute timings.
+ *
+ * Writes run one statement per transaction in WAL mode, as the app does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NoteStorageBenchmark {
+
+    // Notes are spread over this many users, so per-user queries see a tenth of the table
+    private static final int USERS = 10;
+    // Same as MainActivity.PAGE_SIZE
+    private static final int PAGE_SIZE = 50;
+    private static final String DETAILS =
+            "Meeting notes: go over the release checklist, confirm the rollout plan "
+            + "and follow up with everyone who still has open review comments.";
+    // Seeded notes were last edited at random minutes over the month after this
+    private static final long SEED_EPOCH = 1_700_000_000_000L;
+
+    @Param({"1000", "10000", "100000"})
+    public int noteCount;
+
+    private File file;
+    private Connection connection;
+    private PreparedStatement insertNote;
+    private PreparedStatement updateNote;
+    private PreparedStatement deleteNote;
+    private PreparedStatement notesPage;
+    private PreparedStatement noteById;
+    private PreparedStatement userByName;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void openDatabase() throws IOException, SQLException {
+        file = File.createTempFile("notes-bench", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            for (String sql : NoteSql.CREATE_SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        seed();
+
+        insertNote = connection.prepareStatement(NoteSql.SQL_INSERT_NOTE);
+        updateNote = connection.prepareStatement(NoteSql.SQL_UPDATE_NOTE);
+        deleteNote = connection.prepareStatement(NoteSql.SQL_TRASH_NOTE);
+        notesPage = connection.prepareStatement(NoteSql.SQL_NOTES_PAGE);
+        noteById = connection.prepareStatement(NoteSql.SQL_NOTE_BY_ID);
+        userByName = connection.prepareStatement(NoteSql.SQL_USER_BY_NAME);
+    }
+
+    private void seed() throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement user = connection.prepareStatement(NoteSql.SQL_INSERT_USER);
+             PreparedStatement note = connection.prepareStatement(NoteSql.SQL_INSERT_NOTE)) {
+            for (int i = 1; i <= USERS; i++) {
+                user.setString(1, "user" + i);
+                user.setString(2, "pbkdf2-sha256$100000$c2FsdA$aGFzaA");
+                user.executeUpdate();
+            }
+            for (int i = 1; i <= noteCount; i++) {
+                bindNote(note, i, i % USERS + 1, SEED_EPOCH + random.nextInt(30 * 24 * 60) * 60_000L);
+                note.executeUpdate();
+            }
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    private static void bindNote(PreparedStatement statement, long n, long userId, long time) throws SQLException {
+        String details = DETAILS + " #" + n;
+        statement.setString(1, "Note " + n);
+        statement.setString(2, details);
+        statement.setString(3, NoteSummary.makePreview(details));
+        statement.setLong(4, userId);
+        statement.setLong(5, time);
+        statement.setLong(6, time);
+        statement.setString(7, UUID.randomUUID().toString());
+    }
+
+    @TearDown(Level.Iteration)
+    public void trimToSeededSize() throws SQLException {
+        // Keeps the insert benchmark from growing the table between iterations
+        try (PreparedStatement trim = connection.prepareStatement(
+                "DELETE FROM " + NoteSql.TABLE_NOTES + " WHERE " + NoteSql.COLUMN_ID + " > ?")) {
+            trim.setLong(1, noteCount);
+            trim.executeUpdate();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDatabase() throws SQLException {
+        connection.close();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+        file.delete();
+    }
+
+    private long randomNoteId() {
+        return random.nextLong(noteCount) + 1;
+    }
+
+    private long randomUserId() {
+        return random.nextInt(USERS) + 1;
+    }
+
+    @Benchmark
+    public int insert() throws SQLException {
+        bindNote(insertNote, noteCount + 1, randomUserId(), System.currentTimeMillis());
+        return insertNote.executeUpdate();
+    }
+
+    @Benchmark
+    public int update() throws SQLException {
+        long id = randomNoteId();
+        String details = DETAILS + " edited " + random.nextInt();
+        updateNote.setString(1, "Edited " + id);
+        updateNote.setString(2, details);
+        updateNote.setString(3, NoteSummary.makePreview(details));
+        updateNote.setLong(4, System.currentTimeMillis());
+        updateNote.setLong(5, id);
+        return updateNote.executeUpdate();
+    }
+
+    /** A freshly inserted note for each delete invocation. */
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        long id;
+
+        @Setup(Level.Invocation)
+        public void insertNote(NoteStorageBenchmark benchmark) throws SQLException {
+            // Per-invocation setup costs a little timing accuracy, but every delete needs a row
+            id = benchmark.insertAndGetId();
+        }
+    }
+
+    long insertAndGetId() throws SQLException {
+        bindNote(insertNote, noteCount + 1, randomUserId(), System.currentTimeMillis());
+        insertNote.executeUpdate();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT last_insert_rowid()")) {
+            rows.next();
+            return rows.getLong(1);
+        }
+    }
+
+    @Benchmark
+    public int delete(DeleteTarget target) throws SQLException {
+        deleteNote.setLong(1, System.currentTimeMillis());
+        deleteNote.setLong(2, target.id);
+        return deleteNote.executeUpdate();
+    }
+
+    @Benchmark
+    public void listFirstPage(Blackhole blackhole) throws SQLException {
+        readPage(Long.MAX_VALUE, blackhole);
+    }
+
+    @Benchmark
+    public void listLaterPage(Blackhole blackhole) throws SQLException {
+        // Keyset pagination should cost the same wherever the page starts
+        readPage(randomNoteId(), blackhole);
+    }
+
+    /** One of the list's sort orders, with its page statement prepared. */
+    @State(Scope.Thread)
+    public static class SortedPage {
+        // NoteSql.SORT_NEWEST, SORT_RECENTLY_EDITED, SORT_OLDEST and SORT_TITLE
+        @Param({"0", "1", "2", "3"})
+        public int sort;
+
+        PreparedStatement statement;
+
+        @Setup(Level.Trial)
+        public void prepare(NoteStorageBenchmark benchmark) throws SQLException {
+            statement = benchmark.connection.prepareStatement(NoteSql.notesPageSql(sort));
+        }
+    }
+
+    @Benchmark
+    public void switchSortOrder(SortedPage page, Blackhole blackhole) throws SQLException {
+        // What the list runs when the user picks another order: its first page, from an index
+        String[] args = NoteSql.notesPageArgs(page.sort, randomUserId(), null, PAGE_SIZE);
+        for (int i = 0; i < args.length; i++) {
+            page.statement.setString(i + 1, args[i]);
+        }
+        try (ResultSet rows = page.statement.executeQuery()) {
+            while (rows.next()) {
+                blackhole.consume(rows.getLong(1));
+                blackhole.consume(rows.getString(2));
+                blackhole.consume(rows.getString(3));
+            }
+        }
+    }
+
+    private void readPage(long beforeId, Blackhole blackhole) throws SQLException {
+        notesPage.setLong(1, randomUserId());
+        notesPage.setLong(2, beforeId);
+        notesPage.setInt(3, PAGE_SIZE);
+        try (ResultSet rows = notesPage.executeQuery()) {
+            while (rows.next()) {
+                blackhole.consume(rows.getLong(1));
+                blackhole.consume(rows.getString(2));
+                blackhole.consume(rows.getString(3));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getById(Blackhole blackhole) throws SQLException {
+        noteById.setLong(1, randomNoteId());
+        try (ResultSet rows = noteById.executeQuery()) {
+            if (rows.next()) {
+                blackhole.consume(rows.getLong(1));
+                blackhole.consume(rows.getString(2));
+                blackhole.consume(rows.getString(3));
+            }
+        }
+    }
+
+    @Benchmark
+    public void userLookup(Blackhole blackhole) throws SQLException {
+        userByName.setString(1, "user" + randomUserId());
+        try (ResultSet rows = userByName.executeQuery()) {
+            if (rows.next()) {
+                blackhole.consume(rows.getLong(1));
+                blackhole.consume(rows.getString(3));
+            }
+        }
+    }
+}